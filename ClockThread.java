@@ -3,59 +3,70 @@
  CMSC 335
  Project 4
  Class Descriptions:
- ClockThread updates the clock label every second with the current system time. Includes pause and resume functionality
+ ClockThread updates the clock label with the simulated time read from the engine's SimulationClock, along with the
+ current time scale, so at 1000x the label shows simulated hours passing in minutes. It no longer owns a thread:
+ start() registers it as a repeating timer on the shared SimulationScheduler. Includes pause and resume functionality
  for synchronization with the simulation.
  */
 
 import javax.swing.*;  // For JLabel and SwingUtilities
+import java.util.concurrent.TimeUnit;
+
+import engine.SimulationClock;
+import engine.SimulationScheduler;
+
+class ClockThread implements Runnable {
+    private static final long REFRESH_MILLIS = 250;  // Wall time between label updates
 
-class ClockThread extends Thread {
     private final JLabel clockLabel;   // Label used to display the clock
+    private final SimulationClock clock; // Simulated time to show
     private volatile boolean paused = false;  // Tracks whether the clock is paused
+    private SimulationScheduler.Timeout timer; // Repeating refresh timer
 
-    // Constructor assigns the label that will show the time
-    public ClockThread(JLabel clockLabel) {
+    // Constructor assigns the label that will show the time and the clock it reads
+    public ClockThread(JLabel clockLabel, SimulationClock clock) {
         this.clockLabel = clockLabel;
+        this.clock = clock;
+    }
+
+    // Start refreshing the label on the shared scheduler
+    public synchronized void start(SimulationScheduler scheduler) {
+        if (timer == null) {
+            timer = scheduler.scheduleAtFixedRate(this, 0, REFRESH_MILLIS, TimeUnit.MILLISECONDS);
+        }
     }
 
-    // Method to pause the clock (sets the paused flag to true)
-    public synchronized void pauseClock() {
+    // Stop ticking
+    public synchronized void stop() {
+        if (timer != null) {
+            timer.cancel();
+            timer = null;
+        }
+    }
+
+    // Method to pause the clock (ticks are skipped while paused)
+    public void pauseClock() {
         paused = true;
     }
 
-    // Method to resume the clock (clears the paused flag and wakes thread)
-    public synchronized void resumeClock() {
+    // Method to resume the clock
+    public void resumeClock() {
         paused = false;
-        notifyAll(); // Wake up the thread if it's waiting
     }
 
-    // The main execution logic for the clock thread
+    // One label refresh, run by the scheduler every REFRESH_MILLIS
     @Override
     public void run() {
-        while (true) {
-            synchronized (this) {
-                // If paused, wait until resumeClock is called
-                while (paused) {
-                    try {
-                        wait(); // Releases lock and waits
-                    } catch (InterruptedException e) {
-                        return; // Exit if thread is interrupted
-                    }
-                }
-            }
-
-            try {
-                // Get current system time (hh:mm:ss format)
-                String currentTime = java.time.LocalTime.now().withNano(0).toString();
-
-                // Update the JLabel on the Swing GUI thread
-                SwingUtilities.invokeLater(() -> clockLabel.setText("Clock: " + currentTime));
-
-                Thread.sleep(1000); // Update every second
-
-            } catch (InterruptedException e) {
-                return; // Exit thread if interrupted
-            }
+        if (paused) {
+            return;
         }
+
+        // Simulated time since the start (hh:mm:ss, hours keep counting past a day)
+        long seconds = (long) clock.now();
+        String currentTime = String.format("%02d:%02d:%02d (%s)",
+                seconds / 3600, seconds / 60 % 60, seconds % 60, clock.scaleLabel());
+
+        // Update the JLabel on the Swing GUI thread
+        SwingUtilities.invokeLater(() -> clockLabel.setText("Clock: " + currentTime));
     }
 }
@@ -5,22 +5,42 @@
  Class Descriptions:
  TrafficMainFrame:
  The main GUI class that constructs the entire traffic simulator window. It creates and organizes panels for the clock,
- sliders, data labels, and control buttons. It also initializes and controls car threads, traffic light threads, and
- simulation logic including add/pause/resume/stop functionality.
-
- CustomSliderUI:
- A utility class that customizes the look of each car's slider thumb (the knob) by painting it with a specified color.
- This enhances the visual distinction between cars.
+ the track canvas, data labels, and control buttons. The simulation itself runs in the SimulationEngine; this frame only
+ sends it start/pause/resume/add commands and observes its state through the RenderPump, which rasterizes the
+ TrackCanvas off the EDT and copies car data and light colors into the labels.
+ The lights and cars come from a Scenario: the file named by -Dtraffic.scenario, or the default three intersections
+ and three cars. The first LABELED_LIGHTS lights and LABELED_CARS cars get a data label as they appear in the engine;
+ every light and car is drawn on the canvas. In STEP_LOOP mode -Dtraffic.checkpoint=run.ckpt saves the run
+ periodically and on Stop, and -Dtraffic.resume=run.ckpt continues a saved run instead of loading the scenario.
  */
 
 import javax.swing.*; // GUI components
 import java.awt.*; // Layouts, Colors
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.util.HashMap;
-import java.util.Map;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 import javax.swing.border.LineBorder;
-import javax.swing.plaf.basic.BasicSliderUI;
+
+import engine.CheckpointReader;
+import engine.CheckpointWriter;
+import engine.EngineSnapshot;
+import engine.EventJournal;
+import engine.ExecutionMode;
+import engine.RunRecording;
+import engine.Scenario;
+import engine.SimulationClock;
+import engine.SimulationEngine;
+import engine.SimulationMonitor;
+import engine.TrafficLightColor;
+import engine.TrajectoryExporter;
+import gui.ColorCircleIcon;
+import gui.RenderPump;
+import gui.TrackCanvas;
 
 // Main GUI class for the traffic simulation
 public class TrafficMainFrame extends JFrame implements ActionListener {
@@ -28,25 +48,45 @@ public class TrafficMainFrame extends JFrame implements ActionListener {
     // GUI control buttons
     private JButton startButton, pauseButton, resumeButton, stopButton;
     private JButton addCarButton, addLightButton;
+    private JComboBox<String> timeScaleBox;  // Simulated seconds per wall second
+
+    // Choices offered by the time-scale box and the factor each stands for
+    private static final String[] TIME_SCALE_NAMES = {"1x", "10x", "20x", "1000x", "Max"};
+    private static final double[] TIME_SCALES = {1, 10, 20, 1000, SimulationClock.UNTHROTTLED};
 
-    // Threads for clock, cars, and lights
+    // Clock thread and the engine that owns cars and lights
     private ClockThread clockThread;
-    private CarThread carThread1, carThread2, carThread3, carThread4;
-    private TrafficLightThread light1, light2, light3, light4;
+    private final SimulationEngine engine;
+    private EventJournal journal = EventJournal.DISABLED;  // Optional binary event log
+    private TrajectoryExporter trajectory = TrajectoryExporter.DISABLED; // Optional car position/speed export
+    private final String recordingFile = System.getProperty("traffic.record"); // Optional run recording for replay
+    private CheckpointWriter checkpoints = CheckpointWriter.DISABLED; // Optional periodic save of the whole run
+    private boolean resumed = false;                        // Engine was restored from a checkpoint
+
+    // Samples the engine and applies frames to the widgets (-Dtraffic.fps, default 60)
+    private final RenderPump renderPump;
 
     // Labels for data display
-    private JLabel car1Data, car2Data, car3Data, car4Data;
-    private JLabel intersection4Label, clockLabel, shutdownLabel;
+    private JLabel clockLabel, shutdownLabel;
+    private JPanel intersectionPanel, carPanel;   // Light and car labels are added as the engine gains them
+    private static final int LABELED_LIGHTS = 4;  // More lights and cars are only drawn on the canvas
+    private static final int LABELED_CARS = 4;
 
     // Flags for additional elements
     private boolean car4Added = false;
     private boolean light4Added = false;
 
-    // Slider tracks for cars
-    private JSlider car1Slider, car2Slider, car3Slider;
+    // Canvas that draws the road, every car and every light marker
+    private TrackCanvas trackCanvas;
 
-    // Map for traffic light positions and their threads
-    private Map<Integer, TrafficLightThread> trafficLights;
+    // Labels indexed by engine car id / light id
+    private final List<JLabel> carLabels = new ArrayList<>();
+    private final List<JLabel> lightLabels = new ArrayList<>();
+    private final List<TrafficLightColor> shownLightColors = new ArrayList<>();
+    private int[] shownCarPositions = new int[0];   // Last values drawn, so unchanged cars are skipped
+    private int[] shownCarSpeeds = new int[0];
+    private final List<String[]> lightStatusTexts = new ArrayList<>(); // "Intersection N: COLOR" per light, by ordinal
+    private final StringBuilder carText = new StringBuilder(64);      // Reused for every car label
 
     // Constructor initializes and lays out all components
     public TrafficMainFrame() {
@@ -54,6 +94,15 @@ public class TrafficMainFrame extends JFrame implements ActionListener {
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE); // Exit app on close
         setLayout(new BorderLayout()); // Use BorderLayout for major regions
 
+        // Engine mode can be chosen with -Dtraffic.mode=STEP_LOOP|PLATFORM_THREADS|VIRTUAL_THREADS
+        // (DISCRETE_EVENT has no live view, so the GUI runs STEP_LOOP for it)
+        engine = createEngine();
+        SimulationMonitor.register(engine); // Metrics in JConsole under trafficsim:type=Simulation
+        openJournal();
+        openTrajectory();
+        openCheckpoints();
+        startRecording();
+
         // Light blue for all panels
         Color lightBlue = new Color(220, 235, 245);
 
@@ -78,29 +127,13 @@ public class TrafficMainFrame extends JFrame implements ActionListener {
         topPanel.add(clockLabel);
         topPanel.add(Box.createVerticalStrut(50)); // Spacer
 
-        // Layered pane to hold car sliders and light markers
-        JLayeredPane layeredPane = new JLayeredPane();
-        layeredPane.setPreferredSize(new Dimension(1000, 150));
+        // Canvas that draws every car and light marker in one pass; frames are rasterized off the EDT
+        trackCanvas = new TrackCanvas(1000, 150);
+        topPanel.add(trackCanvas);
 
-        // Create sliders for the first 3 cars
-        car1Slider = createSlider(10, Color.DARK_GRAY);
-        car2Slider = createSlider(40, Color.BLUE);
-        car3Slider = createSlider(70, Color.RED);
-
-        // Add sliders to the layered pane
-        layeredPane.add(car1Slider);
-        layeredPane.add(car2Slider);
-        layeredPane.add(car3Slider);
-
-        // Create and add markers for intersections
-        JLabel marker1 = createMarker(1250);
-        JLabel marker2 = createMarker(2500);
-        JLabel marker3 = createMarker(3750);
-        layeredPane.add(marker1, JLayeredPane.PALETTE_LAYER);
-        layeredPane.add(marker2, JLayeredPane.PALETTE_LAYER);
-        layeredPane.add(marker3, JLayeredPane.PALETTE_LAYER);
-
-        topPanel.add(layeredPane);
+        // Frame pump (-Dtraffic.fps, default 60): rasterize on the sampling thread, blit and update labels on the EDT
+        renderPump = new RenderPump(engine, Integer.getInteger("traffic.fps", 60), trackCanvas::render,
+                this::applyFrame);
 
         // ==== TOP PANEL WRAPPER ====
         JPanel topWrapper = new JPanel(new BorderLayout());
@@ -123,32 +156,12 @@ public class TrafficMainFrame extends JFrame implements ActionListener {
         middlePanel.setPreferredSize(new Dimension(1000, 180)); // adjust height as you like
 
 
-        // Create labels for intersection statuses
-        JLabel intersection1Label = new JLabel("Intersection 1: RED");
-        JLabel intersection2Label = new JLabel("Intersection 2: YELLOW");
-        JLabel intersection3Label = new JLabel("Intersection 3: GREEN");
-        intersection4Label = new JLabel("Intersection 4: —");
-
-        // Create labels for car data
-        car1Data = new JLabel("Car 1 — Pos: 0 | Speed: 15 m/s");
-        car2Data = new JLabel("Car 2 — Pos: 0 | Speed: 10 m/s");
-        car3Data = new JLabel("Car 3 — Pos: 0 | Speed: 7 m/s");
-        car4Data = new JLabel("Car 4 — Available");
-
-        // Add intersection and car labels to sub-panels
-        JPanel intersectionPanel = new JPanel();
+        // Sub-panels for the intersection status and car data labels (filled by applyFrame)
+        intersectionPanel = new JPanel();
         intersectionPanel.setLayout(new BoxLayout(intersectionPanel, BoxLayout.Y_AXIS));
-        intersectionPanel.add(intersection1Label);
-        intersectionPanel.add(intersection2Label);
-        intersectionPanel.add(intersection3Label);
-        intersectionPanel.add(intersection4Label);
 
-        JPanel carPanel = new JPanel();
+        carPanel = new JPanel();
         carPanel.setLayout(new BoxLayout(carPanel, BoxLayout.Y_AXIS));
-        carPanel.add(car1Data);
-        carPanel.add(car2Data);
-        carPanel.add(car3Data);
-        carPanel.add(car4Data);
 
         middlePanel.add(intersectionPanel);
         middlePanel.add(Box.createVerticalStrut(10));
@@ -198,6 +211,13 @@ public class TrafficMainFrame extends JFrame implements ActionListener {
         buttonPanel.add(addLightButton);
         addLightButton.setEnabled(false);
 
+        // Time scale: applies immediately, before or during the run
+        timeScaleBox = new JComboBox<>(TIME_SCALE_NAMES);
+        timeScaleBox.setSelectedIndex(timeScaleIndex(engine.clock().timeScale()));
+        timeScaleBox.addActionListener(this);
+        buttonPanel.add(new JLabel("Speed:"));
+        buttonPanel.add(timeScaleBox);
+
         stopButton = new JButton("Stop");
         stopButton.addActionListener(this);
         buttonPanel.add(stopButton);
@@ -224,15 +244,13 @@ public class TrafficMainFrame extends JFrame implements ActionListener {
         add(bottomWrapperOuter, BorderLayout.SOUTH);
 
 
-        // INITIALIZE TRAFFIC LIGHTS
-        light1 = new TrafficLightThread(marker1, intersection1Label);
-        light2 = new TrafficLightThread(marker2, intersection2Label);
-        light3 = new TrafficLightThread(marker3, intersection3Label);
-
-        trafficLights = new HashMap<>();
-        trafficLights.put(1250, light1);
-        trafficLights.put(2500, light2);
-        trafficLights.put(3750, light3);
+        // INITIALIZE TRAFFIC LIGHTS AND CARS IN THE ENGINE
+        if (!resumed) {
+            loadScenario().applyTo(engine);
+        }
+        EngineSnapshot initial = new EngineSnapshot();
+        engine.snapshot(initial);
+        applyFrame(initial);  // Labels for the lights and the cars already on the road
 
         // Final window setup
         setSize(1100, 600);
@@ -241,28 +259,169 @@ public class TrafficMainFrame extends JFrame implements ActionListener {
 
     // START SIMULATION LOGIC
     private void startSimulation() {
-        clockThread = new ClockThread(clockLabel);
-        clockThread.start();
+        clockThread = new ClockThread(clockLabel, engine.clock());
+        clockThread.start(engine.scheduler());
+
+        engine.start();
+        renderPump.start();
+        trajectory.start();
+        checkpoints.start();
+    }
 
-        new Thread(light1).start();
-        new Thread(light2).start();
-        new Thread(light3).start();
+    // Index of the time-scale choice closest to the given factor
+    private static int timeScaleIndex(double timeScale) {
+        if (timeScale == SimulationClock.UNTHROTTLED) {
+            return TIME_SCALES.length - 1;
+        }
+        int best = 0;
+        for (int i = 1; i < TIME_SCALES.length; i++) {
+            if (Math.abs(Math.log(TIME_SCALES[i] / timeScale)) < Math.abs(Math.log(TIME_SCALES[best] / timeScale))) {
+                best = i;
+            }
+        }
+        return best;
+    }
 
-        carThread1 = new CarThread(car1Slider, 15, trafficLights, car1Data);
-        carThread2 = new CarThread(car2Slider, 5, trafficLights, car2Data);
-        carThread3 = new CarThread(car3Slider, 9, trafficLights, car3Data);
+    // Record events to the file named by -Dtraffic.journal, if any
+    private void openJournal() {
+        try {
+            journal = EventJournal.fromSystemProperty();
+            engine.attachJournal(journal);
+        } catch (IOException e) {
+            System.err.println("Event journal disabled: " + e.getMessage());
+        }
+    }
 
-        new Thread(carThread1).start();
-        new Thread(carThread2).start();
-        new Thread(carThread3).start();
+    // Export car trajectories to the file named by -Dtraffic.trajectory, if any
+    private void openTrajectory() {
+        try {
+            trajectory = TrajectoryExporter.fromSystemProperty(engine);
+        } catch (IOException e) {
+            System.err.println("Trajectory export disabled: " + e.getMessage());
+        }
+    }
+
+    // Engine restored from the checkpoint named by -Dtraffic.resume (STEP_LOOP only), or a new one
+    private SimulationEngine createEngine() {
+        ExecutionMode mode = ExecutionMode.fromSystemProperty();
+        if (mode == ExecutionMode.DISCRETE_EVENT) {
+            System.err.println("DISCRETE_EVENT has no live view (use engine.HeadlessSimulation); running STEP_LOOP");
+            mode = ExecutionMode.STEP_LOOP;
+        }
+        String resumeFile = System.getProperty("traffic.resume");
+        if (resumeFile == null) {
+            return new SimulationEngine(mode);
+        }
+        if (mode != ExecutionMode.STEP_LOOP) {
+            System.err.println("Resume disabled: only STEP_LOOP runs can be checkpointed");
+            return new SimulationEngine(mode);
+        }
+        try {
+            SimulationEngine restored = CheckpointReader.restore(Path.of(resumeFile));
+            resumed = true;
+            return restored;
+        } catch (IOException e) {
+            System.err.println("Resume disabled: " + e.getMessage());
+            return new SimulationEngine(mode);
+        }
+    }
+
+    // Save the run to the file named by -Dtraffic.checkpoint, if any (STEP_LOOP only)
+    private void openCheckpoints() {
+        if (System.getProperty("traffic.checkpoint") == null) {
+            return;
+        }
+        if (engine.mode() != ExecutionMode.STEP_LOOP) {
+            System.err.println("Checkpoints disabled: only STEP_LOOP runs can be checkpointed");
+            return;
+        }
+        checkpoints = CheckpointWriter.fromSystemProperty(engine);
+    }
+
+    // Lights and cars from the file named by -Dtraffic.scenario, or the default scenario
+    private static Scenario loadScenario() {
+        try {
+            return Scenario.fromSystemProperty();
+        } catch (IOException e) {
+            System.err.println("Scenario not loaded, using the default: " + e.getMessage());
+            return Scenario.defaultScenario();
+        }
+    }
+
+    // Record every command for a deterministic replay when -Dtraffic.record names a file (STEP_LOOP only)
+    private void startRecording() {
+        if (recordingFile == null) {
+            return;
+        }
+        if (engine.mode() != ExecutionMode.STEP_LOOP) {
+            System.err.println("Run recording disabled: only STEP_LOOP runs can be replayed");
+            return;
+        }
+        if (resumed) {
+            System.err.println("Run recording disabled: a resumed run cannot be replayed from its seed");
+            return;
+        }
+        engine.startRecording(new RunRecording(engine.seed()));
     }
 
-    // PAUSE SIMULATION
-    private void pauseSimulation() {
-        light1.pause();
-        light2.pause();
-        light3.pause();
-        // Add car pause logic if needed
+    // Add the label for the next car id
+    private void addCarLabel() {
+        JLabel dataLabel = new JLabel();
+        carPanel.add(dataLabel);
+        carLabels.add(dataLabel);
+        shownCarPositions = Arrays.copyOf(shownCarPositions, carLabels.size());
+        shownCarSpeeds = Arrays.copyOf(shownCarSpeeds, carLabels.size());
+        shownCarPositions[carLabels.size() - 1] = -1;  // Draw the first frame
+    }
+
+    // Add the label for the next light id
+    private void addLightLabel() {
+        String[] texts = new String[TrafficLightColor.values().length];
+        for (TrafficLightColor color : TrafficLightColor.values()) {
+            texts[color.ordinal()] = "Intersection " + (lightLabels.size() + 1) + ": " + color;
+        }
+        lightStatusTexts.add(texts);
+        JLabel statusLabel = new JLabel();
+        intersectionPanel.add(statusLabel);
+        lightLabels.add(statusLabel);
+        shownLightColors.add(null);  // Draw the first frame
+    }
+
+    // OBSERVER: apply one frame from the render pump, touching only widgets whose value changed (runs on the EDT)
+    private void applyFrame(EngineSnapshot snapshot) {
+        trackCanvas.repaint();  // The frame is already rasterized; the EDT only blits it
+
+        int labeledCars = Math.min(snapshot.carCount(), LABELED_CARS);
+        int labeledLights = Math.min(snapshot.lightCount(), LABELED_LIGHTS);
+        if (carLabels.size() < labeledCars || lightLabels.size() < labeledLights) {
+            while (carLabels.size() < labeledCars) addCarLabel();
+            while (lightLabels.size() < labeledLights) addLightLabel();
+            carPanel.revalidate();
+            intersectionPanel.revalidate();
+        }
+
+        for (int id = 0; id < snapshot.carCount() && id < carLabels.size(); id++) {
+            int position = (int) snapshot.carPosition(id);
+            int speed = (int) Math.round(snapshot.carSpeed(id));
+            if (position == shownCarPositions[id] && speed == shownCarSpeeds[id]) {
+                continue;
+            }
+            shownCarPositions[id] = position;
+            shownCarSpeeds[id] = speed;
+            carText.setLength(0);
+            carText.append("Car ").append(id + 1).append(" — Pos: x = ").append(position)
+                    .append(", y = 0 | Speed: ").append(speed).append(" m/s");
+            carLabels.get(id).setText(carText.toString());  // JLabel needs a String; only built when the car moved
+        }
+
+        for (int id = 0; id < snapshot.lightCount() && id < lightLabels.size(); id++) {
+            TrafficLightColor color = snapshot.lightColor(id);
+            if (color != shownLightColors.get(id)) {
+                shownLightColors.set(id, color);
+                lightLabels.get(id).setIcon(ColorCircleIcon.forLight(color));
+                lightLabels.get(id).setText(lightStatusTexts.get(id)[color.ordinal()]);
+            }
+        }
     }
 
     // HANDLE BUTTON EVENTS
@@ -276,129 +435,52 @@ public class TrafficMainFrame extends JFrame implements ActionListener {
 
         } else if (e.getSource() == pauseButton) {
             clockThread.pauseClock();
-            light1.pause(); light2.pause(); light3.pause();
-            carThread1.pause(); carThread2.pause(); carThread3.pause();
-            if (car4Added && carThread4 != null) carThread4.pause();
-            if (light4Added && light4 != null) light4.pause();
+            engine.pause();
             addCarButton.setEnabled(false);
             addLightButton.setEnabled(false);
 
         } else if (e.getSource() == resumeButton) {
             clockThread.resumeClock();
-            light1.resume(); light2.resume(); light3.resume();
-            carThread1.resume(); carThread2.resume(); carThread3.resume();
-            if (car4Added && carThread4 != null) carThread4.resume();
-            if (light4Added && light4 != null) light4.resume();
+            engine.resume();
             addCarButton.setEnabled(!car4Added);
             addLightButton.setEnabled(!light4Added);
 
+        } else if (e.getSource() == timeScaleBox) {
+            engine.setTimeScale(TIME_SCALES[timeScaleBox.getSelectedIndex()]);
+
         } else if (e.getSource() == addCarButton && !car4Added) {
-            JSlider car4Slider = createSlider(100, Color.MAGENTA);
-            ((JLayeredPane) car1Slider.getParent()).add(car4Slider);
-            ((JLayeredPane) car1Slider.getParent()).repaint();
-            car4Data.setText("Car 4 — Pos: 0 | Speed: 6 m/s");
-            carThread4 = new CarThread(car4Slider, 6, trafficLights, car4Data);
-            new Thread(carThread4).start();
+            engine.addCar(6);  // Its label appears with the next frame
             car4Added = true;
             addCarButton.setEnabled(false);
         } else if (e.getSource() == addLightButton && !light4Added) {
-            JLabel marker4 = createMarker(4000);
-            ((JLayeredPane) car1Slider.getParent()).add(marker4, JLayeredPane.PALETTE_LAYER);
-            ((JLayeredPane) car1Slider.getParent()).repaint();
-            intersection4Label.setText("Intersection 4: RED");
-            light4 = new TrafficLightThread(marker4, intersection4Label);
-            trafficLights.put(4000, light4);
-            new Thread(light4).start();
+            engine.addLight(4000);
             light4Added = true;
             addLightButton.setEnabled(false);
         } else if (e.getSource() == stopButton) {
             shutdownLabel.setText("This program will be shutting down in a few seconds...");
             stopButton.setEnabled(false);
-            new Thread(() -> {
+            renderPump.stop();
+            engine.stop();
+            engine.scheduler().schedule(() -> {
                 try {
-                    Thread.sleep(3000);
-                } catch (InterruptedException ex) {
+                    journal.close();
+                    trajectory.close();
+                    checkpoints.close();  // Final checkpoint of the stopped run
+                    RunRecording recording = engine.stopRecording();
+                    if (recording != null) {
+                        recording.write(Path.of(recordingFile));
+                    }
+                } catch (IOException ex) {
                     ex.printStackTrace();
                 }
                 System.exit(0);
-            }).start();
+            }, 3, TimeUnit.SECONDS);
         }
     }
 
-    // HELPER: CREATE SLIDER
-    private JSlider createSlider(int yPos, Color knobColor) {
-        JSlider slider = new JSlider(0, 5000, 0);
-        slider.setBounds(0, yPos, 1000, 20);
-        slider.setUI(new CustomSliderUI(slider, knobColor));
-        slider.setFocusable(false);
-        return slider;
-    }
-
-    // HELPER: CREATE TRAFFIC LIGHT MARKER
-    private JLabel createMarker(int meterPosition) {
-        JLabel marker = new JLabel();
-        marker.setIcon(new ColorCircleIcon(Color.RED, 12)); // small red circle
-        int x = meterPosition * 1000 / 5000 - 10;
-        marker.setBounds(x, 0, 20, 20);
-        return marker;
-    }
-
-
     // MAIN METHOD
     public static void main(String[] args) {
         SwingUtilities.invokeLater(() -> new TrafficMainFrame());
     }
 
 }
-
-// CUSTOM SLIDER UI CLASS FOR COLORED KNOBS
-class CustomSliderUI extends BasicSliderUI {
-    private final Color knobColor;
-
-    public CustomSliderUI(JSlider slider, Color knobColor) {
-        super(slider);
-        this.knobColor = knobColor;
-    }
-
-    @Override
-    public void paintThumb(Graphics g) {
-        Graphics2D g2 = (Graphics2D) g.create();
-        g2.setColor(knobColor);
-        Rectangle knobBounds = thumbRect;
-        int diameter = Math.min(knobBounds.width, knobBounds.height);
-        int x = knobBounds.x + (knobBounds.width - diameter) / 2;
-        int y = knobBounds.y + (knobBounds.height - diameter) / 2;
-        g2.fillOval(x, y, diameter, diameter);
-        g2.dispose();
-    }
-}
-
-class ColorCircleIcon implements Icon {
-    private final Color color;
-    private final int size;
-
-    public ColorCircleIcon(Color color, int size) {
-        this.color = color;
-        this.size = size;
-    }
-
-    @Override
-    public void paintIcon(Component c, Graphics g, int x, int y) {
-        g.setColor(color);
-        g.fillOval(x, y, size, size);
-        g.setColor(Color.BLACK); // optional border
-        g.drawOval(x, y, size, size);
-    }
-
-    @Override
-    public int getIconWidth() {
-        return size;
-    }
-
-    @Override
-    public int getIconHeight() {
-        return size;
-    }
-}
-
-
@@ -0,0 +1,104 @@
+/**
+ CMSC 335
+ Project 4
+ Class Descriptions:
+ AllocationCheck verifies that the simulation hot paths allocate nothing in steady state. It reads the current
+ thread's allocated-bytes counter (com.sun.management.ThreadMXBean) around many engine ticks, which include car moves
+ and light phase transitions, and around TrackCanvas frames. It exits with status 1 if an engine tick allocates.
+ The counter also sees what the VM allocates on the thread when it first runs code the JIT compiled in the background
+ (a few hundred bytes, now and then), so the check runs with compilation in the foreground: started without -Xbatch,
+ it runs itself again in a child JVM with -Xbatch and exits with the child's status.
+ Usage: java -Djava.awt.headless=true bench.AllocationCheck [cars] [ticks]
+ */
+
+package bench;
+
+import engine.EngineSnapshot;
+import engine.ExecutionMode;
+import engine.SimulationEngine;
+import gui.TrackCanvas;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+public class AllocationCheck {
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (backgroundCompilation()) {
+            System.exit(runWithBatchCompilation(args));
+        }
+        int carCount = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int ticks = args.length > 1 ? Integer.parseInt(args[1]) : 1_000;  // Several full light cycles
+
+        SimulationEngine engine = new SimulationEngine(ExecutionMode.STEP_LOOP, carCount);
+        engine.addLight(1250);
+        engine.addLight(2500);
+        engine.addLight(3750);
+        // Slow cars in their own lanes stay on the track (and keep meeting lights) for the whole run
+        for (int i = 0; i < carCount; i++) {
+            engine.addCar(1, i);
+        }
+        EngineSnapshot snapshot = new EngineSnapshot();
+        TrackCanvas canvas = new TrackCanvas(1000, 150);
+
+        // Warm up so the JIT has compiled (and escape-analyzed) the hot paths
+        for (int i = 0; i < 2_000; i++) {
+            engine.step(SimulationEngine.TICK_SECONDS);
+            engine.snapshot(snapshot);
+            canvas.render(snapshot);
+        }
+
+        long before = allocatedBytes();
+        for (int i = 0; i < ticks; i++) {
+            engine.step(SimulationEngine.TICK_SECONDS);
+        }
+        long tickBytes = allocatedBytes() - before;
+
+        before = allocatedBytes();
+        for (int i = 0; i < 200; i++) {
+            engine.snapshot(snapshot);
+            canvas.render(snapshot);
+        }
+        long frameBytes = allocatedBytes() - before;
+
+        System.out.printf("Engine tick: %d bytes over %,d ticks (%,d cars, with light transitions)%n",
+                tickBytes, ticks, carCount);
+        System.out.printf("Snapshot + canvas frame: %.1f bytes per frame%n", frameBytes / 200.0);
+        if (tickBytes != 0) {
+            System.out.println("FAIL: engine tick allocates");
+            System.exit(1);
+        }
+        System.out.println("OK: engine tick is allocation-free");
+    }
+
+    // True if the JIT compiles in the background while the measured thread keeps running
+    private static boolean backgroundCompilation() {
+        com.sun.management.HotSpotDiagnosticMXBean vm =
+                ManagementFactory.getPlatformMXBean(com.sun.management.HotSpotDiagnosticMXBean.class);
+        return Boolean.parseBoolean(vm.getVMOption("BackgroundCompilation").getValue());
+    }
+
+    // Run this check in a child JVM with the same options plus -Xbatch; returns its exit status
+    private static int runWithBatchCompilation(String[] args) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+        command.add("-Xbatch");
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(AllocationCheck.class.getName());
+        command.addAll(List.of(args));
+        return new ProcessBuilder(command).inheritIO().start().waitFor();
+    }
+
+    // Bytes allocated so far by the current thread
+    private static long allocatedBytes() {
+        return THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
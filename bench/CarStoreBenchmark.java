@@ -0,0 +1,78 @@
+/**
+ CMSC 335
+ Project 4
+ Class Descriptions:
+ CarStoreBenchmark steps a SimulationEngine holding a large number of cars (one million by default) and prints the
+ average time per tick. It also measures heap bytes per car for the CarStore and compares them with the JSlider and
+ JLabel pair that each car used to need in the GUI.
+ Usage: java -Djava.awt.headless=true bench.CarStoreBenchmark [cars] [ticks]
+ */
+
+package bench;
+
+import engine.CarStore;
+import engine.SimulationEngine;
+
+import javax.swing.JLabel;
+import javax.swing.JSlider;
+
+public class CarStoreBenchmark {
+
+    private static final int LANES = 1024;   // Cars queue behind each other within a lane
+
+    public static void main(String[] args) {
+        int carCount = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int ticks = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+
+        // Heap held by the car store
+        long before = usedHeap();
+        SimulationEngine engine = new SimulationEngine();
+        engine.addLight(1250);
+        engine.addLight(2500);
+        engine.addLight(3750);
+        for (int i = 0; i < carCount; i++) {
+            engine.addCar(5 + i % 11, i % LANES);
+        }
+        long storeBytes = usedHeap() - before;
+
+        // Warm up, then time the ticks
+        for (int i = 0; i < 10; i++) {
+            engine.step(SimulationEngine.TICK_SECONDS);
+        }
+        long started = System.nanoTime();
+        for (int i = 0; i < ticks; i++) {
+            engine.step(SimulationEngine.TICK_SECONDS);
+        }
+        double msPerTick = (System.nanoTime() - started) / 1e6 / ticks;
+
+        System.out.printf("Cars: %,d | %.2f ms/tick | %.1f ns/car/tick%n",
+                carCount, msPerTick, msPerTick * 1e6 / carCount);
+        System.out.printf("CarStore: %d bytes/car by layout, %.1f bytes/car measured (%,d slots allocated)%n",
+                CarStore.BYTES_PER_CAR, (double) storeBytes / carCount,
+                engine.carStoreBytes() / CarStore.BYTES_PER_CAR);
+
+        // Heap held by the per-car widgets of the old design (first pair loads the Swing classes)
+        int widgetCars = 2_000;
+        Object[] keep = new Object[widgetCars * 2];
+        new JSlider(0, SimulationEngine.TRACK_LENGTH, 0);
+        new JLabel("Car");
+        before = usedHeap();
+        for (int i = 0; i < widgetCars; i++) {
+            keep[2 * i] = new JSlider(0, SimulationEngine.TRACK_LENGTH, 0);
+            keep[2 * i + 1] = new JLabel("Car " + i + " — Pos: 0 | Speed: 0 m/s");
+        }
+        long widgetBytes = usedHeap() - before;
+        System.out.printf("JSlider + JLabel: %.0f bytes/car measured (plus one thread stack per car)%n",
+                (double) widgetBytes / widgetCars);
+        if (keep[0] == null || engine.carCount() == 0) System.out.println(); // Keep everything reachable until measured
+    }
+
+    // Heap in use after a best-effort full collection
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
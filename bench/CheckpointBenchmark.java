@@ -0,0 +1,132 @@
+/**
+ CMSC 335
+ Project 4
+ Class Descriptions:
+ CheckpointBenchmark measures CheckpointWriter and CheckpointReader on a large run (one million cars in 1024 lanes
+ behind three lights by default, plus a tenth as many again scheduled to depart later). It prints the time per tick,
+ then takes a full checkpoint and a few delta checkpoints a handful of ticks apart, showing for each how long the
+ engine was held for the capture (which must stay below one tick) and how many bytes and pages went to the file. It
+ then resumes an engine from the file, steps the original and the resumed engine side by side, and compares every
+ car and light after each tick; any difference is reported and the benchmark exits with status 1.
+ Usage: java [-Xmx2g] bench.CheckpointBenchmark [cars] [ticksBetweenCheckpoints] [deltas]
+ */
+
+package bench;
+
+import engine.CheckpointReader;
+import engine.CheckpointWriter;
+import engine.EngineSnapshot;
+import engine.ExecutionMode;
+import engine.SimulationEngine;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class CheckpointBenchmark {
+
+    private static final int LANES = 1024;
+    private static final int COMPARED_TICKS = 100; // Ticks the original and resumed runs are compared over
+
+    public static void main(String[] args) throws IOException {
+        int carCount = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int ticksBetween = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int deltas = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+        SimulationEngine engine = new SimulationEngine(ExecutionMode.STEP_LOOP, carCount, 1);
+        engine.addLight(1250);
+        engine.addLight(2500);
+        engine.addLight(3750);
+        for (int i = 0; i < carCount; i++) {
+            engine.addCar(5 + i % 11, i % LANES);
+        }
+        int scheduled = carCount / 10;
+        int[] speeds = new int[scheduled];
+        int[] lanes = new int[scheduled];
+        double[] startTimes = new double[scheduled];
+        for (int i = 0; i < scheduled; i++) {
+            speeds[i] = 5 + i % 11;
+            lanes[i] = i % LANES;
+            startTimes[i] = 100 + i / LANES;  // One car per lane every simulated second, after the checkpoints
+        }
+        engine.scheduleCars(speeds, lanes, startTimes, scheduled);
+        long started = System.nanoTime();
+        for (int i = 0; i < 20; i++) {
+            engine.step(SimulationEngine.TICK_SECONDS);  // Warm up
+        }
+        double msPerTick = (System.nanoTime() - started) / 1e6 / 20;
+        System.out.printf("Cars: %,d (+%,d scheduled) | %.1f ms/tick%n", carCount, scheduled, msPerTick);
+
+        Path file = Files.createTempFile("checkpoint", ".ckpt");
+        try {
+            CheckpointWriter writer = new CheckpointWriter(engine, file, CheckpointWriter.DEFAULT_INTERVAL_SECONDS);
+            for (int i = 0; i <= deltas; i++) {
+                if (i > 0) {
+                    for (int t = 0; t < ticksBetween; t++) {
+                        engine.step(SimulationEngine.TICK_SECONDS);
+                    }
+                }
+                long pages = writer.pagesWritten();
+                started = System.nanoTime();
+                writer.writeCheckpoint();
+                double writeMs = (System.nanoTime() - started) / 1e6;
+                System.out.printf("%-5s tick %4d | pause %6.2f ms (%.0f%% of a tick) | %,11d bytes, %,6d pages"
+                                + " | written in %.0f ms%n", i == 0 ? "full" : "delta", engine.tickCount(),
+                        writer.lastPauseNanos() / 1e6, 100 * writer.lastPauseNanos() / 1e6 / msPerTick,
+                        writer.lastFrameBytes(), writer.pagesWritten() - pages, writeMs);
+            }
+            writer.close();  // Saves the state once more: the resumed engine starts from here
+            System.out.printf("File: %,d bytes%n", Files.size(file));
+
+            started = System.nanoTime();
+            SimulationEngine resumed = CheckpointReader.restore(file);
+            System.out.printf("Resume: %.0f ms for %,d cars, %,d still scheduled%n",
+                    (System.nanoTime() - started) / 1e6, resumed.carCount(), resumed.pendingDepartures());
+
+            EngineSnapshot expected = new EngineSnapshot();
+            EngineSnapshot actual = new EngineSnapshot();
+            for (int t = 0; t <= COMPARED_TICKS; t++) {
+                if (t > 0) {
+                    engine.step(SimulationEngine.TICK_SECONDS);
+                    resumed.step(SimulationEngine.TICK_SECONDS);
+                }
+                engine.snapshot(expected);
+                resumed.snapshot(actual);
+                String difference = compare(expected, actual);
+                if (difference != null) {
+                    System.out.println("MISMATCH after " + t + " ticks: " + difference);
+                    System.exit(1);
+                }
+            }
+            System.out.println("OK: resumed run matches the original for " + COMPARED_TICKS + " ticks");
+        } finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(file.resolveSibling(file.getFileName() + ".tmp"));
+        }
+    }
+
+    // First difference between two snapshots, or null when they are identical
+    private static String compare(EngineSnapshot expected, EngineSnapshot actual) {
+        if (expected.tick() != actual.tick() || expected.simTime() != actual.simTime()) {
+            return "tick " + expected.tick() + " vs " + actual.tick();
+        }
+        if (expected.carCount() != actual.carCount() || expected.lightCount() != actual.lightCount()) {
+            return "car or light count";
+        }
+        for (int id = 0; id < expected.carCount(); id++) {
+            if (expected.carPresent(id) != actual.carPresent(id)
+                    || Double.compare(expected.carPosition(id), actual.carPosition(id)) != 0
+                    || Double.compare(expected.carSpeed(id), actual.carSpeed(id)) != 0
+                    || expected.carFinished(id) != actual.carFinished(id)
+                    || expected.carStopped(id) != actual.carStopped(id)) {
+                return "car " + id;
+            }
+        }
+        for (int id = 0; id < expected.lightCount(); id++) {
+            if (expected.lightColor(id) != actual.lightColor(id)) {
+                return "light " + id;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,70 @@
+/**
+ CMSC 335
+ Project 4
+ Class Descriptions:
+ DiscreteEventBenchmark compares DiscreteEventSimulation with the fixed-step SimulationEngine on sparse traffic: a
+ thousand cars by default, one entering every minute in one of a few lanes, past three lights. The STEP_LOOP engine
+ steps every simulated second whether or not anything happens; the discrete-event run only handles each car's
+ arrivals at the lights and at the end of the track, and the phase changes of lights that have cars waiting. Both
+ runs go until every car has finished. It prints the wall time, the ticks or events handled and the simulated time
+ of both, and the speedup; the two models differ (the event model has no acceleration phase), so the simulated end
+ times are close but not equal.
+ Usage: java bench.DiscreteEventBenchmark [cars] [secondsBetweenCars] [lanes]
+ */
+
+package bench;
+
+import engine.DiscreteEventSimulation;
+import engine.ExecutionMode;
+import engine.SimulationEngine;
+
+public class DiscreteEventBenchmark {
+
+    private static final int[] LIGHTS = {1250, 2500, 3750};
+
+    public static void main(String[] args) {
+        int carCount = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        double interval = args.length > 1 ? Double.parseDouble(args[1]) : 60;
+        int laneCount = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+
+        int[] speeds = new int[carCount];
+        int[] lanes = new int[carCount];
+        double[] startTimes = new double[carCount];
+        for (int i = 0; i < carCount; i++) {
+            speeds[i] = 5 + (i * 7) % 16;
+            lanes[i] = i % laneCount;
+            startTimes[i] = i * interval;
+        }
+        System.out.printf("Cars: %,d, one every %.0f s in %d lanes, %d lights%n", carCount, interval, laneCount,
+                LIGHTS.length);
+
+        long started = System.nanoTime();
+        SimulationEngine engine = new SimulationEngine(ExecutionMode.STEP_LOOP, carCount, 1);
+        for (int position : LIGHTS) {
+            engine.addLight(position);
+        }
+        engine.scheduleCars(speeds, lanes, startTimes, carCount);
+        while (!engine.allCarsFinished()) {
+            engine.step(SimulationEngine.TICK_SECONDS);
+        }
+        double stepMs = (System.nanoTime() - started) / 1e6;
+        System.out.printf("STEP_LOOP:      %8.1f ms | %,10d ticks  | %,.0f simulated s%n", stepMs, engine.tickCount(),
+                engine.simTime());
+
+        started = System.nanoTime();
+        DiscreteEventSimulation simulation = new DiscreteEventSimulation(1);
+        for (int position : LIGHTS) {
+            simulation.addLight(position);
+        }
+        simulation.scheduleCars(speeds, lanes, startTimes, carCount);
+        while (!simulation.allCarsFinished()) {
+            simulation.step();
+        }
+        double eventMs = (System.nanoTime() - started) / 1e6;
+        System.out.printf("DISCRETE_EVENT: %8.1f ms | %,10d events | %,.0f simulated s%n", eventMs,
+                simulation.eventsProcessed(), simulation.simTime());
+
+        System.out.printf("Speedup: %.0fx | cars finished %d vs %d%n", stepMs / eventMs,
+                engine.metrics().carsFinished(), simulation.carsFinished());
+    }
+}
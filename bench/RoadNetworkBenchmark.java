@@ -0,0 +1,78 @@
+/**
+ CMSC 335
+ Project 4
+ Class Descriptions:
+ RoadNetworkBenchmark builds a city grid (100 x 100 intersections by default, 200 m blocks) as a CSR RoadNetwork and
+ drives cars across it. Each car follows an L-shaped route: east along its row, then south along a column, crossing a
+ signal at every intersection. It prints the build time, the heap bytes per edge and per car, and the time per tick.
+ Usage: java bench.RoadNetworkBenchmark [gridSize] [cars] [ticks]
+ */
+
+package bench;
+
+import engine.CarStore;
+import engine.ExecutionMode;
+import engine.RoadNetwork;
+import engine.SimulationEngine;
+
+import java.util.SplittableRandom;
+
+public class RoadNetworkBenchmark {
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        int carCount = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+        int ticks = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+
+        long started = System.nanoTime();
+        RoadNetwork network = RoadNetwork.grid(size, size, 200);
+        double buildMs = (System.nanoTime() - started) / 1e6;
+        System.out.printf("Grid %dx%d: %,d intersections, %,d edges, %,d signals built in %.1f ms%n",
+                size, size, network.nodeCount(), network.edgeCount(), network.signalCount(), buildMs);
+        System.out.printf("CSR: %,d bytes (%d bytes/edge + %d bytes/node)%n",
+                network.footprintBytes(), RoadNetwork.BYTES_PER_EDGE, RoadNetwork.BYTES_PER_NODE);
+
+        SimulationEngine engine = new SimulationEngine(ExecutionMode.STEP_LOOP, carCount, 7L);
+        engine.attachNetwork(network);
+        SplittableRandom random = new SplittableRandom(7L);
+        long edgesDriven = 0;
+        for (int i = 0; i < carCount; i++) {
+            int[] route = lRoute(network, size, random);
+            edgesDriven += route.length;
+            engine.addCar(8 + random.nextInt(8), route);
+        }
+        System.out.printf("Cars: %,d on routes of %.1f edges on average | CarStore %d bytes/car%n",
+                carCount, (double) edgesDriven / carCount, CarStore.BYTES_PER_CAR);
+
+        for (int i = 0; i < 20; i++) {
+            engine.step(SimulationEngine.TICK_SECONDS);
+        }
+        started = System.nanoTime();
+        for (int i = 0; i < ticks; i++) {
+            engine.step(SimulationEngine.TICK_SECONDS);
+        }
+        double msPerTick = (System.nanoTime() - started) / 1e6 / ticks;
+        System.out.printf("Step: %.2f ms/tick | %.1f ns/car/tick (incl. %,d light phases per tick)%n",
+                msPerTick, msPerTick * 1e6 / carCount, network.signalCount());
+    }
+
+    // East from a random intersection to a random column, then south to a random row
+    private static int[] lRoute(RoadNetwork network, int size, SplittableRandom random) {
+        int row = random.nextInt(size - 1);
+        int column = random.nextInt(size - 1);
+        int toColumn = column + 1 + random.nextInt(size - 1 - column);
+        int toRow = row + 1 + random.nextInt(size - 1 - row);
+        int[] route = new int[(toColumn - column) + (toRow - row)];
+        int node = row * size + column;
+        int i = 0;
+        while (node % size != toColumn) {
+            route[i++] = network.edgeBetween(node, node + 1);
+            node++;
+        }
+        while (node / size != toRow) {
+            route[i++] = network.edgeBetween(node, node + size);
+            node += size;
+        }
+        return route;
+    }
+}
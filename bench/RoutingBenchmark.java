@@ -0,0 +1,99 @@
+/**
+ CMSC 335
+ Project 4
+ Class Descriptions:
+ RoutingBenchmark compares route queries on a city grid (100 x 100 intersections by default): plain Dijkstra, landmark
+ A* (ALT) with 16 landmarks, and ALT behind the LRU route cache with spawns that repeat a limited set of entry/exit
+ pairs, as a spawner feeding a corridor would. It prints the time and nodes settled per query, the cache hit rate,
+ and checks that ALT finds routes exactly as short as Dijkstra's.
+ Usage: java bench.RoutingBenchmark [gridSize] [queries]
+ */
+
+package bench;
+
+import engine.RoadNetwork;
+import engine.RouteService;
+
+import java.util.SplittableRandom;
+
+public class RoutingBenchmark {
+
+    private static final int LANDMARKS = 16;
+    private static final int ENTRY_POINTS = 40;   // Distinct origins and destinations in the spawn test
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        int queries = args.length > 1 ? Integer.parseInt(args[1]) : 2_000;
+        RoadNetwork network = RoadNetwork.grid(size, size, 200);
+        int nodes = network.nodeCount();
+
+        long started = System.nanoTime();
+        RouteService alt = new RouteService(network, LANDMARKS, 0);
+        double precomputeMs = (System.nanoTime() - started) / 1e6;
+        RouteService dijkstra = new RouteService(network, 0, 0);
+        System.out.printf("Grid %dx%d (%,d nodes, %,d edges) | %d landmarks in %.0f ms, %,d bytes%n", size, size,
+                nodes, network.edgeCount(), LANDMARKS, precomputeMs, 2L * LANDMARKS * nodes * Integer.BYTES);
+
+        // Random origin/destination pairs, the same for both searches
+        SplittableRandom random = new SplittableRandom(11L);
+        int[] origins = new int[queries];
+        int[] destinations = new int[queries];
+        for (int i = 0; i < queries; i++) {
+            origins[i] = random.nextInt(nodes);
+            do {
+                destinations[i] = random.nextInt(nodes);
+            } while (destinations[i] == origins[i]);
+        }
+        for (int i = 0; i < Math.min(200, queries); i++) {  // Warm up both
+            dijkstra.route(origins[i], destinations[i]);
+            alt.route(origins[i], destinations[i]);
+        }
+
+        long dijkstraSettled = dijkstra.nodesSettled();
+        started = System.nanoTime();
+        long dijkstraLength = 0;
+        for (int i = 0; i < queries; i++) {
+            dijkstraLength += length(network, dijkstra.route(origins[i], destinations[i]));
+        }
+        double dijkstraUs = (System.nanoTime() - started) / 1e3 / queries;
+        dijkstraSettled = dijkstra.nodesSettled() - dijkstraSettled;
+
+        long altSettled = alt.nodesSettled();
+        started = System.nanoTime();
+        long altLength = 0;
+        for (int i = 0; i < queries; i++) {
+            altLength += length(network, alt.route(origins[i], destinations[i]));
+        }
+        double altUs = (System.nanoTime() - started) / 1e3 / queries;
+        altSettled = alt.nodesSettled() - altSettled;
+
+        System.out.printf("Dijkstra: %8.1f us/query | %,7d nodes settled/query%n", dijkstraUs,
+                dijkstraSettled / queries);
+        System.out.printf("ALT:      %8.1f us/query | %,7d nodes settled/query | %s%n", altUs, altSettled / queries,
+                altLength == dijkstraLength ? "same route lengths" : "ROUTE LENGTHS DIFFER");
+
+        // Spawns repeating ENTRY_POINTS x ENTRY_POINTS trips through the cache
+        RouteService cached = new RouteService(network, LANDMARKS, 4_096);
+        int[] entries = new int[ENTRY_POINTS];
+        for (int i = 0; i < ENTRY_POINTS; i++) {
+            entries[i] = random.nextInt(nodes);
+        }
+        int spawns = queries * 50;
+        started = System.nanoTime();
+        for (int i = 0; i < spawns; i++) {
+            cached.route(entries[random.nextInt(ENTRY_POINTS)], entries[random.nextInt(ENTRY_POINTS)]);
+        }
+        double cachedUs = (System.nanoTime() - started) / 1e3 / spawns;
+        System.out.printf("ALT+LRU:  %8.2f us/spawn | %,d spawns, %.1f%% cache hits%n", cachedUs, spawns,
+                100.0 * cached.cacheHits() / (cached.cacheHits() + cached.cacheMisses()));
+    }
+
+    // Total length of a route in meters (0 for none)
+    private static long length(RoadNetwork network, int[] route) {
+        long total = 0;
+        if (route != null) {
+            for (int edge : route) total += network.length(edge);
+        }
+        return total;
+    }
+}
@@ -0,0 +1,100 @@
+/**
+ CMSC 335
+ Project 4
+ Class Descriptions:
+ ScenarioLoadBenchmark writes a scenario file with a large fleet (ten million cars by default, starting a tenth of a
+ second apart in 1024 lanes behind three lights) and compares three timings: reading the file's bytes through a
+ FileChannel without looking at them, which is the disk (or page cache) bandwidth; ScenarioLoader.load, which maps
+ and parses the file into a Scenario; and Scenario.applyTo on a fresh engine, which puts the cars due at time 0 into
+ the CarStore and schedules the rest. The file is read and parsed once first, so all three see the same cache state
+ and the parser is compiled. Parsing keeps up with the disk when its MB/s is at or above what the drive delivers; the
+ warm read shows the page cache's (much higher) bandwidth.
+ Usage: java [-Xmx4g] bench.ScenarioLoadBenchmark [cars] [carsAtStart]
+ */
+
+package bench;
+
+import engine.ExecutionMode;
+import engine.Scenario;
+import engine.ScenarioLoader;
+import engine.SimulationEngine;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+public class ScenarioLoadBenchmark {
+
+    private static final int LANES = 1024;
+
+    public static void main(String[] args) throws IOException {
+        int carCount = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        int carsAtStart = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+
+        Path file = Files.createTempFile("scenario", ".txt");
+        try {
+            write(file, carCount, carsAtStart);
+            double megabytes = Files.size(file) / 1e6;
+            System.out.printf("Scenario: %,d cars, %.0f MB%n", carCount, megabytes);
+            readBytes(file);  // Same page-cache state for every timing below
+            ScenarioLoader.load(file);  // Warm up the parser
+
+            long started = System.nanoTime();
+            long checksum = readBytes(file);
+            double readSeconds = (System.nanoTime() - started) / 1e9;
+            System.out.printf("read     %6.0f ms | %6.0f MB/s (checksum %d)%n", readSeconds * 1e3,
+                    megabytes / readSeconds, checksum);
+
+            started = System.nanoTime();
+            Scenario scenario = ScenarioLoader.load(file);
+            double parseSeconds = (System.nanoTime() - started) / 1e9;
+            System.out.printf("parse    %6.0f ms | %6.0f MB/s | %.1f M cars/s | %.0f MB of columns%n",
+                    parseSeconds * 1e3, megabytes / parseSeconds, scenario.carCount() / parseSeconds / 1e6,
+                    scenario.footprintBytes() / 1e6);
+
+            SimulationEngine engine = new SimulationEngine(ExecutionMode.STEP_LOOP, 16, 1);
+            started = System.nanoTime();
+            scenario.applyTo(engine);
+            double applySeconds = (System.nanoTime() - started) / 1e9;
+            System.out.printf("apply    %6.0f ms | %,d cars on the road, %,d scheduled%n", applySeconds * 1e3,
+                    engine.carCount(), engine.pendingDepartures());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    // Three lights with their own timings, then the fleet in order of start time
+    private static void write(Path file, int carCount, int carsAtStart) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.US_ASCII)) {
+            out.write("# Generated by bench.ScenarioLoadBenchmark\n");
+            out.write("light 1250 30 5 25\n");
+            out.write("light 2500 40 80 40\n");
+            out.write("light 3750 35.5 4.5 30\n");
+            StringBuilder line = new StringBuilder(32);
+            for (int i = 0; i < carCount; i++) {
+                int tenths = Math.max(0, i - carsAtStart + 1);
+                line.setLength(0);
+                line.append("car ").append(5 + i % 11).append(' ').append(i % LANES).append(' ')
+                        .append(tenths / 10).append('.').append(tenths % 10).append('\n');
+                out.append(line);
+            }
+        }
+    }
+
+    // Read every byte of the file into a direct buffer; returns a sum so the reads are not optimized away
+    private static long readBytes(Path file) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+        long checksum = 0;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (channel.read(buffer.clear()) > 0) {
+                checksum += buffer.get(0);
+            }
+        }
+        return checksum;
+    }
+}
@@ -0,0 +1,101 @@
+/**
+ CMSC 335
+ Project 4
+ Class Descriptions:
+ SegmentScalingBenchmark measures step(dt) on a large number of cars (200,000 by default) with the cars moved
+ sequentially and then by SegmentStepper on 4, 16 and 64 fork-join workers. The cars enter the road in waves during the
+ warm-up and bunch up in front of the red lights, so the density is far from uniform. For each parallelism it prints the
+ time per tick, the speedup over one worker, how often the boundaries were rebalanced and the mean load imbalance
+ (largest segment over the mean, 1.0 is perfect) next to the imbalance an even split of the track would have had, and it
+ checks that the trajectory digest matches the sequential run. Speedups are bounded by the CPUs available, which are
+ printed first.
+ Usage: java bench.SegmentScalingBenchmark [cars] [ticks]
+ */
+
+package bench;
+
+import engine.EngineSnapshot;
+import engine.ExecutionMode;
+import engine.RunRecording;
+import engine.SimulationEngine;
+
+import java.util.SplittableRandom;
+
+public class SegmentScalingBenchmark {
+
+    private static final int[] PARALLELISM = {1, 4, 16, 64};
+    private static final int WARMUP_TICKS = 300;
+    private static final int CARS_PER_LANE = 400;   // About as many as fit on the track
+
+    public static void main(String[] args) {
+        int carCount = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int ticks = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+
+        System.out.printf("Cars: %,d | Ticks: %d | CPUs available: %d%n",
+                carCount, ticks, Runtime.getRuntime().availableProcessors());
+
+        double baseline = 0;
+        long baselineDigest = 0;
+        for (int parallelism : PARALLELISM) {
+            SimulationEngine engine = new SimulationEngine(ExecutionMode.STEP_LOOP, carCount, 1L);
+            RunRecording recording = new RunRecording(1L);
+            engine.startRecording(recording);
+            engine.setParallelism(parallelism);
+            engine.addLight(1250);
+            engine.addLight(2500);
+            engine.addLight(3750);
+
+            // Spawn the cars over the warm-up so they do not all share one position
+            int perTick = (carCount + WARMUP_TICKS - 1) / WARMUP_TICKS;
+            int lanes = Math.max(1, carCount / CARS_PER_LANE);
+            SplittableRandom random = new SplittableRandom(1L);
+            int spawned = 0;
+            for (int i = 0; i < WARMUP_TICKS; i++) {
+                for (int j = 0; j < perTick && spawned < carCount; j++, spawned++) {
+                    engine.addCar(5 + random.nextInt(21), spawned % lanes);
+                }
+                engine.step(SimulationEngine.TICK_SECONDS);
+            }
+            long rebalancesBefore = engine.segmentRebalances();
+            double imbalanceSum = 0;
+            long elapsed = 0;
+            for (int i = 0; i < ticks; i++) {
+                long started = System.nanoTime();
+                engine.step(SimulationEngine.TICK_SECONDS);
+                elapsed += System.nanoTime() - started;
+                imbalanceSum += engine.segmentImbalance();
+            }
+            double msPerTick = elapsed / 1e6 / ticks;
+            long digest = engine.stopRecording().digest();
+            if (parallelism == 1) {
+                baseline = msPerTick;
+                baselineDigest = digest;
+            }
+
+            System.out.printf("Parallelism %2d: %7.2f ms/tick | speedup %.2fx | rebalances %3d | imbalance %.2f"
+                            + " (even split %.2f) | %s%n",
+                    parallelism, msPerTick, baseline / msPerTick, engine.segmentRebalances() - rebalancesBefore,
+                    imbalanceSum / ticks, evenSplitImbalance(engine, parallelism * 4),
+                    digest == baselineDigest ? "same trajectory" : "TRAJECTORY DIFFERS");
+            engine.stop();
+        }
+    }
+
+    // Largest over mean car count if the track were cut into equal-length segments
+    private static double evenSplitImbalance(SimulationEngine engine, int segmentCount) {
+        EngineSnapshot snapshot = new EngineSnapshot();
+        engine.snapshot(snapshot);
+        int[] counts = new int[segmentCount];
+        int total = 0;
+        for (int id = 0; id < snapshot.carCount(); id++) {
+            if (snapshot.carPresent(id) && !snapshot.carFinished(id)) {
+                int segment = (int) (snapshot.carPosition(id) * segmentCount / SimulationEngine.TRACK_LENGTH);
+                counts[Math.min(segment, segmentCount - 1)]++;
+                total++;
+            }
+        }
+        int largest = 0;
+        for (int count : counts) largest = Math.max(largest, count);
+        return total == 0 ? 1.0 : largest * (double) segmentCount / total;
+    }
+}
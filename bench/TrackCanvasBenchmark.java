@@ -0,0 +1,49 @@
+/**
+ CMSC 335
+ Project 4
+ Class Descriptions:
+ TrackCanvasBenchmark measures how long the TrackCanvas takes to rasterize one frame off the EDT for a large number of
+ visible cars (50,000 by default) and compares it with the 16.7 ms budget of a 60 fps display.
+ Usage: java -Djava.awt.headless=true bench.TrackCanvasBenchmark [cars] [frames]
+ */
+
+package bench;
+
+import engine.EngineSnapshot;
+import engine.SimulationEngine;
+import gui.TrackCanvas;
+
+public class TrackCanvasBenchmark {
+
+    public static void main(String[] args) {
+        int carCount = args.length > 0 ? Integer.parseInt(args[0]) : 50_000;
+        int frames = args.length > 1 ? Integer.parseInt(args[1]) : 300;
+
+        SimulationEngine engine = new SimulationEngine();
+        engine.addLight(1250);
+        engine.addLight(2500);
+        engine.addLight(3750);
+        for (int i = 0; i < carCount; i++) {
+            engine.addCar(5 + i % 11, i);  // Own lane, so the cars spread out instead of queueing
+        }
+        EngineSnapshot snapshot = new EngineSnapshot();
+        TrackCanvas canvas = new TrackCanvas(1000, 150);
+
+        // Warm up while the cars spread out along the track
+        for (int i = 0; i < 100; i++) {
+            engine.step(SimulationEngine.TICK_SECONDS);
+            engine.snapshot(snapshot);
+            canvas.render(snapshot);
+        }
+
+        long started = System.nanoTime();
+        for (int i = 0; i < frames; i++) {
+            engine.snapshot(snapshot);
+            canvas.render(snapshot);
+        }
+        double msPerFrame = (System.nanoTime() - started) / 1e6 / frames;
+
+        System.out.printf("Cars: %,d | %.2f ms per frame (snapshot + rasterize) | budget at 60 fps: 16.67 ms%n",
+                carCount, msPerFrame);
+    }
+}
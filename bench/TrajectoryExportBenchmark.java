@@ -0,0 +1,80 @@
+/**
+ CMSC 335
+ Project 4
+ Class Descriptions:
+ TrajectoryExportBenchmark steps a SimulationEngine holding a large number of cars (one million by default) while a
+ TrajectoryExporter samples it at 20 frames a second, and compares the time per tick with a run that exports nothing.
+ It runs the binary format, binary with gzip, and CSV, and prints for each the frames written, the bytes per car per
+ frame, and the export throughput. The exporter runs on its own threads, so on a machine with a spare core the tick
+ time should not change; on a single core the threads share it and the tick slows by the export's CPU share.
+ Usage: java bench.TrajectoryExportBenchmark [cars] [ticks]
+ */
+
+package bench;
+
+import engine.SimulationEngine;
+import engine.TrajectoryExporter;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class TrajectoryExportBenchmark {
+
+    private static final int LANES = 1024;   // Cars queue behind each other within a lane
+
+    public static void main(String[] args) throws IOException {
+        int carCount = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int ticks = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+
+        SimulationEngine engine = new SimulationEngine();
+        engine.addLight(1250);
+        engine.addLight(2500);
+        engine.addLight(3750);
+        for (int i = 0; i < carCount; i++) {
+            engine.addCar(5 + i % 11, i % LANES);
+        }
+        for (int i = 0; i < 10; i++) {
+            engine.step(SimulationEngine.TICK_SECONDS);  // Warm up
+        }
+
+        double baseline = msPerTick(engine, ticks);
+        System.out.printf("Cars: %,d | no export: %.2f ms/tick%n", carCount, baseline);
+
+        Path file = Files.createTempFile("trajectory", ".out");
+        try {
+            run(engine, ticks, file, TrajectoryExporter.Format.BINARY, false, "binary");
+            run(engine, ticks, file, TrajectoryExporter.Format.BINARY, true, "binary+gzip");
+            run(engine, ticks, file, TrajectoryExporter.Format.CSV, false, "csv");
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    // Step while one exporter samples the engine at 20 frames a second
+    private static void run(SimulationEngine engine, int ticks, Path file, TrajectoryExporter.Format format,
+                            boolean compress, String label) throws IOException {
+        TrajectoryExporter exporter = new TrajectoryExporter(engine, file, format, compress,
+                TrajectoryExporter.DEFAULT_FRAMES_PER_SECOND);
+        long started = System.nanoTime();
+        exporter.start();
+        double ms = msPerTick(engine, ticks);
+        exporter.close();
+        double seconds = (System.nanoTime() - started) / 1e9;
+
+        long frames = exporter.framesWritten();
+        long carFrames = frames * engine.carCount();
+        System.out.printf("%-12s %.2f ms/tick | %d frames in %.1f s (%.1f/s) | %.2f bytes/car/frame encoded,"
+                        + " %.2f on disk | %.1f M car rows/s%n",
+                label, ms, frames, seconds, frames / seconds, (double) exporter.bytesEncoded() / carFrames,
+                (double) Files.size(file) / carFrames, carFrames / seconds / 1e6);
+    }
+
+    private static double msPerTick(SimulationEngine engine, int ticks) {
+        long started = System.nanoTime();
+        for (int i = 0; i < ticks; i++) {
+            engine.step(SimulationEngine.TICK_SECONDS);
+        }
+        return (System.nanoTime() - started) / 1e6 / ticks;
+    }
+}
@@ -0,0 +1,63 @@
+/**
+ CMSC 335
+ Project 4
+ Class Descriptions:
+ VirtualCarActorBenchmark starts a large number of concurrent CarThread actors (100,000 by default) in the chosen
+ execution mode, lets them drive for a few seconds and reports start-up time, how far the cars got compared with
+ free flow, heap in use and the number of platform threads. Run it with Java 21+ for virtual threads.
+ Usage: java bench.VirtualCarActorBenchmark [cars] [seconds] [VIRTUAL_THREADS|PLATFORM_THREADS]
+ */
+
+package bench;
+
+import engine.EngineSnapshot;
+import engine.ExecutionMode;
+import engine.SimulationEngine;
+
+public class VirtualCarActorBenchmark {
+
+    public static void main(String[] args) throws InterruptedException {
+        int carCount = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        ExecutionMode mode = args.length > 2 ? ExecutionMode.valueOf(args[2]) : ExecutionMode.VIRTUAL_THREADS;
+
+        SimulationEngine engine = new SimulationEngine(mode, carCount);
+        engine.addLight(1250);
+        engine.addLight(2500);
+        engine.addLight(3750);
+        long speedSum = 0;
+        for (int i = 0; i < carCount; i++) {
+            int speed = 1 + i % 5;   // Slow cars, so every actor is still driving at the end
+            engine.addCar(speed, i);  // Own lane: no car is held up behind a slower one
+            speedSum += speed;
+        }
+
+        long started = System.nanoTime();
+        engine.start();
+        double startMillis = (System.nanoTime() - started) / 1e6;
+
+        Thread.sleep(seconds * 1000L);
+        engine.pause();
+        double elapsedSeconds = (System.nanoTime() - started) / 1e9;
+
+        EngineSnapshot snapshot = new EngineSnapshot();
+        engine.snapshot(snapshot);
+        double distance = 0;
+        int driving = 0;
+        for (int id = 0; id < snapshot.carCount(); id++) {
+            distance += snapshot.carPosition(id);
+            if (!snapshot.carFinished(id)) driving++;
+        }
+        double freeFlow = speedSum * elapsedSeconds * engine.clock().actorScale();
+        Runtime runtime = Runtime.getRuntime();
+        long heapMb = (runtime.totalMemory() - runtime.freeMemory()) >> 20;
+        engine.stop();
+
+        System.out.printf("Mode: %s | Java %s%n", mode, System.getProperty("java.version"));
+        System.out.printf("Car actors: %,d started in %.0f ms, %,d still driving after %.1f s%n",
+                carCount, startMillis, driving, elapsedSeconds);
+        System.out.printf("Progress: %.1f%% of free-flow distance (red lights hold some cars)%n",
+                100 * distance / freeFlow);
+        System.out.printf("Heap in use: %,d MB | Platform threads: %d%n", heapMb, Thread.activeCount());
+    }
+}
@@ -0,0 +1,69 @@
+/**
+ CMSC 335
+ Project 4
+ Class Descriptions:
+ CarTickBenchmark measures SimulationEngine.step() against the number of cars. Every measurement iteration starts
+ from a freshly built engine (three lights, cars spread over lanes of TRAFFIC_PER_LANE) and times a batch of
+ TICKS_PER_BATCH steps, so each commit is measured on exactly the same sequence of states. Cars are slow enough that
+ none of them finishes inside a batch. The score is the time for the whole batch.
+ */
+
+package jmh;
+
+import engine.ExecutionMode;
+import engine.SimulationEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, batchSize = CarTickBenchmark.TICKS_PER_BATCH)
+@Measurement(iterations = 10, batchSize = CarTickBenchmark.TICKS_PER_BATCH)
+@Fork(1)
+public class CarTickBenchmark {
+
+    static final int TICKS_PER_BATCH = 200;
+    private static final int TRAFFIC_PER_LANE = 400;
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int cars;
+
+    private SimulationEngine engine;
+
+    @Setup(Level.Iteration)
+    public void buildEngine() {
+        engine = new SimulationEngine(ExecutionMode.STEP_LOOP, cars, 1L);
+        engine.setParallelism(1);
+        engine.addLight(1250);
+        engine.addLight(2500);
+        engine.addLight(3750);
+        int lanes = Math.max(1, cars / TRAFFIC_PER_LANE);
+        for (int i = 0; i < cars; i++) {
+            engine.addCar(1 + i % 4, i % lanes);  // At most 4 m/s: 800 m per batch
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void stopEngine() {
+        engine.stop();
+    }
+
+    @Benchmark
+    public void tick() {
+        engine.step(SimulationEngine.TICK_SECONDS);
+    }
+}
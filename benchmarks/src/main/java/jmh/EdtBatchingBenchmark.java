@@ -0,0 +1,82 @@
+/**
+ CMSC 335
+ Project 4
+ Class Descriptions:
+ EdtBatchingBenchmark measures getting label updates onto the Swing event dispatch thread. invokeLaterPerUpdate posts
+ one SwingUtilities.invokeLater per label, as every CarThread and TrafficLightThread used to do; batched posts a single
+ task that applies all of them, as the RenderPump does once per frame. Both wait for the EDT to finish, so the score is
+ the full submit-to-applied time of one frame. Runs headless.
+ */
+
+package jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.swing.JLabel;
+import javax.swing.SwingUtilities;
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class EdtBatchingBenchmark {
+
+    private static final Runnable BARRIER = () -> { };
+
+    @Param({"3", "100", "10000"})
+    public int updates;
+
+    private JLabel[] labels;
+    private String[][] texts;   // Two texts per label, alternated so every update changes the label
+    private int frame = 0;
+
+    @Setup
+    public void build() throws InterruptedException, InvocationTargetException {
+        labels = new JLabel[updates];
+        texts = new String[2][updates];
+        SwingUtilities.invokeAndWait(() -> {
+            for (int i = 0; i < updates; i++) {
+                labels[i] = new JLabel("Car " + i);
+            }
+        });
+        for (int i = 0; i < updates; i++) {
+            texts[0][i] = "Car " + i + " — Pos: 100";
+            texts[1][i] = "Car " + i + " — Pos: 200";
+        }
+    }
+
+    @Benchmark
+    public void invokeLaterPerUpdate() throws InterruptedException, InvocationTargetException {
+        String[] frameTexts = texts[frame++ & 1];
+        for (int i = 0; i < updates; i++) {
+            JLabel label = labels[i];
+            String text = frameTexts[i];
+            SwingUtilities.invokeLater(() -> label.setText(text));
+        }
+        SwingUtilities.invokeAndWait(BARRIER);  // Wait until the EDT has applied all of them
+    }
+
+    @Benchmark
+    public void batched() throws InterruptedException, InvocationTargetException {
+        String[] frameTexts = texts[frame++ & 1];
+        SwingUtilities.invokeAndWait(() -> {
+            for (int i = 0; i < updates; i++) {
+                labels[i].setText(frameTexts[i]);
+            }
+        });
+    }
+}
@@ -0,0 +1,124 @@
+/**
+ CMSC 335
+ Project 4
+ Class Descriptions:
+ IntersectionLookupBenchmark measures finding the lights whose window (100 m before to 10 m after) contains a car, the
+ check a car makes on every tick. cursor is what SimulationEngine.moveCar does, through the same IntersectionIndex
+ skipCleared and windowEnd calls: each car keeps the index slot of the next light ahead, skips it past lights it has
+ cleared and scans forward from there, so a tick costs no search; the cars drive forward through the track (one
+ CARS-sized fleet, re-entering at the start) as they would in a run. sortedIndex is a binary search in the sorted
+ IntersectionIndex from a random position followed by the same scan, the way the cursor is re-seated when lights are
+ added. hashMapScan is the original CarThread.run() approach of walking every entry of a HashMap<Integer, light> and
+ testing each position, kept as the baseline.
+ */
+
+package jmh;
+
+import engine.IntersectionIndex;
+import engine.SimulationEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IntersectionLookupBenchmark {
+
+    private static final int QUERIES = 1024;   // Car positions cycled through (power of two)
+    private static final int CARS = 1024;      // Cars driving in the cursor case (power of two)
+
+    @Param({"3", "64", "1024"})
+    public int lights;
+
+    private IntersectionIndex index;
+    private Map<Integer, Object> lightMap;
+    private final double[] positions = new double[QUERIES];
+    private int next = 0;
+    private final double[] carPositions = new double[CARS];
+    private final double[] carSpeeds = new double[CARS];
+    private final int[] cursors = new int[CARS];
+    private int nextCar = 0;
+
+    @Setup
+    public void build() {
+        SplittableRandom random = new SplittableRandom(5L);
+        int[] lightPositions = new int[lights];
+        lightMap = new HashMap<>();
+        for (int i = 0; i < lights; i++) {
+            lightPositions[i] = (int) ((long) SimulationEngine.TRACK_LENGTH * (i + 1) / (lights + 1));
+            lightMap.put(lightPositions[i], new Object());
+        }
+        index = IntersectionIndex.of(lightPositions);
+        for (int i = 0; i < QUERIES; i++) {
+            positions[i] = random.nextDouble() * SimulationEngine.TRACK_LENGTH;
+        }
+        for (int car = 0; car < CARS; car++) {
+            carPositions[car] = random.nextDouble() * SimulationEngine.TRACK_LENGTH;
+            carSpeeds[car] = 5 + random.nextInt(16);
+            cursors[car] = index.ceiling(carPositions[car] - SimulationEngine.CLEARANCE_DISTANCE);
+        }
+    }
+
+    @Benchmark
+    public int cursor() {
+        int car = nextCar++ & (CARS - 1);
+        double position = carPositions[car] + carSpeeds[car] * SimulationEngine.TICK_SECONDS;
+        int cursor = cursors[car];
+        if (position >= SimulationEngine.TRACK_LENGTH) {
+            position -= SimulationEngine.TRACK_LENGTH;  // Finished: enter again at the start, before every light
+            cursor = 0;
+        }
+        carPositions[car] = position;
+        cursor = index.skipCleared(cursor, position, SimulationEngine.CLEARANCE_DISTANCE);
+        cursors[car] = cursor;
+        int found = 0;
+        int end = index.windowEnd(cursor, position, SimulationEngine.APPROACH_DISTANCE);
+        for (int slot = cursor; slot < end; slot++) {
+            found += index.lightId(slot) + 1;
+        }
+        return found;
+    }
+
+    @Benchmark
+    public int sortedIndex() {
+        double position = positions[next++ & (QUERIES - 1)];
+        int found = 0;
+        int slot = index.ceiling(position - SimulationEngine.CLEARANCE_DISTANCE);
+        int end = index.windowEnd(slot, position, SimulationEngine.APPROACH_DISTANCE);
+        for (; slot < end; slot++) {
+            found += index.lightId(slot) + 1;
+        }
+        return found;
+    }
+
+    @Benchmark
+    public int hashMapScan() {
+        double position = positions[next++ & (QUERIES - 1)];
+        int found = 0;
+        for (Map.Entry<Integer, Object> entry : lightMap.entrySet()) {
+            int lightPosition = entry.getKey();
+            if (position >= lightPosition - SimulationEngine.APPROACH_DISTANCE
+                    && position <= lightPosition + SimulationEngine.CLEARANCE_DISTANCE) {
+                found += lightPosition;
+            }
+        }
+        return found;
+    }
+}
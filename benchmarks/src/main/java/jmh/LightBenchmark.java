@@ -0,0 +1,103 @@
+/**
+ CMSC 335
+ Project 4
+ Class Descriptions:
+ LightBenchmark covers the traffic lights. contendedReads runs seven threads reading getColor() on one light while
+ an eighth keeps changing its phase through the engine, which is what every car does on every tick near an
+ intersection. transitions measures the cost of phase changes: each step advances every light by a whole cycle, so
+ each of the lights goes through three transitions per operation.
+ */
+
+package jmh;
+
+import engine.ExecutionMode;
+import engine.SimulationEngine;
+import engine.TrafficLightColor;
+import engine.TrafficLightThread;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LightBenchmark {
+
+    private static final double CYCLE_SECONDS = TrafficLightThread.RED_SECONDS + TrafficLightThread.GREEN_SECONDS
+            + TrafficLightThread.YELLOW_SECONDS;
+
+    // One light shared by the readers and the writer of a group
+    @State(Scope.Group)
+    public static class SharedLight {
+        SimulationEngine engine;
+        TrafficLightThread light;
+
+        @Setup
+        public void build() {
+            engine = new SimulationEngine(ExecutionMode.STEP_LOOP, 4, 1L);
+            engine.addLight(2500);
+            light = engine.light(0);
+        }
+
+        @TearDown
+        public void stop() {
+            engine.stop();
+        }
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(7)
+    public TrafficLightColor contendedReads(SharedLight shared) {
+        return shared.light.getColor();
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(1)
+    public void phaseChanges(SharedLight shared) {
+        shared.engine.step(TrafficLightThread.RED_SECONDS);  // At least one transition every other call
+    }
+
+    // Many lights stepped together
+    @State(Scope.Thread)
+    public static class ManyLights {
+        @Param({"3", "1000"})
+        public int lights;
+
+        SimulationEngine engine;
+
+        @Setup
+        public void build() {
+            engine = new SimulationEngine(ExecutionMode.STEP_LOOP, 4, 1L);
+            for (int i = 0; i < lights; i++) {
+                engine.addLight(1 + i * (SimulationEngine.TRACK_LENGTH - 2) / lights);
+            }
+        }
+
+        @TearDown
+        public void stop() {
+            engine.stop();
+        }
+    }
+
+    @Benchmark
+    public void transitions(ManyLights state) {
+        state.engine.step(CYCLE_SECONDS);  // RED -> GREEN -> YELLOW -> RED on every light
+    }
+}
@@ -0,0 +1,362 @@
+/**
+ CMSC 335
+ Project 4
+ Class Descriptions:
+ CarStore keeps the state of every car in parallel primitive arrays (struct-of-arrays) indexed by car id: position,
+ speed, base speed, state flags, lane and the cursor of the next intersection ahead. Cars on a RoadNetwork also have a
+ route (an int array of edge ids, shared between cars and never copied), the index of their current edge in it, and
+ that edge's id; for them position is the distance along the current edge. Cars on the straight track have edge -1.
+ Track cars are also linked into one list per lane, front to back: leader and follower columns plus a head and tail
+ per lane. Cars cannot pass each other and enter at the start of the track, so appending at the tail keeps each list
+ sorted by position, finished cars are always at the head, and the car ahead of any car is one array read.
+ lastPosition and lastSpeed hold the values from the start of the current engine step, so followers read a consistent
+ picture of their leaders whatever order (or thread) the cars are moved in. The engine also notes when a car's current
+ stop or slow-down began and at which light, for IntersectionStats, and while the flight recorder runs the wall times of
+ that and of the car's arrival, for FlightEvents. Adding and removing a car is O(1): removed ids go onto a free list and
+ are handed out again by the next add. A car therefore costs BYTES_PER_CAR bytes of heap instead of a CarThread, a
+ JSlider, a JLabel and a thread stack. The store is not thread-safe; the SimulationEngine guards it with its own lock.
+ captureInto() and restoreFrom() move a track-only store to and from a Checkpoint with one bulk copy per column.
+ */
+
+package engine;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class CarStore {
+
+    // State flags stored in the flags column
+    public static final int ACTIVE = 1;     // Slot holds a car (cleared when the id is on the free list)
+    public static final int FINISHED = 2;   // Car reached the end of the track
+    public static final int STOPPED = 4;    // Car is waiting at a RED light
+    public static final int SLOWED = 8;     // Car is slowed by a YELLOW light
+
+    // Heap bytes per car slot: position, speed, base speed (8 each), flags, lane, light cursor, free-list link, edge,
+    // route step, the compressed route reference, leader, follower (4 each), last position and last speed (8 each),
+    // the state start in simulated and wall time and the added time (8 each) and the state light reference (4)
+    public static final int BYTES_PER_CAR = 6 * Double.BYTES + 2 * Long.BYTES + 10 * Integer.BYTES;
+
+    public static final int NO_EDGE = -1;    // Edge of a car on the straight track
+    public static final int NO_CAR = -1;     // No leader / follower / lane head
+
+    private static final int NO_FREE_SLOT = -1;
+
+    // Columns, all indexed by car id
+    double[] position;
+    double[] speed;
+    double[] baseSpeed;
+    int[] flags;
+    int[] lane;
+    int[] lightCursor;               // Sorted IntersectionIndex slot of the next light ahead; only moves forward
+    int[] edge;                      // Current RoadNetwork edge, or NO_EDGE
+    int[] routeStep;                 // Index of the current edge in the route
+    int[][] route;                   // Edge ids the car drives along (shared, read-only), or null
+    int[] leader;                    // Next car ahead in the same lane, or NO_CAR
+    int[] follower;                  // Next car behind in the same lane, or NO_CAR
+    double[] lastPosition;           // Position at the start of the current step
+    double[] lastSpeed;              // Speed at the start of the current step
+    double[] stateSince;             // Simulated time the current STOPPED or SLOWED state began
+    TrafficLightThread[] stateLight; // Light that stopped or slowed the car, or null
+    long[] addedNanos;               // Wall time the car was added (0 unless the flight recorder was running)
+    long[] stateNanos;               // Wall time the current STOPPED or SLOWED state began (same rule)
+    private int[] laneHead = {NO_CAR};  // Front car of each lane
+    private int[] laneTail = {NO_CAR};  // Last car of each lane
+    private int[] nextFree;          // Free-list links: next free id after this one
+
+    private int highWater = 0;       // Ids below this have been handed out at least once
+    private int size = 0;            // Number of active cars
+    private int freeHead = NO_FREE_SLOT; // First id on the free list
+
+    // Constructor allocates room for the expected number of cars
+    public CarStore(int initialCapacity) {
+        int capacity = Math.max(initialCapacity, 4);
+        position = new double[capacity];
+        speed = new double[capacity];
+        baseSpeed = new double[capacity];
+        flags = new int[capacity];
+        lane = new int[capacity];
+        lightCursor = new int[capacity];
+        edge = new int[capacity];
+        routeStep = new int[capacity];
+        route = new int[capacity][];
+        leader = new int[capacity];
+        follower = new int[capacity];
+        lastPosition = new double[capacity];
+        lastSpeed = new double[capacity];
+        stateSince = new double[capacity];
+        stateLight = new TrafficLightThread[capacity];
+        addedNanos = new long[capacity];
+        stateNanos = new long[capacity];
+        nextFree = new int[capacity];
+    }
+
+    // Add a car at the start of the track; returns its id
+    public int add(double carBaseSpeed, int carLane) {
+        int id;
+        if (freeHead != NO_FREE_SLOT) {
+            id = freeHead;               // Reuse a removed id
+            freeHead = nextFree[id];
+        } else {
+            if (highWater == flags.length) {
+                grow();
+            }
+            id = highWater++;
+        }
+        position[id] = 0;
+        speed[id] = carBaseSpeed;
+        baseSpeed[id] = carBaseSpeed;
+        flags[id] = ACTIVE;
+        lane[id] = carLane;
+        lightCursor[id] = 0;             // Cars start before every intersection
+        edge[id] = NO_EDGE;
+        routeStep[id] = 0;
+        route[id] = null;
+        lastPosition[id] = 0;
+        lastSpeed[id] = carBaseSpeed;
+        stateSince[id] = 0;
+        stateLight[id] = null;
+        addedNanos[id] = 0;
+        stateNanos[id] = 0;
+        linkAtTail(id, carLane);
+        size++;
+        return id;
+    }
+
+    // Add a car at the start of the first edge of a network route; returns its id (network cars are not in a lane list)
+    public int addOnRoute(double carBaseSpeed, int carLane, int[] carRoute) {
+        int id = add(carBaseSpeed, carLane);
+        unlink(id);
+        route[id] = carRoute;
+        edge[id] = carRoute[0];
+        return id;
+    }
+
+    // Append a car behind the last car of its lane
+    private void linkAtTail(int id, int carLane) {
+        if (carLane >= laneTail.length) {
+            int lanes = Math.max(carLane + 1, laneTail.length * 2);
+            int old = laneTail.length;
+            laneHead = Arrays.copyOf(laneHead, lanes);
+            laneTail = Arrays.copyOf(laneTail, lanes);
+            Arrays.fill(laneHead, old, lanes, NO_CAR);
+            Arrays.fill(laneTail, old, lanes, NO_CAR);
+        }
+        int tail = laneTail[carLane];
+        leader[id] = tail;
+        follower[id] = NO_CAR;
+        if (tail == NO_CAR) {
+            laneHead[carLane] = id;
+        } else {
+            follower[tail] = id;
+        }
+        laneTail[carLane] = id;
+    }
+
+    // Take a car out of its lane list, joining its leader and follower
+    private void unlink(int id) {
+        int ahead = leader[id];
+        int behind = follower[id];
+        int carLane = lane[id];
+        if (ahead == NO_CAR) {
+            if (laneHead[carLane] == id) laneHead[carLane] = behind;
+        } else {
+            follower[ahead] = behind;
+        }
+        if (behind == NO_CAR) {
+            if (laneTail[carLane] == id) laneTail[carLane] = ahead;
+        } else {
+            leader[behind] = ahead;
+        }
+        leader[id] = NO_CAR;
+        follower[id] = NO_CAR;
+    }
+
+    // Drop finished cars from the front of every lane; they are always the lane heads (caller is single-threaded)
+    void popFinishedLeaders() {
+        for (int l = 0; l < laneHead.length; l++) {
+            int head = laneHead[l];
+            while (head != NO_CAR && (flags[head] & FINISHED) != 0) {
+                unlink(head);
+                head = laneHead[l];
+            }
+        }
+    }
+
+    // Remember every car's position and speed as the start-of-step picture
+    void saveLastState() {
+        System.arraycopy(position, 0, lastPosition, 0, highWater);
+        System.arraycopy(speed, 0, lastSpeed, 0, highWater);
+    }
+
+    // Car ahead in the same lane that is still driving, or NO_CAR for a free road (O(1): finished cars lead the lane)
+    int leaderOf(int id) {
+        int ahead = leader[id];
+        return ahead == NO_CAR || (flags[ahead] & FINISHED) != 0 ? NO_CAR : ahead;
+    }
+
+    // Remove a car; its id goes onto the free list
+    public void remove(int id) {
+        if (!isActive(id)) {
+            throw new IllegalArgumentException("No car with id " + id);
+        }
+        if (edge[id] == NO_EDGE) unlink(id);
+        flags[id] = 0;
+        speed[id] = 0;
+        route[id] = null;                // Let an unused route be collected
+        stateLight[id] = null;
+        nextFree[id] = freeHead;
+        freeHead = id;
+        size--;
+    }
+
+    // Make room for at least the given number of car slots, so a bulk add copies the columns at most once
+    public void ensureCapacity(int slots) {
+        if (slots > flags.length) {
+            resize(Math.max(slots, flags.length * 2));
+        }
+    }
+
+    // Double every column when the store is full
+    private void grow() {
+        resize(flags.length * 2);
+    }
+
+    // Copy every column into arrays of the given capacity
+    private void resize(int capacity) {
+        position = Arrays.copyOf(position, capacity);
+        speed = Arrays.copyOf(speed, capacity);
+        baseSpeed = Arrays.copyOf(baseSpeed, capacity);
+        flags = Arrays.copyOf(flags, capacity);
+        lane = Arrays.copyOf(lane, capacity);
+        lightCursor = Arrays.copyOf(lightCursor, capacity);
+        edge = Arrays.copyOf(edge, capacity);
+        routeStep = Arrays.copyOf(routeStep, capacity);
+        route = Arrays.copyOf(route, capacity);
+        leader = Arrays.copyOf(leader, capacity);
+        follower = Arrays.copyOf(follower, capacity);
+        lastPosition = Arrays.copyOf(lastPosition, capacity);
+        lastSpeed = Arrays.copyOf(lastSpeed, capacity);
+        stateSince = Arrays.copyOf(stateSince, capacity);
+        stateLight = Arrays.copyOf(stateLight, capacity);
+        addedNanos = Arrays.copyOf(addedNanos, capacity);
+        stateNanos = Arrays.copyOf(stateNanos, capacity);
+        nextFree = Arrays.copyOf(nextFree, capacity);
+    }
+
+    // Copy the columns a checkpoint needs into it; stateLight is stored as the light's id
+    void captureInto(Checkpoint into) {
+        int n = highWater;
+        System.arraycopy(position, 0, into.doubles(Checkpoint.POSITION, n), 0, n);
+        System.arraycopy(speed, 0, into.doubles(Checkpoint.SPEED, n), 0, n);
+        System.arraycopy(baseSpeed, 0, into.doubles(Checkpoint.BASE_SPEED, n), 0, n);
+        System.arraycopy(flags, 0, into.ints(Checkpoint.FLAGS, n), 0, n);
+        System.arraycopy(lane, 0, into.ints(Checkpoint.LANE, n), 0, n);
+        System.arraycopy(lightCursor, 0, into.ints(Checkpoint.LIGHT_CURSOR, n), 0, n);
+        System.arraycopy(leader, 0, into.ints(Checkpoint.LEADER, n), 0, n);
+        System.arraycopy(follower, 0, into.ints(Checkpoint.FOLLOWER, n), 0, n);
+        System.arraycopy(nextFree, 0, into.ints(Checkpoint.NEXT_FREE, n), 0, n);
+        System.arraycopy(stateSince, 0, into.doubles(Checkpoint.STATE_SINCE, n), 0, n);
+        int[] lights = into.ints(Checkpoint.STATE_LIGHT, n);
+        for (int id = 0; id < n; id++) {
+            TrafficLightThread light = stateLight[id];
+            lights[id] = light == null ? -1 : light.lightId;
+        }
+        System.arraycopy(laneHead, 0, into.ints(Checkpoint.LANE_HEAD, laneHead.length), 0, laneHead.length);
+        System.arraycopy(laneTail, 0, into.ints(Checkpoint.LANE_TAIL, laneTail.length), 0, laneTail.length);
+        into.highWater = highWater;
+        into.size = size;
+        into.freeHead = freeHead;
+    }
+
+    // Number of lane list slots (the length of the lane head and tail columns)
+    int laneSlots() {
+        return laneHead.length;
+    }
+
+    // Replace the contents of this (empty) store with a checkpoint's; lights are indexed by light id
+    void restoreFrom(Checkpoint from, List<TrafficLightThread> lights) {
+        int n = from.highWater;
+        ensureCapacity(n);
+        System.arraycopy((double[]) from.columns[Checkpoint.POSITION], 0, position, 0, n);
+        System.arraycopy((double[]) from.columns[Checkpoint.SPEED], 0, speed, 0, n);
+        System.arraycopy((double[]) from.columns[Checkpoint.BASE_SPEED], 0, baseSpeed, 0, n);
+        System.arraycopy((int[]) from.columns[Checkpoint.FLAGS], 0, flags, 0, n);
+        System.arraycopy((int[]) from.columns[Checkpoint.LANE], 0, lane, 0, n);
+        System.arraycopy((int[]) from.columns[Checkpoint.LIGHT_CURSOR], 0, lightCursor, 0, n);
+        System.arraycopy((int[]) from.columns[Checkpoint.LEADER], 0, leader, 0, n);
+        System.arraycopy((int[]) from.columns[Checkpoint.FOLLOWER], 0, follower, 0, n);
+        System.arraycopy((int[]) from.columns[Checkpoint.NEXT_FREE], 0, nextFree, 0, n);
+        System.arraycopy((double[]) from.columns[Checkpoint.STATE_SINCE], 0, stateSince, 0, n);
+        int[] lightIds = (int[]) from.columns[Checkpoint.STATE_LIGHT];
+        for (int id = 0; id < n; id++) {
+            stateLight[id] = lightIds[id] < 0 ? null : lights.get(lightIds[id]);
+        }
+        Arrays.fill(edge, 0, n, NO_EDGE);
+        Arrays.fill(routeStep, 0, n, 0);
+        Arrays.fill(route, 0, n, null);
+        Arrays.fill(addedNanos, 0, n, 0);
+        Arrays.fill(stateNanos, 0, n, 0);
+        System.arraycopy(position, 0, lastPosition, 0, n);
+        System.arraycopy(speed, 0, lastSpeed, 0, n);
+        laneHead = Arrays.copyOf((int[]) from.columns[Checkpoint.LANE_HEAD], from.lengths[Checkpoint.LANE_HEAD]);
+        laneTail = Arrays.copyOf((int[]) from.columns[Checkpoint.LANE_TAIL], from.lengths[Checkpoint.LANE_TAIL]);
+        highWater = n;
+        size = from.size;
+        freeHead = from.freeHead;
+    }
+
+    // True if the id currently holds a car
+    public boolean isActive(int id) {
+        return id >= 0 && id < highWater && (flags[id] & ACTIVE) != 0;
+    }
+
+    // True if the car exists and has the given flag set
+    public boolean hasFlag(int id, int flag) {
+        return (flags[id] & flag) != 0;
+    }
+
+    public double position(int id) {
+        return position[id];
+    }
+
+    public double speed(int id) {
+        return speed[id];
+    }
+
+    public double baseSpeed(int id) {
+        return baseSpeed[id];
+    }
+
+    public int lane(int id) {
+        return lane[id];
+    }
+
+    public int edge(int id) {
+        return edge[id];
+    }
+
+    // Car directly ahead in the same lane (possibly finished), or NO_CAR
+    public int leader(int id) {
+        return leader[id];
+    }
+
+    // Number of active cars
+    public int size() {
+        return size;
+    }
+
+    // Exclusive upper bound of ids in use; iterate 0..highWater() and skip inactive ids
+    public int highWater() {
+        return highWater;
+    }
+
+    // Number of car slots allocated
+    public int capacity() {
+        return flags.length;
+    }
+
+    // Heap bytes currently held by the columns
+    public long footprintBytes() {
+        return (long) capacity() * BYTES_PER_CAR;
+    }
+}
@@ -0,0 +1,76 @@
+/**
+ CMSC 335
+ Project 4
+ Class Descriptions:
+ CarThread is a Runnable class that drives one car of the SimulationEngine as its own thread. Each tick it asks the
+ engine to move the car, which applies the traffic light rules near intersections, and parks on the light's wait queue
+ while it is RED, waking as soon as it turns GREEN. Stops and slow-downs are recorded by the engine's EventJournal, and
+ reported as FlightEvents while a flight recording runs, so the actor does no console I/O. The car's
+ position and speed live in the engine, so the GUI can observe them without touching this thread.
+ */
+
+package engine;
+
+public class CarThread implements Runnable {
+
+    // Engine that owns this car's position and speed
+    private final SimulationEngine engine;
+
+    // Index of the car inside the engine
+    private final int carId;
+
+    // Indicates whether the thread is currently paused
+    private volatile boolean paused = false;
+
+    // Constructor initializes all required fields
+    public CarThread(SimulationEngine engine, int carId) {
+        this.engine = engine;
+        this.carId = carId;
+    }
+
+    // Pause the car's movement
+    public void pause() {
+        paused = true;
+    }
+
+    // Resume the car's movement
+    public void resume() {
+        paused = false;
+    }
+
+    // The main logic executed when the thread starts
+    @Override
+    public void run() {
+        SimulationClock clock = engine.clock();
+
+        // Run loop until the car reaches the end of the track
+        while (!engine.isCarFinished(carId)) {
+
+            // If paused, sleep briefly and continue waiting
+            while (paused) {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    return;  // Exit thread if interrupted
+                }
+            }
+
+            try {
+                // Move the car one tick; the engine reports the light that limited it, if any
+                TrafficLightThread light = engine.stepCar(carId, SimulationEngine.TICK_SECONDS);
+
+                if (light != null && light.getColor() == TrafficLightColor.RED) {
+                    // Wait until light turns green or yellow
+                    light.awaitChangeFrom(TrafficLightColor.RED);
+                }
+
+                // Wait one tick of simulated time (50 ms at the default 20x scale; re-read so scale changes apply)
+                long tickNanos = clock.actorNanosFor(SimulationEngine.TICK_SECONDS);
+                Thread.sleep(tickNanos / 1_000_000, (int) (tickNanos % 1_000_000));
+
+            } catch (InterruptedException e) {
+                return;  // Exit thread on interruption
+            }
+        }
+    }
+}
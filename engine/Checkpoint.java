@@ -0,0 +1,126 @@
+/**
+ CMSC 335
+ Project 4
+ Class Descriptions:
+ Checkpoint holds the complete state of a STEP_LOOP run on the straight track at one tick boundary: the tick, the
+ simulated time, the random generator's state, and a fixed list of primitive columns covering every car slot, every lane
+ list, every light (position and the phase lengths and offset of its SignalPlan, from which the simulated time gives its
+ color and the time left in its phase) and the cars still scheduled to depart. It is what
+ SimulationEngine.captureCheckpoint copies into and what SimulationEngine.fromCheckpoint rebuilds an engine from;
+ CheckpointWriter and CheckpointReader move it to and from disk one page of PAGE_ELEMENTS column elements at a time. The
+ arrays are reused from one capture to the next and may be longer than the column; lengths[] says how many elements are
+ valid. Wall-clock columns (flight recorder times) and route columns are not part of it: the first restart at 0, and
+ runs with a RoadNetwork cannot be checkpointed.
+ */
+
+package engine;
+
+import java.util.Arrays;
+
+final class Checkpoint {
+
+    static final int PAGE_ELEMENTS = 1024;  // Unit of change tracking: 8 KB of a double column, 4 KB of an int column
+
+    // Column ids, in file order
+    static final int POSITION = 0;
+    static final int SPEED = 1;
+    static final int BASE_SPEED = 2;
+    static final int FLAGS = 3;
+    static final int LANE = 4;
+    static final int LIGHT_CURSOR = 5;
+    static final int LEADER = 6;
+    static final int FOLLOWER = 7;
+    static final int NEXT_FREE = 8;
+    static final int STATE_SINCE = 9;
+    static final int STATE_LIGHT = 10;        // Light id, or -1
+    static final int LANE_HEAD = 11;
+    static final int LANE_TAIL = 12;
+    static final int LIGHT_POSITION = 13;
+    static final int LIGHT_GREEN = 14;
+    static final int LIGHT_YELLOW = 15;
+    static final int LIGHT_RED = 16;
+    static final int LIGHT_OFFSET = 17;       // Signal plan offset: with the clock it gives the color and phase left
+    static final int DEPARTURE_SPEED = 18;
+    static final int DEPARTURE_LANE = 19;
+    static final int DEPARTURE_TIME = 20;
+    static final int COLUMNS = 21;
+
+    // Scalars
+    long tick;              // Completed engine steps
+    double simTime;         // Simulated seconds
+    long seed;              // Seed the run was started with
+    long randomState;       // Generator state at this tick
+    long carsFinished;      // Metrics counter (not derivable: finished cars may have been removed)
+    int highWater;          // CarStore bookkeeping
+    int size;
+    int freeHead;
+    int nextDeparture;      // First scheduled car not yet on the road
+
+    final Object[] columns = new Object[COLUMNS];  // double[] or int[] per column id
+    final int[] lengths = new int[COLUMNS];        // Valid elements per column
+
+    // True if the column holds doubles (otherwise ints)
+    static boolean isDouble(int column) {
+        return switch (column) {
+            case POSITION, SPEED, BASE_SPEED, STATE_SINCE, LIGHT_GREEN, LIGHT_YELLOW, LIGHT_RED, LIGHT_OFFSET,
+                 DEPARTURE_TIME -> true;
+            default -> false;
+        };
+    }
+
+    // Bytes per element of a column
+    static int elementBytes(int column) {
+        return isDouble(column) ? Double.BYTES : Integer.BYTES;
+    }
+
+    // Number of pages a column of the given length spans
+    static int pageCount(int length) {
+        return (length + PAGE_ELEMENTS - 1) / PAGE_ELEMENTS;
+    }
+
+    // A double column with room for length elements (contents kept); sets its length
+    double[] doubles(int column, int length) {
+        double[] array = (double[]) columns[column];
+        if (array == null || array.length < length) {
+            array = array == null ? new double[length]
+                    : Arrays.copyOf(array, Math.max(length, array.length + (array.length >> 2)));
+            columns[column] = array;
+        }
+        lengths[column] = length;
+        return array;
+    }
+
+    // An int column with room for length elements (contents kept); sets its length
+    int[] ints(int column, int length) {
+        int[] array = (int[]) columns[column];
+        if (array == null || array.length < length) {
+            array = array == null ? new int[length]
+                    : Arrays.copyOf(array, Math.max(length, array.length + (array.length >> 2)));
+            columns[column] = array;
+        }
+        lengths[column] = length;
+        return array;
+    }
+
+    // Make room for an engine of this size (with some headroom) without changing any length, so that a capture
+    // under the engine's lock only copies
+    void reserve(int carSlots, int laneSlots, int lightCount) {
+        for (int column = 0; column < DEPARTURE_SPEED; column++) {
+            int needed = column < LANE_HEAD ? carSlots : column < LIGHT_POSITION ? laneSlots : lightCount;
+            needed += needed >> 3;
+            int valid = lengths[column];
+            if (isDouble(column)) {
+                doubles(column, needed);
+            } else {
+                ints(column, needed);
+            }
+            lengths[column] = valid;
+        }
+    }
+
+    // Use an array that is never written again (the engine's departure schedule) as a column without copying it
+    void share(int column, Object array, int length) {
+        columns[column] = array;
+        lengths[column] = length;
+    }
+}
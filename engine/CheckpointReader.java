@@ -0,0 +1,184 @@
+/**
+ CMSC 335
+ Project 4
+ Class Descriptions:
+ CheckpointReader rebuilds a STEP_LOOP engine from a file written by CheckpointWriter. It reads the file once, front to
+ back, through one direct buffer: the full frame sets every column, and each delta frame after it overwrites the
+ pages it carries, so the result is the state at the last complete frame. A frame cut short by a crash is ignored
+ (the previous frame's state is used); a frame whose CRC does not match is an IOException, as is a file that is not a
+ checkpoint. The engine is then built with SimulationEngine.fromCheckpoint, which loads the columns into a CarStore of
+ the right capacity with bulk copies, so resuming is bound by the read speed of the file rather than the car count.
+ */
+
+package engine;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+public final class CheckpointReader {
+
+    private static final int BUFFER_BYTES = 1 << 20;
+
+    private final String source;                         // File name for error messages
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    private final CRC32 crc = new CRC32();
+    private int crcMark = 0;                             // Buffer position the CRC has been updated up to
+    private final Checkpoint state = new Checkpoint();
+    private int frames = 0;                              // Complete frames applied
+
+    private CheckpointReader(Path file, FileChannel channel) {
+        this.source = file.toString();
+        this.channel = channel;
+        buffer.limit(0);
+    }
+
+    // An engine in the state of the last complete checkpoint in the file
+    public static SimulationEngine restore(Path file) throws IOException {
+        return SimulationEngine.fromCheckpoint(read(file));
+    }
+
+    // The state of the last complete checkpoint in the file
+    static Checkpoint read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            CheckpointReader reader = new CheckpointReader(file, channel);
+            reader.readHeader();
+            while (reader.readFrame()) {
+                reader.frames++;
+            }
+            if (reader.frames == 0) {
+                throw new IOException(file + ": no complete checkpoint");
+            }
+            return reader.state;
+        }
+    }
+
+    // Check the magic, version and page size
+    private void readHeader() throws IOException {
+        if (channel.size() < CheckpointWriter.HEADER_BYTES) {
+            throw new IOException(source + ": not a checkpoint file");
+        }
+        need(CheckpointWriter.HEADER_BYTES);
+        if (buffer.getInt() != CheckpointWriter.MAGIC) {
+            throw new IOException(source + ": not a checkpoint file");
+        }
+        int version = buffer.getInt();
+        if (version != CheckpointWriter.VERSION) {
+            throw new IOException(source + ": unsupported checkpoint version " + version);
+        }
+        int pageElements = buffer.getInt();
+        if (pageElements != Checkpoint.PAGE_ELEMENTS) {
+            throw new IOException(source + ": unsupported page size " + pageElements);
+        }
+    }
+
+    // Apply the next frame; false at the end of the file or at a frame cut short
+    private boolean readFrame() throws IOException {
+        long left = channel.size() - offset();
+        if (left < CheckpointWriter.FRAME_HEADER_BYTES) {
+            return false;
+        }
+        need(CheckpointWriter.FRAME_HEADER_BYTES);
+        crc.reset();
+        crcMark = buffer.position();
+        if (buffer.getInt() != CheckpointWriter.FRAME_MAGIC) {
+            throw new IOException(source + ": bad frame " + (frames + 1));
+        }
+        byte kind = buffer.get();
+        long body = buffer.getLong();
+        if (body < CheckpointWriter.SCALAR_BYTES || left < CheckpointWriter.FRAME_HEADER_BYTES + body + Integer.BYTES) {
+            return false;  // Torn write: keep the previous frame's state
+        }
+        if (kind != CheckpointWriter.FULL && (kind != CheckpointWriter.DELTA || frames == 0)) {
+            throw new IOException(source + ": bad frame " + (frames + 1));
+        }
+        need(CheckpointWriter.SCALAR_BYTES);
+        state.tick = buffer.getLong();
+        state.simTime = buffer.getDouble();
+        state.seed = buffer.getLong();
+        state.randomState = buffer.getLong();
+        state.carsFinished = buffer.getLong();
+        state.highWater = buffer.getInt();
+        state.size = buffer.getInt();
+        state.freeHead = buffer.getInt();
+        state.nextDeparture = buffer.getInt();
+        for (int column = 0; column < Checkpoint.COLUMNS; column++) {
+            need(2 * Integer.BYTES);
+            int length = buffer.getInt();
+            int changed = buffer.getInt();
+            if (length < 0 || changed < 0 || changed > Checkpoint.pageCount(length)) {
+                throw new IOException(source + ": bad column " + column + " in frame " + (frames + 1));
+            }
+            readPages(column, length, changed);
+        }
+        checksumConsumed();
+        need(Integer.BYTES);
+        int expected = buffer.getInt();
+        crcMark = buffer.position();
+        if ((int) crc.getValue() != expected) {
+            throw new IOException(source + ": checksum mismatch in frame " + (frames + 1));
+        }
+        return true;
+    }
+
+    // Size a column and overwrite the pages a frame carries for it
+    private void readPages(int column, int length, int changed) throws IOException {
+        boolean doubles = Checkpoint.isDouble(column);
+        double[] doubleColumn = doubles ? state.doubles(column, length) : null;
+        int[] intColumn = doubles ? null : state.ints(column, length);
+        for (int i = 0; i < changed; i++) {
+            need(Integer.BYTES);
+            int page = buffer.getInt();
+            int from = page * Checkpoint.PAGE_ELEMENTS;
+            if (page < 0 || from >= length) {
+                throw new IOException(source + ": bad page " + page + " in frame " + (frames + 1));
+            }
+            int to = Math.min(from + Checkpoint.PAGE_ELEMENTS, length);
+            need((to - from) * Checkpoint.elementBytes(column));
+            if (doubles) {
+                buffer.asDoubleBuffer().get(doubleColumn, from, to - from);
+                buffer.position(buffer.position() + (to - from) * Double.BYTES);
+            } else {
+                buffer.asIntBuffer().get(intColumn, from, to - from);
+                buffer.position(buffer.position() + (to - from) * Integer.BYTES);
+            }
+        }
+    }
+
+    // Make sure bytes more are in the buffer, refilling it from the file
+    private void need(int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) {
+            return;
+        }
+        checksumConsumed();
+        buffer.compact();
+        while (buffer.position() < bytes) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException(source + ": unexpected end of file");
+            }
+        }
+        buffer.flip();
+        crcMark = 0;
+    }
+
+    // Add the bytes read since the last mark to the frame's CRC
+    private void checksumConsumed() {
+        int position = buffer.position();
+        if (position > crcMark) {
+            ByteBuffer consumed = buffer.duplicate();
+            consumed.position(crcMark).limit(position);
+            crc.update(consumed);
+        }
+        crcMark = position;
+    }
+
+    // File offset of the next unread byte
+    private long offset() throws IOException {
+        return channel.position() - buffer.remaining();
+    }
+}
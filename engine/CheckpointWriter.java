@@ -0,0 +1,373 @@
+/**
+ CMSC 335
+ Project 4
+ Class Descriptions:
+ CheckpointWriter saves the full state of a running STEP_LOOP simulation to a file at a fixed wall-clock interval
+ (and once more when it is closed), so a long run can be resumed with CheckpointReader after a crash or a Stop. Its
+ own thread asks the engine for a Checkpoint: the engine copies its columns into the writer's reusable arrays under
+ its write lock, between two steps, which is a handful of bulk array copies and costs the run less than one tick of
+ its own work; everything after that (change detection, encoding, CRC and I/O) runs on the writer thread while the
+ engine keeps stepping. If writing takes longer than the interval, checkpoints are simply taken less often.
+ Every column is split into pages of Checkpoint.PAGE_ELEMENTS elements and each page's 64-bit hash is kept. The first
+ checkpoint writes a full frame; later ones append a delta frame with only the pages whose hash changed (cars that
+ finished, lanes, lights' settings and the departure schedule mostly do not). Every FULL_EVERY deltas a new full frame
+ is written to a temporary file that atomically replaces the old one, so the file does not grow without bound and is
+ never missing a complete checkpoint.
+
+ File format (little-endian):
+   header  magic "TCK1", version, PAGE_ELEMENTS
+   frame   magic "FRM1", kind (0 full, 1 delta), body length (long), body, CRC32 of magic..body
+   body    tick, simulated time, seed, random state, cars finished (8 bytes each); high water, size, free-list head,
+           next departure (4 bytes each); then per column in Checkpoint order: length, changed page count, and per
+           changed page its index followed by its elements
+ A crash while appending leaves a frame shorter than its stated length, which the reader ignores.
+ */
+
+package engine;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.CRC32;
+
+public final class CheckpointWriter implements Closeable {
+
+    public static final int MAGIC = 0x54434B31;          // "TCK1"
+    public static final int VERSION = 2;                 // 2: lights saved as signal plan offsets
+    public static final double DEFAULT_INTERVAL_SECONDS = 30;
+    public static final int FULL_EVERY = 16;             // Delta frames between full rewrites of the file
+    static final int FRAME_MAGIC = 0x46524D31;           // "FRM1"
+    static final byte FULL = 0;
+    static final byte DELTA = 1;
+    static final int HEADER_BYTES = 3 * Integer.BYTES;
+    static final int FRAME_HEADER_BYTES = Integer.BYTES + 1 + Long.BYTES;
+    static final int SCALAR_BYTES = 5 * Long.BYTES + 4 * Integer.BYTES;
+
+    // Writer that saves nothing (used when checkpoints are off)
+    public static final CheckpointWriter DISABLED = new CheckpointWriter();
+
+    private static final int BUFFER_BYTES = 1 << 20;
+
+    private final boolean enabled;
+    private final SimulationEngine engine;
+    private final Path file;
+    private final long periodNanos;                      // Time between checkpoints
+    private final Thread writer;
+    private volatile boolean closing = false;
+
+    private final LongAdder checkpointsWritten = new LongAdder();
+    private final LongAdder fullCheckpoints = new LongAdder();
+    private final LongAdder pagesWritten = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final LongAccumulator maxPauseNanos = new LongAccumulator(Math::max, 0);
+    private volatile long lastPauseNanos;
+    private volatile long lastFrameBytes;
+
+    // Guarded by this
+    private final Checkpoint state = new Checkpoint();
+    private final long[][] pageHashes = new long[Checkpoint.COLUMNS][];   // Hash of every page as last written
+    private final int[] hashedPages = new int[Checkpoint.COLUMNS];        // Pages of each column last written
+    private final Object[] hashedShared = new Object[Checkpoint.COLUMNS]; // Shared arrays as last written
+    private final int[][] changedPages = new int[Checkpoint.COLUMNS][];   // Pages to write this time
+    private final int[] changedCounts = new int[Checkpoint.COLUMNS];
+    private final ByteBuffer buffer;
+    private final CRC32 crc = new CRC32();
+    private FileChannel channel;                         // Open on the file after the first full frame
+    private int deltasSinceFull = 0;
+
+    // Disabled writer
+    private CheckpointWriter() {
+        enabled = false;
+        engine = null;
+        file = null;
+        periodNanos = 0;
+        writer = null;
+        buffer = null;
+    }
+
+    // Prepare to checkpoint the engine to file every intervalSeconds of wall time once started
+    public CheckpointWriter(SimulationEngine engine, Path file, double intervalSeconds) {
+        if (!(intervalSeconds > 0)) {
+            throw new IllegalArgumentException("Checkpoint interval must be positive: " + intervalSeconds);
+        }
+        this.enabled = true;
+        this.engine = engine;
+        this.file = file;
+        this.periodNanos = (long) (TimeUnit.SECONDS.toNanos(1) * intervalSeconds);
+        this.buffer = ByteBuffer.allocateDirect(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        for (int column = 0; column < Checkpoint.COLUMNS; column++) {
+            pageHashes[column] = new long[0];
+            changedPages[column] = new int[0];
+        }
+        writer = new Thread(this::writeLoop, "checkpoint-writer");
+        writer.setDaemon(true);
+    }
+
+    // Checkpoint to the file named by -Dtraffic.checkpoint every -Dtraffic.checkpointSeconds (default 30) wall
+    // seconds, or return DISABLED when the property is not set
+    public static CheckpointWriter fromSystemProperty(SimulationEngine engine) {
+        String file = System.getProperty("traffic.checkpoint");
+        if (file == null || file.isBlank()) {
+            return DISABLED;
+        }
+        double seconds = Double.parseDouble(System.getProperty("traffic.checkpointSeconds",
+                String.valueOf(DEFAULT_INTERVAL_SECONDS)));
+        return new CheckpointWriter(engine, Path.of(file), seconds);
+    }
+
+    // Start checkpointing
+    public void start() {
+        if (enabled) writer.start();
+    }
+
+    // Writer thread: one checkpoint per period, and a final one when closing
+    private void writeLoop() {
+        try {
+            long next = System.nanoTime() + periodNanos;
+            while (!closing) {
+                long wait = next - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(this, wait);  // close() unparks
+                    continue;
+                }
+                writeCheckpoint();
+                next = Math.max(next + periodNanos, System.nanoTime());  // Late: restart the period from now
+            }
+            writeCheckpoint();
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Checkpoints stopped: " + e);
+        }
+    }
+
+    // Capture the engine and write a frame now (full or delta), on the calling thread
+    public synchronized void writeCheckpoint() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        long pause = engine.captureCheckpoint(state);
+        lastPauseNanos = pause;
+        maxPauseNanos.accumulate(pause);
+
+        boolean full = channel == null || deltasSinceFull >= FULL_EVERY;
+        try {
+            long pages = findChangedPages(full);
+            if (full) {
+                Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+                FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE,
+                        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+                try {
+                    buffer.clear();
+                    buffer.putInt(MAGIC).putInt(VERSION).putInt(Checkpoint.PAGE_ELEMENTS);
+                    drain(out, false);
+                    writeFrame(out, FULL);
+                    out.force(true);
+                } catch (IOException e) {
+                    out.close();
+                    throw e;
+                }
+                if (channel != null) channel.close();
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                channel = out;  // Still open on the renamed file
+                deltasSinceFull = 0;
+                fullCheckpoints.increment();
+            } else {
+                writeFrame(channel, DELTA);
+                channel.force(false);
+                deltasSinceFull++;
+            }
+            pagesWritten.add(pages);
+            checkpointsWritten.increment();
+        } catch (IOException e) {
+            deltasSinceFull = FULL_EVERY;  // The hashes no longer match the file: start over with a full frame
+            throw e;
+        }
+    }
+
+    // Hash every page and note the ones that changed since the last frame (all of them for a full frame)
+    private long findChangedPages(boolean full) {
+        long total = 0;
+        for (int column = 0; column < Checkpoint.COLUMNS; column++) {
+            int length = state.lengths[column];
+            int pages = Checkpoint.pageCount(length);
+            Object array = state.columns[column];
+            boolean shared = column >= Checkpoint.DEPARTURE_SPEED;
+            if (!full && shared && array == hashedShared[column] && pages == hashedPages[column]) {
+                changedCounts[column] = 0;  // The same never-written schedule as last time
+                continue;
+            }
+            if (pageHashes[column].length < pages) {
+                pageHashes[column] = Arrays.copyOf(pageHashes[column], pages);
+                changedPages[column] = new int[pages];
+            }
+            long[] hashes = pageHashes[column];
+            int[] changed = changedPages[column];
+            int count = 0;
+            for (int page = 0; page < pages; page++) {
+                long hash = hashPage(array, page, length);
+                if (full || page >= hashedPages[column] || hash != hashes[page]) {
+                    changed[count++] = page;
+                }
+                hashes[page] = hash;
+            }
+            changedCounts[column] = count;
+            hashedPages[column] = pages;
+            hashedShared[column] = shared ? array : null;
+            total += count;
+        }
+        return total;
+    }
+
+    // 64-bit hash of one page, seeded with its element count so a page that grew is always written
+    private static long hashPage(Object array, int page, int length) {
+        int from = page * Checkpoint.PAGE_ELEMENTS;
+        int to = Math.min(from + Checkpoint.PAGE_ELEMENTS, length);
+        long hash = to - from;
+        if (array instanceof double[] doubles) {
+            for (int i = from; i < to; i++) {
+                hash = (hash ^ Double.doubleToRawLongBits(doubles[i])) * 0x9E3779B97F4A7C15L;
+                hash ^= hash >>> 29;
+            }
+        } else {
+            int[] ints = (int[]) array;
+            for (int i = from; i < to; i++) {
+                hash = (hash ^ ints[i]) * 0x9E3779B97F4A7C15L;
+                hash ^= hash >>> 29;
+            }
+        }
+        return hash;
+    }
+
+    // Write one frame with the pages found by findChangedPages
+    private void writeFrame(FileChannel out, byte kind) throws IOException {
+        long body = SCALAR_BYTES;
+        for (int column = 0; column < Checkpoint.COLUMNS; column++) {
+            body += 2 * Integer.BYTES;
+            for (int i = 0; i < changedCounts[column]; i++) {
+                body += Integer.BYTES + (long) pageLength(column, changedPages[column][i])
+                        * Checkpoint.elementBytes(column);
+            }
+        }
+        crc.reset();
+        buffer.clear();
+        buffer.putInt(FRAME_MAGIC).put(kind).putLong(body);
+        buffer.putLong(state.tick).putDouble(state.simTime).putLong(state.seed).putLong(state.randomState)
+                .putLong(state.carsFinished);
+        buffer.putInt(state.highWater).putInt(state.size).putInt(state.freeHead).putInt(state.nextDeparture);
+        for (int column = 0; column < Checkpoint.COLUMNS; column++) {
+            ensure(out, 2 * Integer.BYTES);
+            buffer.putInt(state.lengths[column]).putInt(changedCounts[column]);
+            for (int i = 0; i < changedCounts[column]; i++) {
+                int page = changedPages[column][i];
+                int from = page * Checkpoint.PAGE_ELEMENTS;
+                int to = from + pageLength(column, page);
+                ensure(out, Integer.BYTES + Checkpoint.PAGE_ELEMENTS * Double.BYTES);
+                buffer.putInt(page);
+                if (Checkpoint.isDouble(column)) {
+                    buffer.asDoubleBuffer().put((double[]) state.columns[column], from, to - from);
+                    buffer.position(buffer.position() + (to - from) * Double.BYTES);
+                } else {
+                    buffer.asIntBuffer().put((int[]) state.columns[column], from, to - from);
+                    buffer.position(buffer.position() + (to - from) * Integer.BYTES);
+                }
+            }
+        }
+        drain(out, true);
+        buffer.putInt((int) crc.getValue());
+        drain(out, false);
+        lastFrameBytes = FRAME_HEADER_BYTES + body + Integer.BYTES;
+    }
+
+    // Elements in a page of a column
+    private int pageLength(int column, int page) {
+        return Math.min(Checkpoint.PAGE_ELEMENTS, state.lengths[column] - page * Checkpoint.PAGE_ELEMENTS);
+    }
+
+    // Make room for bytes more in the buffer
+    private void ensure(FileChannel out, int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            drain(out, true);
+        }
+    }
+
+    // Write the buffer out, adding it to the frame's CRC if checksum is set
+    private void drain(FileChannel out, boolean checksum) throws IOException {
+        buffer.flip();
+        if (checksum) {
+            crc.update(buffer.duplicate());
+        }
+        bytesWritten.add(buffer.remaining());
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    public long checkpointsWritten() {
+        return checkpointsWritten.sum();
+    }
+
+    // Checkpoints written as full frames (the first one and every rewrite)
+    public long fullCheckpoints() {
+        return fullCheckpoints.sum();
+    }
+
+    public long pagesWritten() {
+        return pagesWritten.sum();
+    }
+
+    // Bytes written to the file over all checkpoints
+    public long bytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    // Size of the last frame in bytes
+    public long lastFrameBytes() {
+        return lastFrameBytes;
+    }
+
+    // Longest time the engine was held for a capture
+    public long maxPauseNanos() {
+        return maxPauseNanos.get();
+    }
+
+    public long lastPauseNanos() {
+        return lastPauseNanos;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Write a final checkpoint and close the file
+    @Override
+    public void close() throws IOException {
+        if (!enabled || closing) {
+            return;
+        }
+        closing = true;
+        try {
+            if (writer.getState() != Thread.State.NEW) {
+                LockSupport.unpark(writer);
+                writer.join();
+            } else {
+                writeCheckpoint();  // Never started: still save the state once
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            if (channel != null) channel.close();
+        }
+    }
+}
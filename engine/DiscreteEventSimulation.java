@@ -0,0 +1,524 @@
+/**
+ CMSC 335
+ Project 4
+ Class Descriptions:
+ DiscreteEventSimulation is the next-event alternative to SimulationEngine (ExecutionMode.DISCRETE_EVENT). Instead of
+ moving every car every tick, it keeps an EventQueue of the moments something happens and jumps simulated time straight
+ from one to the next:
+   ARRIVE_LIGHT  a car reaches a light's stop line; on RED it waits there, otherwise it drives through
+   LIGHT_GREEN   a light with waiting cars turns GREEN (scheduled from its SignalPlan, only while a car waits)
+   CATCH_UP      the gap to the lane leader reaches FOLLOW_GAP: a faster car closes up and from then on drives at
+                 the leader's speed, and a car that entered right behind its leader moves off
+   ARRIVE_END    a car reaches the end of the track and finishes
+ plus scheduled departures, which are a sorted list rather than heap entries. Between its events a car moves at a
+ constant speed, so its state is just where and when its current leg began and its speed; positions are interpolated
+ from that only when a viewer or an export asks (carPosition, or snapshot, which a driven TrajectoryExporter samples). A
+ car's leg changes only at its own events or when its leader's speed changes, and then only followers that could be
+ affected are re-planned. The cost of a run is therefore proportional to the number of events, not to cars times ticks:
+ sparse traffic that the step loop advances one idle second at a time is done in a few events per car (see
+ bench.DiscreteEventBenchmark).
+ The driving model is the kinematic core of the stepped engine's: cars drive at their base speed, cannot pass in their
+ lane and keep FOLLOW_GAP (a car length plus the IDM minimum gap) to the car ahead, and stop at a RED light.
+ Acceleration is instantaneous and YELLOW is driven through at full speed, so travel times come out somewhat shorter
+ than with the IntelligentDriverModel. IntersectionStats count passes and waits (a car standing within APPROACH_DISTANCE
+ of a light is waiting for it). Their per-phase queue samples are filled in lazily, since phase changes are not events:
+ before a light's queue changes, and when its statistics are read, the samples of the phases that ended since are added
+ (at most the ring's worth); the queue is constant between events, so they are exact. There are no ticks: simulated time
+ only takes the times of events, so the results are not those of a STEP_LOOP run with the idle ticks skipped. The run is
+ deterministic, and single-threaded like the step loop, so it needs no locks.
+ */
+
+package engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public final class DiscreteEventSimulation {
+
+    public static final double FOLLOW_GAP = IntelligentDriverModel.CAR_LENGTH + IntelligentDriverModel.MIN_GAP;
+    private static final double EPSILON = 1e-6;  // Meters (and seconds) within which positions and times are equal
+
+    // Event kinds
+    private static final int ARRIVE_LIGHT = 0;
+    private static final int ARRIVE_END = 1;
+    private static final int CATCH_UP = 2;
+    private static final int LIGHT_GREEN = 3;
+
+    private final long seed;                  // Seed of addRandomCar's generator
+    private long randomState;                 // SplitMix64 state, as in SimulationEngine
+    private final EventQueue queue = new EventQueue();  // Slot 2 * car id for cars, 2 * light id + 1 for lights
+    private double now = 0;                   // Simulated seconds
+    private long eventsProcessed = 0;
+
+    // Lights indexed by light id
+    private final List<SignalPlan> plans = new ArrayList<>();
+    private final List<IntersectionStats> stats = new ArrayList<>();
+    private int[] lightPositions = new int[0];
+    private double[] nextSample = new double[0];       // End of each light's first phase not yet sampled
+    private TrafficLightColor[] sampleColor = new TrafficLightColor[0];  // Color of that phase
+    private int[] waitingHead = new int[0];   // First car waiting at each light's stop line, linked by nextWaiting
+    private IntersectionIndex intersections = IntersectionIndex.EMPTY;
+
+    // Cars indexed by car id
+    private int carCount = 0;
+    private double[] legPosition = new double[16];   // Position at the start of the current leg
+    private double[] legTime = new double[16];       // Simulated time the current leg began
+    private double[] speed = new double[16];         // Speed during the current leg
+    private int[] baseSpeed = new int[16];
+    private int[] lane = new int[16];
+    private int[] leader = new int[16];              // Car ahead in the lane, or CarStore.NO_CAR
+    private int[] follower = new int[16];
+    private int[] nextLight = new int[16];           // Slot in intersections of the next stop line ahead
+    private int[] waitingAt = new int[16];           // Light whose stop line the car waits at, or -1
+    private int[] nextWaiting = new int[16];
+    private int[] stoppedAt = new int[16];           // Light the car stands still for (stats), or -1
+    private double[] stoppedSince = new double[16];
+    private boolean[] finished = new boolean[16];
+    private int[] laneHead = new int[0];             // Front car of each lane
+    private int[] laneTail = new int[0];
+    private int carsOnRoad = 0;
+    private long carsFinished = 0;
+
+    // Cars still to depart, in order of start time (arrays owned by the caller, never written)
+    private int[] departureSpeeds;
+    private int[] departureLanes;
+    private double[] departureTimes;
+    private int departureCount = 0;
+    private int nextDeparture = 0;
+
+    // Constructor with the traffic.seed property (or the time) as the seed
+    public DiscreteEventSimulation() {
+        this(Long.getLong("traffic.seed", System.nanoTime()));
+    }
+
+    // Constructor with an explicit random seed
+    public DiscreteEventSimulation(long seed) {
+        this.seed = seed;
+        this.randomState = seed;
+    }
+
+    // Add a light with the default plan, starting its cycle (on RED) now; returns its light id
+    public int addLight(int position) {
+        return addLight(position, SignalPlan.DEFAULT.withOffset(now));
+    }
+
+    // Add a light that follows a signal plan; returns its light id
+    public int addLight(int position, SignalPlan plan) {
+        int id = plans.size();
+        plans.add(plan);
+        stats.add(new IntersectionStats(position));
+        lightPositions = Arrays.copyOf(lightPositions, id + 1);
+        lightPositions[id] = position;
+        nextSample = Arrays.copyOf(nextSample, id + 1);
+        nextSample[id] = plan.nextChange(now);
+        sampleColor = Arrays.copyOf(sampleColor, id + 1);
+        sampleColor[id] = plan.colorAt(now);
+        waitingHead = Arrays.copyOf(waitingHead, id + 1);
+        waitingHead[id] = CarStore.NO_CAR;
+        intersections = IntersectionIndex.of(lightPositions);
+        for (int car = 0; car < carCount; car++) {  // Re-seat every car on the stop line ahead of it
+            if (finished[car]) continue;
+            int waiting = waitingAt[car];  // A car standing on a line it does not wait at has passed it
+            double from = waiting >= 0 ? lightPositions[waiting] : positionAt(car, now) + EPSILON;
+            nextLight[car] = intersections.ceiling(from);
+            while (waiting >= 0 && intersections.lightId(nextLight[car]) != waiting) nextLight[car]++;
+        }
+        for (int car = 0; car < carCount; car++) {
+            if (!finished[car]) replan(car);
+        }
+        return id;
+    }
+
+    // Add a car at the start of the given lane now; returns its car id
+    public int addCar(int speedMetersPerSecond, int laneIndex) {
+        if (speedMetersPerSecond <= 0) {
+            throw new IllegalArgumentException("Speed must be positive: " + speedMetersPerSecond);
+        }
+        if (laneIndex < 0) {
+            throw new IllegalArgumentException("Lane must not be negative: " + laneIndex);
+        }
+        int car = carCount++;
+        if (car == legPosition.length) grow(car * 2);
+        if (laneIndex >= laneHead.length) {
+            int old = laneHead.length;
+            laneHead = Arrays.copyOf(laneHead, laneIndex + 1);
+            laneTail = Arrays.copyOf(laneTail, laneIndex + 1);
+            Arrays.fill(laneHead, old, laneHead.length, CarStore.NO_CAR);
+            Arrays.fill(laneTail, old, laneTail.length, CarStore.NO_CAR);
+        }
+        legPosition[car] = 0;
+        legTime[car] = now;
+        speed[car] = 0;
+        baseSpeed[car] = speedMetersPerSecond;
+        lane[car] = laneIndex;
+        leader[car] = laneTail[laneIndex];
+        follower[car] = CarStore.NO_CAR;
+        if (leader[car] != CarStore.NO_CAR) {
+            follower[leader[car]] = car;
+        } else {
+            laneHead[laneIndex] = car;
+        }
+        laneTail[laneIndex] = car;
+        nextLight[car] = intersections.ceiling(0);
+        waitingAt[car] = -1;
+        nextWaiting[car] = CarStore.NO_CAR;
+        stoppedAt[car] = -1;
+        finished[car] = false;
+        carsOnRoad++;
+        replan(car);
+        return car;
+    }
+
+    // Add a car with a speed drawn from the seeded generator (minSpeed to maxSpeed inclusive) in lane 0
+    public int addRandomCar(int minSpeed, int maxSpeed) {
+        randomState += 0x9E3779B97F4A7C15L;
+        long z = randomState;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        z ^= z >>> 31;
+        int range = maxSpeed - minSpeed + 1;
+        return addCar(minSpeed + (int) (((z >>> 32) * range) >>> 32), 0);
+    }
+
+    // Schedule a fleet: car i enters lane lanes[i] at startTimes[i] (which must not decrease); arrays are not copied
+    public void scheduleCars(int[] baseSpeeds, int[] lanes, double[] startTimes, int count) {
+        if (nextDeparture < departureCount) {
+            throw new IllegalStateException("Cars are already scheduled");
+        }
+        for (int i = 1; i < count; i++) {
+            if (startTimes[i] < startTimes[i - 1]) {
+                throw new IllegalArgumentException("Start times must not decrease (car " + i + ")");
+            }
+        }
+        departureSpeeds = baseSpeeds;
+        departureLanes = lanes;
+        departureTimes = startTimes;
+        departureCount = count;
+        nextDeparture = 0;
+        while (nextDeparture < departureCount && departureTimes[nextDeparture] <= now) {
+            depart();
+        }
+    }
+
+    // Simulated time of the next event (or departure), or infinity when nothing is left to happen
+    public double nextEventTime() {
+        double next = queue.peekTime();
+        if (nextDeparture < departureCount) {
+            next = Math.min(next, departureTimes[nextDeparture]);
+        }
+        return next;
+    }
+
+    // Jump to the next event and process it; false when nothing is left to happen
+    public boolean step() {
+        double next = nextEventTime();
+        if (next == Double.POSITIVE_INFINITY) {
+            return false;
+        }
+        now = Math.max(now, next);
+        eventsProcessed++;
+        if (nextDeparture < departureCount && departureTimes[nextDeparture] <= queue.peekTime()) {
+            depart();
+            return true;
+        }
+        int slot = queue.peekSlot();
+        int kind = queue.peekKind();
+        queue.pop();
+        switch (kind) {
+            case ARRIVE_LIGHT -> arriveAtLight(slot >>> 1);
+            case ARRIVE_END -> finish(slot >>> 1);
+            case CATCH_UP -> replan(slot >>> 1);
+            case LIGHT_GREEN -> turnGreen(slot >>> 1);
+            default -> throw new IllegalStateException("Unknown event kind " + kind);
+        }
+        return true;
+    }
+
+    // Process every event up to the given simulated time and stand at that time
+    public void runUntil(double until) {
+        while (nextEventTime() <= until) {
+            step();
+        }
+        if (until != Double.POSITIVE_INFINITY) {
+            now = Math.max(now, until);
+        }
+    }
+
+    // Put the next scheduled car on the road
+    private void depart() {
+        int i = nextDeparture++;
+        addCar(departureSpeeds[i], departureLanes[i]);
+        if (nextDeparture == departureCount) {
+            departureSpeeds = null;  // Let the caller's arrays go
+            departureLanes = null;
+            departureTimes = null;
+        }
+    }
+
+    // A car reached the stop line of the next light: wait at RED, otherwise drive through
+    private void arriveAtLight(int car) {
+        int slot = nextLight[car];
+        int light = intersections.lightId(slot);
+        legPosition[car] = intersections.position(slot);  // Exactly on the line, whatever the rounding of the leg
+        legTime[car] = now;
+        SignalPlan plan = plans.get(light);
+        if (plan.colorAt(now) == TrafficLightColor.RED) {
+            waitingAt[car] = light;
+            nextWaiting[car] = waitingHead[light];
+            waitingHead[light] = car;
+            queue.schedule(2 * light + 1, now + plan.timeUntilGreen(now), LIGHT_GREEN);  // Same time for every car
+        } else {
+            stats.get(light).carPassed();
+            nextLight[car] = slot + 1;
+        }
+        replan(car);
+    }
+
+    // A light turned GREEN: every car waiting at its stop line drives through
+    private void turnGreen(int light) {
+        SignalPlan plan = plans.get(light);
+        double wait = plan.timeUntilGreen(now);
+        if (wait > EPSILON) {
+            queue.schedule(2 * light + 1, now + wait, LIGHT_GREEN);  // Rounding fired it early
+            return;
+        }
+        int car = waitingHead[light];
+        waitingHead[light] = CarStore.NO_CAR;
+        while (car != CarStore.NO_CAR) {
+            int next = nextWaiting[car];
+            waitingAt[car] = -1;
+            nextWaiting[car] = CarStore.NO_CAR;
+            stats.get(light).carPassed();
+            nextLight[car]++;
+            replan(car);
+            car = next;
+        }
+    }
+
+    // A car reached the end of the track: it leaves its lane, and its follower has a free road
+    private void finish(int car) {
+        legPosition[car] = SimulationEngine.TRACK_LENGTH;
+        legTime[car] = now;
+        finished[car] = true;
+        setSpeed(car, 0);
+        carsOnRoad--;
+        carsFinished++;
+        int behind = follower[car];
+        laneHead[lane[car]] = behind;  // Cars cannot pass, so a finishing car is its lane's front car
+        if (behind != CarStore.NO_CAR) {
+            leader[behind] = CarStore.NO_CAR;
+            replan(behind);
+        } else {
+            laneTail[lane[car]] = CarStore.NO_CAR;
+        }
+        follower[car] = CarStore.NO_CAR;
+    }
+
+    // Start a new leg for the car from now and schedule its next event; then do the same for each car behind it whose
+    // leg may depend on the change, so a queue starts or stops as a whole
+    private void replan(int car) {
+        while (car != CarStore.NO_CAR) {
+            double position = positionAt(car, now);
+            double oldSpeed = speed[car];
+            legPosition[car] = position;
+            legTime[car] = now;
+            double v = 0;
+            int kind = -1;
+            double when = Double.POSITIVE_INFINITY;
+            if (waitingAt[car] < 0) {
+                v = baseSpeed[car];
+                int ahead = leader[car];
+                double aheadSpeed = 0;
+                double gap = Double.POSITIVE_INFINITY;  // Front-to-front distance to the leader
+                if (ahead != CarStore.NO_CAR) {
+                    aheadSpeed = speed[ahead];
+                    gap = positionAt(ahead, now) - position;
+                }
+                if (gap < FOLLOW_GAP - EPSILON) {
+                    v = 0;  // Entered right behind its leader: hold back until the gap opens
+                    if (aheadSpeed > 0) {
+                        when = now + (FOLLOW_GAP - gap) / aheadSpeed;
+                        kind = CATCH_UP;
+                    }
+                } else {
+                    if (gap <= FOLLOW_GAP + EPSILON) {
+                        v = Math.min(v, aheadSpeed);  // Closed up: drive at the leader's speed
+                    }
+                    if (v > 0) {
+                        int slot = nextLight[car];
+                        boolean light = slot < intersections.size();
+                        double target = light ? intersections.position(slot) : SimulationEngine.TRACK_LENGTH;
+                        kind = light ? ARRIVE_LIGHT : ARRIVE_END;
+                        when = now + Math.max(0, target - position) / v;
+                        if (ahead != CarStore.NO_CAR && v > aheadSpeed) {
+                            double catchUp = now + Math.max(0, gap - FOLLOW_GAP) / (v - aheadSpeed);
+                            if (catchUp < when) {
+                                when = catchUp;
+                                kind = CATCH_UP;
+                            }
+                        }
+                    }
+                }
+            }
+            setSpeed(car, v);
+            if (kind < 0) {
+                queue.cancel(2 * car);
+            } else {
+                queue.schedule(2 * car, when, kind);
+            }
+            int behind = follower[car];
+            if (v == oldSpeed || behind == CarStore.NO_CAR
+                    || (speed[behind] <= v && speed[behind] == baseSpeed[behind])) {
+                return;  // The car behind keeps its leg: it is not held back and cannot catch up sooner
+            }
+            car = behind;
+        }
+    }
+
+    // Set a car's speed for its new leg, counting a stop or a resume at the light ahead
+    private void setSpeed(int car, double v) {
+        speed[car] = v;
+        if (v == 0 && stoppedAt[car] < 0 && !finished[car]) {
+            int slot = nextLight[car];
+            if (slot < intersections.size()
+                    && intersections.position(slot) - legPosition[car] <= SimulationEngine.APPROACH_DISTANCE) {
+                int light = intersections.lightId(slot);
+                stoppedAt[car] = light;
+                stoppedSince[car] = now;
+                sampleQueues(light);
+                stats.get(light).carStopped();
+            }
+        } else if (v > 0 && stoppedAt[car] >= 0) {
+            sampleQueues(stoppedAt[car]);
+            stats.get(stoppedAt[car]).carResumed(now - stoppedSince[car]);
+            stoppedAt[car] = -1;
+        }
+    }
+
+    // Add the queue samples of the light's phases that ended by now; older phases than the ring keeps are skipped
+    private void sampleQueues(int light) {
+        SignalPlan plan = plans.get(light);
+        double next = nextSample[light];
+        TrafficLightColor color = sampleColor[light];
+        double keepFrom = now - plan.cycleLength() * (IntersectionStats.QUEUE_SAMPLES / 3 + 1);
+        if (next < keepFrom) {
+            color = plan.colorAt(keepFrom);
+            next = plan.nextChange(keepFrom);
+        }
+        IntersectionStats lightStats = stats.get(light);
+        while (next <= now) {
+            lightStats.sampleQueue(next, color);
+            color = plan.colorAt(next);
+            next = Math.max(plan.nextChange(next), Math.nextUp(next));  // Always moves forward
+        }
+        nextSample[light] = next;
+        sampleColor[light] = color;
+    }
+
+    // Position of a car at simulated time t within its current leg
+    private double positionAt(int car, double t) {
+        return Math.min(legPosition[car] + speed[car] * (t - legTime[car]), SimulationEngine.TRACK_LENGTH);
+    }
+
+    // Grow the car columns
+    private void grow(int capacity) {
+        legPosition = Arrays.copyOf(legPosition, capacity);
+        legTime = Arrays.copyOf(legTime, capacity);
+        speed = Arrays.copyOf(speed, capacity);
+        baseSpeed = Arrays.copyOf(baseSpeed, capacity);
+        lane = Arrays.copyOf(lane, capacity);
+        leader = Arrays.copyOf(leader, capacity);
+        follower = Arrays.copyOf(follower, capacity);
+        nextLight = Arrays.copyOf(nextLight, capacity);
+        waitingAt = Arrays.copyOf(waitingAt, capacity);
+        nextWaiting = Arrays.copyOf(nextWaiting, capacity);
+        stoppedAt = Arrays.copyOf(stoppedAt, capacity);
+        stoppedSince = Arrays.copyOf(stoppedSince, capacity);
+        finished = Arrays.copyOf(finished, capacity);
+    }
+
+    // Copy the state at the current time into a snapshot, interpolating every car's position
+    public void snapshot(EngineSnapshot into) {
+        into.ensureCapacity(carCount, plans.size());
+        into.tick = eventsProcessed;
+        into.simTime = now;
+        into.carCount = carCount;
+        for (int car = 0; car < carCount; car++) {
+            into.carPositions[car] = positionAt(car, now);
+            into.carSpeeds[car] = speed[car];
+            into.carFlags[car] = CarStore.ACTIVE | (finished[car] ? CarStore.FINISHED : 0)
+                    | (stoppedAt[car] >= 0 ? CarStore.STOPPED : 0);
+            into.carEdges[car] = CarStore.NO_EDGE;
+        }
+        into.lightCount = plans.size();
+        for (int light = 0; light < plans.size(); light++) {
+            into.lightPositions[light] = lightPositions[light];
+            into.lightColors[light] = plans.get(light).colorAt(now);
+        }
+    }
+
+    // Read-only accessors
+    // Position of a car now, interpolated along its current leg
+    public double carPosition(int car) {
+        return positionAt(car, now);
+    }
+
+    public double carSpeed(int car) {
+        return speed[car];
+    }
+
+    public boolean isCarFinished(int car) {
+        return finished[car];
+    }
+
+    // No car on the road and none still to depart
+    public boolean allCarsFinished() {
+        return carsOnRoad == 0 && nextDeparture == departureCount;
+    }
+
+    public int carCount() {
+        return carCount;
+    }
+
+    public long carsFinished() {
+        return carsFinished;
+    }
+
+    public int pendingDepartures() {
+        return departureCount - nextDeparture;
+    }
+
+    public int lightCount() {
+        return plans.size();
+    }
+
+    // Color of a light now
+    public TrafficLightColor lightColor(int light) {
+        return plans.get(light).colorAt(now);
+    }
+
+    // Statistics of a light, with its queue series brought up to now
+    public IntersectionStats intersectionStats(int light) {
+        sampleQueues(light);
+        return stats.get(light);
+    }
+
+    // Simulated seconds since the start
+    public double simTime() {
+        return now;
+    }
+
+    public long eventsProcessed() {
+        return eventsProcessed;
+    }
+
+    // Events waiting in the queue (cars and lights with something ahead of them)
+    public int pendingEvents() {
+        return queue.size();
+    }
+
+    public long seed() {
+        return seed;
+    }
+}
@@ -0,0 +1,88 @@
+/**
+ CMSC 335
+ Project 4
+ Class Descriptions:
+ EngineSnapshot is a reusable, read-only copy of the SimulationEngine state. Observers such as the GUI allocate one
+ snapshot and refill it with SimulationEngine.snapshot() each time they want to draw, so they never hold the engine
+ lock while they render.
+ */
+
+package engine;
+
+public class EngineSnapshot {
+    long tick;                        // Engine tick the snapshot was taken at
+    double simTime;                   // Simulated seconds since start
+    int carCount;                     // Number of car slots copied (some may be removed cars)
+    double[] carPositions = new double[0];
+    double[] carSpeeds = new double[0];
+    int[] carFlags = new int[0];      // CarStore flags; 0 for a removed car
+    int[] carEdges = new int[0];      // Network edge, or CarStore.NO_EDGE for a car on the straight track
+    int lightCount;                   // Number of valid entries in the light arrays
+    int[] lightPositions = new int[0];
+    TrafficLightColor[] lightColors = new TrafficLightColor[0];
+
+    // Grow the arrays when the engine has more cars or lights than last time
+    void ensureCapacity(int cars, int lights) {
+        if (carPositions.length < cars) {
+            int size = Math.max(cars, carPositions.length * 2);
+            carPositions = new double[size];
+            carSpeeds = new double[size];
+            carFlags = new int[size];
+            carEdges = new int[size];
+        }
+        if (lightPositions.length < lights) {
+            int size = Math.max(lights, lightPositions.length * 2);
+            lightPositions = new int[size];
+            lightColors = new TrafficLightColor[size];
+        }
+    }
+
+    public long tick() {
+        return tick;
+    }
+
+    public double simTime() {
+        return simTime;
+    }
+
+    public int carCount() {
+        return carCount;
+    }
+
+    public double carPosition(int carId) {
+        return carPositions[carId];
+    }
+
+    public double carSpeed(int carId) {
+        return carSpeeds[carId];
+    }
+
+    // Network edge the car is on (its position is then meters along that edge), or CarStore.NO_EDGE
+    public int carEdge(int carId) {
+        return carEdges[carId];
+    }
+
+    public boolean carPresent(int carId) {
+        return (carFlags[carId] & CarStore.ACTIVE) != 0;
+    }
+
+    public boolean carFinished(int carId) {
+        return (carFlags[carId] & CarStore.FINISHED) != 0;
+    }
+
+    public boolean carStopped(int carId) {
+        return (carFlags[carId] & CarStore.STOPPED) != 0;
+    }
+
+    public int lightCount() {
+        return lightCount;
+    }
+
+    public int lightPosition(int lightId) {
+        return lightPositions[lightId];
+    }
+
+    public TrafficLightColor lightColor(int lightId) {
+        return lightColors[lightId];
+    }
+}
@@ -0,0 +1,206 @@
+/**
+ CMSC 335
+ Project 4
+ Class Descriptions:
+ EventJournal records simulation events (car stopped, resumed, slowed, finished; light changed) into a binary file
+ instead of printing them. Producers (the engine loop, car actors, light timers) claim a slot in a fixed-size ring
+ buffer with a compare-and-set, write the record's primitive fields and publish it; they never lock and never touch
+ the file. If the ring is full the event is dropped and counted rather than blocking the producer. One background
+ drainer thread copies published records in batches into a memory-mapped file, mapping a new chunk as the file grows.
+ JournalReader decodes the file back to text.
+
+ File layout: a 16-byte header (magic "TRJ1", version, start time in epoch millis) followed by 32-byte records:
+ long wall nanos since start, long engine tick, int event type, int subject, int position, int value.
+ */
+
+package engine;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+public final class EventJournal implements Closeable {
+
+    public static final int MAGIC = 0x54524A31;      // "TRJ1"
+    public static final int VERSION = 1;
+    public static final int HEADER_BYTES = 16;
+    public static final int RECORD_BYTES = 32;
+
+    // Journal that ignores every event (used when journaling is off)
+    public static final EventJournal DISABLED = new EventJournal();
+
+    private static final long CHUNK_BYTES = 16L << 20;   // File is mapped 16 MB at a time
+    private static final int BATCH = 4096;               // Max records drained before checking for shutdown
+
+    private final boolean enabled;
+    private final int mask;
+    private final long[] wallNanos;                      // Ring columns, indexed by sequence & mask
+    private final long[] ticks;
+    private final int[] types;
+    private final int[] subjects;
+    private final int[] positions;
+    private final int[] values;
+    private final AtomicLongArray published;             // Sequence last published in each slot
+    private final AtomicLong claimed = new AtomicLong(); // Next sequence to hand to a producer
+    private final AtomicLong drained = new AtomicLong(); // Next sequence the drainer will read
+    private final LongAdder dropped = new LongAdder();
+    private final long startNanos = System.nanoTime();
+
+    private final FileChannel channel;
+    private final Thread drainer;
+    private MappedByteBuffer chunk;                      // Current mapped region (drainer thread only)
+    private long chunkStart;                             // File offset of the current chunk
+    private volatile boolean closing = false;
+
+    // Disabled journal
+    private EventJournal() {
+        enabled = false;
+        mask = 0;
+        wallNanos = ticks = null;
+        types = subjects = positions = values = null;
+        published = null;
+        channel = null;
+        drainer = null;
+    }
+
+    // Open a journal file with a ring of the given capacity (rounded up to a power of two)
+    public EventJournal(Path file, int ringCapacity) throws IOException {
+        int capacity = Integer.highestOneBit(Math.max(2, ringCapacity - 1)) << 1;
+        enabled = true;
+        mask = capacity - 1;
+        wallNanos = new long[capacity];
+        ticks = new long[capacity];
+        types = new int[capacity];
+        subjects = new int[capacity];
+        positions = new int[capacity];
+        values = new int[capacity];
+        published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            published.set(i, -1);
+        }
+
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        chunkStart = 0;
+        chunk = channel.map(FileChannel.MapMode.READ_WRITE, 0, CHUNK_BYTES);
+        chunk.putInt(MAGIC).putInt(VERSION).putLong(System.currentTimeMillis());
+
+        drainer = new Thread(this::drainLoop, "journal-drainer");
+        drainer.setDaemon(true);
+        drainer.start();
+    }
+
+    // Open the file named by -Dtraffic.journal, or return DISABLED when the property is not set
+    public static EventJournal fromSystemProperty() throws IOException {
+        String file = System.getProperty("traffic.journal");
+        if (file == null || file.isBlank()) {
+            return DISABLED;
+        }
+        return new EventJournal(Path.of(file), 1 << 16);
+    }
+
+    // Record one event; never blocks. Returns false if the journal is off or the ring was full
+    public boolean record(JournalEvent event, long tick, int subject, int position, int value) {
+        if (!enabled) {
+            return false;
+        }
+        long sequence;
+        do {
+            sequence = claimed.get();
+            if (sequence - drained.get() > mask) {
+                dropped.increment();   // Ring full: drop rather than wait for the drainer
+                return false;
+            }
+        } while (!claimed.compareAndSet(sequence, sequence + 1));
+
+        int slot = (int) (sequence & mask);
+        wallNanos[slot] = System.nanoTime() - startNanos;
+        ticks[slot] = tick;
+        types[slot] = event.ordinal();
+        subjects[slot] = subject;
+        positions[slot] = position;
+        values[slot] = value;
+        published.lazySet(slot, sequence);   // Release: fields above are visible before the sequence
+        return true;
+    }
+
+    // Drainer: copy published records to the mapped file in order
+    private void drainLoop() {
+        try {
+            while (true) {
+                int copied = drainBatch();
+                if (copied == 0) {
+                    if (closing && drained.get() == claimed.get()) {
+                        return;
+                    }
+                    LockSupport.parkNanos(1_000_000);  // Nothing to do: check again in 1 ms
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Event journal stopped: " + e);
+        }
+    }
+
+    // Copy up to BATCH consecutive published records
+    private int drainBatch() throws IOException {
+        long next = drained.get();
+        int copied = 0;
+        while (copied < BATCH) {
+            int slot = (int) (next & mask);
+            if (published.get(slot) != next) {
+                break;   // Not published yet (or a producer is still writing it)
+            }
+            if (chunk.remaining() < RECORD_BYTES) {
+                chunkStart += chunk.position();
+                chunk = channel.map(FileChannel.MapMode.READ_WRITE, chunkStart, CHUNK_BYTES);
+            }
+            chunk.putLong(wallNanos[slot]).putLong(ticks[slot]).putInt(types[slot])
+                    .putInt(subjects[slot]).putInt(positions[slot]).putInt(values[slot]);
+            next++;
+            copied++;
+        }
+        if (copied > 0) {
+            drained.lazySet(next);   // Frees the slots for producers
+        }
+        return copied;
+    }
+
+    // Events dropped because the ring was full
+    public long droppedEvents() {
+        return dropped.sum();
+    }
+
+    // Events written to the file so far
+    public long writtenEvents() {
+        return enabled ? drained.get() : 0;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Drain everything still in the ring, then trim the file to the records written
+    @Override
+    public void close() throws IOException {
+        if (!enabled || closing) {
+            return;
+        }
+        closing = true;
+        try {
+            drainer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        long length = chunkStart + chunk.position();
+        chunk.force();
+        channel.truncate(length);
+        channel.close();
+    }
+}
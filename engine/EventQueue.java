@@ -0,0 +1,150 @@
+/**
+ CMSC 335
+ Project 4
+ Class Descriptions:
+ EventQueue is the future-event list of DiscreteEventSimulation: a binary min-heap of pending events ordered by
+ simulated time, ties broken by the order they were scheduled so a run is deterministic. Each event belongs to a
+ slot (a car or a light) that has at most one pending event, and the heap keeps every slot's index, so rescheduling
+ or cancelling a slot's event is O(log n) in place instead of leaving stale entries behind. The heap is parallel
+ primitive arrays, so scheduling allocates nothing once the arrays have grown to the number of slots.
+ */
+
+package engine;
+
+import java.util.Arrays;
+
+final class EventQueue {
+
+    static final int NOT_QUEUED = -1;
+
+    private int size = 0;
+    private int[] heap = new int[16];          // Slot of each heap entry
+    private double[] times = new double[16];   // Time of each heap entry
+    private long[] order = new long[16];       // Scheduling sequence number of each heap entry (tie-break)
+    private int[] kinds = new int[16];         // Event kind of each heap entry
+    private int[] index = new int[0];          // Heap index of each slot, or NOT_QUEUED
+    private long scheduled = 0;                // Sequence numbers handed out
+
+    // Schedule the slot's event at the given time, replacing its pending event if any
+    void schedule(int slot, double time, int kind) {
+        if (slot >= index.length) {
+            int old = index.length;
+            index = Arrays.copyOf(index, Math.max(slot + 1, old * 2));
+            Arrays.fill(index, old, index.length, NOT_QUEUED);
+        }
+        int at = index[slot];
+        if (at == NOT_QUEUED) {
+            if (size == heap.length) {
+                int capacity = size * 2;
+                heap = Arrays.copyOf(heap, capacity);
+                times = Arrays.copyOf(times, capacity);
+                order = Arrays.copyOf(order, capacity);
+                kinds = Arrays.copyOf(kinds, capacity);
+            }
+            at = size++;
+            heap[at] = slot;
+            index[slot] = at;
+        }
+        times[at] = time;
+        order[at] = scheduled++;
+        kinds[at] = kind;
+        siftDown(siftUp(at));
+    }
+
+    // Drop the slot's pending event, if any
+    void cancel(int slot) {
+        if (slot >= index.length || index[slot] == NOT_QUEUED) {
+            return;
+        }
+        removeAt(index[slot]);
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    // Time of the earliest event, or infinity when there is none
+    double peekTime() {
+        return size == 0 ? Double.POSITIVE_INFINITY : times[0];
+    }
+
+    // Slot of the earliest event
+    int peekSlot() {
+        return heap[0];
+    }
+
+    // Kind of the earliest event
+    int peekKind() {
+        return kinds[0];
+    }
+
+    // Remove the earliest event
+    void pop() {
+        removeAt(0);
+    }
+
+    int size() {
+        return size;
+    }
+
+    // Remove the entry at a heap index, filling the hole with the last entry
+    private void removeAt(int at) {
+        index[heap[at]] = NOT_QUEUED;
+        size--;
+        if (at == size) {
+            return;
+        }
+        move(size, at);
+        siftDown(siftUp(at));
+    }
+
+    // Move an entry up while it is earlier than its parent; returns its final index
+    private int siftUp(int at) {
+        while (at > 0) {
+            int parent = (at - 1) >>> 1;
+            if (!earlier(at, parent)) break;
+            swap(at, parent);
+            at = parent;
+        }
+        return at;
+    }
+
+    // Move an entry down while a child is earlier
+    private void siftDown(int at) {
+        while (true) {
+            int child = 2 * at + 1;
+            if (child >= size) return;
+            if (child + 1 < size && earlier(child + 1, child)) child++;
+            if (!earlier(child, at)) return;
+            swap(at, child);
+            at = child;
+        }
+    }
+
+    // True if entry a comes before entry b
+    private boolean earlier(int a, int b) {
+        return times[a] < times[b] || (times[a] == times[b] && order[a] < order[b]);
+    }
+
+    private void swap(int a, int b) {
+        int slot = heap[a];
+        double time = times[a];
+        long seq = order[a];
+        int kind = kinds[a];
+        move(b, a);
+        heap[b] = slot;
+        times[b] = time;
+        order[b] = seq;
+        kinds[b] = kind;
+        index[slot] = b;
+    }
+
+    // Copy entry from into index to
+    private void move(int from, int to) {
+        heap[to] = heap[from];
+        times[to] = times[from];
+        order[to] = order[from];
+        kinds[to] = kinds[from];
+        index[heap[to]] = to;
+    }
+}
@@ -0,0 +1,27 @@
+/**
+ CMSC 335
+ Project 4
+ Class Descriptions:
+ ExecutionMode:
+ An enum that selects how the SimulationEngine advances its state. STEP_LOOP runs one fixed-timestep loop thread that
+ steps every car and light; PLATFORM_THREADS keeps the original design of one CarThread per car; VIRTUAL_THREADS runs
+ the same CarThread actors on virtual threads (Java 21+), so hundreds of thousands of cars can each have their own
+ thread. DISCRETE_EVENT does not step at all: it runs in DiscreteEventSimulation, which jumps from one event to the
+ next and has no live view, so only HeadlessSimulation offers it. The mode can be chosen on the command line with
+ -Dtraffic.mode=<name>.
+ */
+
+package engine;
+
+public enum ExecutionMode {
+    STEP_LOOP, PLATFORM_THREADS, VIRTUAL_THREADS, DISCRETE_EVENT;
+
+    // Read the mode from the traffic.mode system property, falling back to STEP_LOOP
+    public static ExecutionMode fromSystemProperty() {
+        String value = System.getProperty("traffic.mode");
+        if (value == null || value.isBlank()) {
+            return STEP_LOOP;
+        }
+        return valueOf(value.trim().toUpperCase());
+    }
+}
@@ -0,0 +1,217 @@
+/**
+ CMSC 335
+ Project 4
+ Class Descriptions:
+ FlightEvents defines the simulator's Java Flight Recorder events (category "Traffic Simulator") and the helpers the
+ engine and the lights use to emit them:
+   trafficsim.CarStopped   a car waited at a RED light (car id, intersection position, how long it waited)
+   trafficsim.CarSlowed    a car crossed a YELLOW light at half speed (car id, intersection position, how long)
+   trafficsim.CarFinished  a car reached the end of its track or route (car id, track position or, for a car on a
+                           road network, the id of its destination node, trip time)
+   trafficsim.LightChanged a light entered a new phase (intersection position, new color, length of the last phase)
+   trafficsim.EngineTick   one step of the engine (tick number, cars, workers; the event's own duration is the step)
+ Car and light durations are wall time, so they line up with GC and lock events in the same recording; a car event is
+ committed when the state ends, with the state's length in a field. Loading the JFR event classes costs a few hundred
+ milliseconds, so nothing here touches them until the recorder is running: recording is a volatile flag that a
+ FlightRecorderListener recomputes whenever a recording starts or stops (also ones started later with jcmd JFR.start).
+ It is true only while at least one of these event types is enabled by a running recording, and the engine checks it
+ before timestamping or allocating anything. With no recording, or with recordings that leave the traffic events
+ disabled, this is one volatile read per car state change and per tick.
+ */
+
+package engine;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.FlightRecorderListener;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+import jdk.jfr.Timespan;
+
+public final class FlightEvents {
+
+    // True while a running recording has at least one of the traffic event types enabled
+    static volatile boolean recording = false;
+
+    static {
+        FlightRecorder.addListener(new FlightRecorderListener() {
+            @Override
+            public void recordingStateChanged(Recording changed) {
+                recording = anyEnabled();
+            }
+        });
+        if (FlightRecorder.isInitialized()) {
+            recording = anyEnabled();
+        }
+    }
+
+    private FlightEvents() {
+    }
+
+    // True if any traffic event type is enabled now (which loads the event classes, so only call it under the recorder)
+    private static boolean anyEnabled() {
+        return EventType.getEventType(CarStopped.class).isEnabled()
+                || EventType.getEventType(CarSlowed.class).isEnabled()
+                || EventType.getEventType(CarFinished.class).isEnabled()
+                || EventType.getEventType(LightChanged.class).isEnabled()
+                || EventType.getEventType(EngineTick.class).isEnabled();
+    }
+
+    // Load this class (and register the listener) up front, so the first car event does not pay for it mid-run
+    static void watchRecorder() {
+    }
+
+    @Name("trafficsim.CarStopped")
+    @Label("Car Stopped")
+    @Category({"Traffic Simulator", "Cars"})
+    @Description("A car waited at a RED light")
+    public static final class CarStopped extends Event {
+        @Label("Car Id")
+        int carId;
+
+        @Label("Intersection")
+        @Description("Position of the light the car waited at")
+        int intersection;
+
+        @Label("Waited")
+        @Timespan(Timespan.NANOSECONDS)
+        long waited;
+    }
+
+    @Name("trafficsim.CarSlowed")
+    @Label("Car Slowed")
+    @Category({"Traffic Simulator", "Cars"})
+    @Description("A car crossed a YELLOW light at half speed")
+    public static final class CarSlowed extends Event {
+        @Label("Car Id")
+        int carId;
+
+        @Label("Intersection")
+        @Description("Position of the light that slowed the car")
+        int intersection;
+
+        @Label("Slowed")
+        @Timespan(Timespan.NANOSECONDS)
+        long slowed;
+    }
+
+    @Name("trafficsim.CarFinished")
+    @Label("Car Finished")
+    @Category({"Traffic Simulator", "Cars"})
+    @Description("A car reached the end of the track or of its route")
+    public static final class CarFinished extends Event {
+        @Label("Car Id")
+        int carId;
+
+        @Label("Position")
+        @Description("Track position, or node id for a car on a road network")
+        int position;
+
+        @Label("Trip Time")
+        @Description("Wall time since the car was added; 0 if it was added before the recorder started")
+        @Timespan(Timespan.NANOSECONDS)
+        long tripTime;
+    }
+
+    @Name("trafficsim.LightChanged")
+    @Label("Light Changed")
+    @Category({"Traffic Simulator", "Lights"})
+    @Description("A traffic light entered a new phase")
+    public static final class LightChanged extends Event {
+        @Label("Intersection")
+        int intersection;
+
+        @Label("Color")
+        String color;
+
+        @Label("Previous Phase")
+        @Description("Wall time the light spent in the phase it left; 0 if that phase began before the recorder"
+                + " started")
+        @Timespan(Timespan.NANOSECONDS)
+        long previousPhase;
+    }
+
+    @Name("trafficsim.EngineTick")
+    @Label("Engine Tick")
+    @Category({"Traffic Simulator", "Engine"})
+    @Description("One fixed-timestep step of the engine")
+    public static final class EngineTick extends Event {
+        @Label("Tick")
+        long tick;
+
+        @Label("Cars")
+        int cars;
+
+        @Label("Workers")
+        int workers;
+    }
+
+    // A car stopped at the light at intersection for the given wall nanoseconds
+    static void carStopped(int carId, int intersection, long nanos) {
+        CarStopped event = new CarStopped();
+        if (event.shouldCommit()) {
+            event.carId = carId;
+            event.intersection = intersection;
+            event.waited = nanos;
+            event.commit();
+        }
+    }
+
+    // A car was slowed by the light at intersection for the given wall nanoseconds
+    static void carSlowed(int carId, int intersection, long nanos) {
+        CarSlowed event = new CarSlowed();
+        if (event.shouldCommit()) {
+            event.carId = carId;
+            event.intersection = intersection;
+            event.slowed = nanos;
+            event.commit();
+        }
+    }
+
+    // A car finished at position (track position, or destination node id on a network) after tripNanos of wall time
+    static void carFinished(int carId, int position, long tripNanos) {
+        CarFinished event = new CarFinished();
+        if (event.shouldCommit()) {
+            event.carId = carId;
+            event.position = position;
+            event.tripTime = tripNanos;
+            event.commit();
+        }
+    }
+
+    // The light at intersection entered color after previousPhaseNanos in its last phase
+    static void lightChanged(int intersection, TrafficLightColor color, long previousPhaseNanos) {
+        LightChanged event = new LightChanged();
+        if (event.shouldCommit()) {
+            event.intersection = intersection;
+            event.color = color.name();
+            event.previousPhase = previousPhaseNanos;
+            event.commit();
+        }
+    }
+
+    // Start timing a tick; returns null when the event is disabled
+    static EngineTick beginTick() {
+        EngineTick event = new EngineTick();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    // Finish timing a tick started with beginTick
+    static void endTick(EngineTick event, long tick, int cars, int workers) {
+        event.end();
+        if (event.shouldCommit()) {  // Also applies the event's threshold to the measured duration
+            event.tick = tick;
+            event.cars = cars;
+            event.workers = workers;
+            event.commit();
+        }
+    }
+}
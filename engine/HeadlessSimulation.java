@@ -0,0 +1,192 @@
+/**
+ CMSC 335
+ Project 4
+ Class Descriptions:
+ HeadlessSimulation runs a Scenario on the SimulationEngine without any GUI, stepping as fast as the CPU allows until
+ every car has finished. It is meant for batch nodes with no display. -Dtraffic.scenario=file.txt loads the lights and
+ cars from a scenario file (see ScenarioLoader); without it the default three intersections and three cars run.
+ With -Dtraffic.record=run.bin it also writes a RunRecording that engine.ReplayRun can reproduce bit for bit, and
+ -Dtraffic.seed fixes the engine's random seed. Its metrics are published over JMX by SimulationMonitor while it runs,
+ and the tick duration percentiles and each intersection's IntersectionStats, with the longest queue in each of its
+ latest phases, are printed at the end.
+ -Dtraffic.trajectory=cars.csv (or .bin, optionally .gz) samples every car's position and speed with a
+ TrajectoryExporter; the run steps faster than the sampler, so most ticks fall between samples.
+ -Dtraffic.checkpoint=run.ckpt saves the run every -Dtraffic.checkpointSeconds wall seconds and at the end with a
+ CheckpointWriter, and -Dtraffic.resume=run.ckpt continues a saved run instead of starting the scenario (maxTicks
+ counts from tick 0 of the original run). A resumed run cannot be recorded, as its start is not the seed's.
+ -Dtraffic.mode=DISCRETE_EVENT runs the scenario in a DiscreteEventSimulation instead, jumping from event to event up
+ to maxTicks' worth of simulated time. There a trajectory is written one frame per simulated second (or
+ -Dtraffic.trajectoryFps frames per simulated second), each interpolated from the cars' legs at that moment, so the
+ export costs frames times cars while the run itself stays event-driven; recording, checkpoints and resuming are
+ STEP_LOOP features.
+ Usage: java [-Dtraffic.scenario=file.txt] [-Dtraffic.record=run.bin] engine.HeadlessSimulation [maxTicks] [extraCars]
+ extraCars adds that many more cars, one every SPAWN_INTERVAL ticks, with speeds drawn from the seeded random.
+ */
+
+package engine;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+public class HeadlessSimulation {
+
+    private static final int SPAWN_INTERVAL = 30;  // Ticks between extra cars
+    private static final int SERIES_PRINTED = 15;  // Latest phases of each light's queue series printed at the end
+
+    public static void main(String[] args) throws IOException {
+        long maxTicks = args.length > 0 ? Long.parseLong(args[0]) : 1_000_000L;
+        int extraCars = args.length > 1 ? Integer.parseInt(args[1]) : 0;
+
+        if (ExecutionMode.fromSystemProperty() == ExecutionMode.DISCRETE_EVENT) {
+            runDiscreteEvent(maxTicks, extraCars);
+            return;
+        }
+        String resumeFile = System.getProperty("traffic.resume");
+        String recordingFile = System.getProperty("traffic.record");
+        SimulationEngine engine;
+        if (resumeFile != null) {
+            long started = System.nanoTime();
+            engine = CheckpointReader.restore(Path.of(resumeFile));
+            System.out.println("Resumed at tick " + engine.tickCount() + " with " + engine.carCount() + " cars in "
+                    + (System.nanoTime() - started) / 1_000_000 + " ms");
+            if (recordingFile != null) {
+                System.out.println("Recording disabled: a resumed run cannot be replayed from its seed");
+                recordingFile = null;
+            }
+        } else {
+            engine = new SimulationEngine();
+        }
+        SimulationMonitor.register(engine);
+        if (recordingFile != null) {
+            engine.startRecording(new RunRecording(engine.seed()));
+        }
+        if (resumeFile == null) {
+            Scenario.fromSystemProperty().applyTo(engine);
+        }
+        EventJournal journal = EventJournal.fromSystemProperty();
+        engine.attachJournal(journal);
+        TrajectoryExporter trajectory = TrajectoryExporter.fromSystemProperty(engine);
+        trajectory.start();
+        CheckpointWriter checkpoints = CheckpointWriter.fromSystemProperty(engine);
+        checkpoints.start();
+
+        long started = System.nanoTime();
+        // Extra cars a resumed run had already added before its checkpoint, so it goes on exactly as the original
+        int spawned = (int) Math.min(extraCars, (engine.tickCount() + SPAWN_INTERVAL - 1) / SPAWN_INTERVAL);
+        while ((spawned < extraCars || !engine.allCarsFinished()) && engine.tickCount() < maxTicks) {
+            if (spawned < extraCars && engine.tickCount() % SPAWN_INTERVAL == 0) {
+                engine.addRandomCar(3, 20);
+                spawned++;
+            }
+            engine.step(SimulationEngine.TICK_SECONDS);
+        }
+        long elapsedMicros = (System.nanoTime() - started) / 1000;
+        journal.close();
+        trajectory.close();
+        checkpoints.close();
+        RunRecording recording = engine.stopRecording();
+        if (recording != null) {
+            recording.write(Path.of(recordingFile));
+        }
+
+        System.out.println("Ticks: " + engine.tickCount() + " | Simulated: " + engine.simTime() + " s"
+                + " | Wall: " + elapsedMicros + " us");
+        LatencyHistogram ticks = engine.metrics().tickNanos();
+        System.out.println("Tick: p50 " + ticks.percentile(0.50) + " ns | p99 " + ticks.percentile(0.99)
+                + " ns | p999 " + ticks.percentile(0.999) + " ns | max " + ticks.max() + " ns");
+        for (int light = 0; light < engine.lightCount(); light++) {
+            printStats(engine.intersectionStats(light), engine.simTime());
+        }
+        if (trajectory.isEnabled()) {
+            System.out.println("Trajectory: " + trajectory.framesWritten() + " frames, " + trajectory.ticksSkipped()
+                    + " ticks skipped, " + trajectory.bytesEncoded() + " bytes before compression");
+        }
+        if (checkpoints.isEnabled()) {
+            System.out.println("Checkpoint: " + checkpoints.checkpointsWritten() + " written ("
+                    + checkpoints.fullCheckpoints() + " full), " + checkpoints.pagesWritten() + " pages, "
+                    + checkpoints.bytesWritten() + " bytes | longest pause " + checkpoints.maxPauseNanos() / 1000
+                    + " us");
+        }
+        if (journal.isEnabled()) {
+            System.out.println("Journal: " + journal.writtenEvents() + " events written, "
+                    + journal.droppedEvents() + " dropped");
+        }
+    }
+
+    // Run the scenario event by event, adding the extra cars at the simulated times the tick loop would
+    private static void runDiscreteEvent(long maxTicks, int extraCars) throws IOException {
+        DiscreteEventSimulation simulation = new DiscreteEventSimulation();
+        Scenario.fromSystemProperty().applyTo(simulation);
+        for (String property : new String[] {"traffic.record", "traffic.checkpoint", "traffic.resume"}) {
+            if (System.getProperty(property) != null) {
+                System.out.println(property + " ignored: not supported in DISCRETE_EVENT mode");
+            }
+        }
+        double until = maxTicks * SimulationEngine.TICK_SECONDS;
+        TrajectoryExporter trajectory = TrajectoryExporter.fromSystemProperty(simulation);
+        trajectory.start();
+
+        long started = System.nanoTime();
+        long frames = 0;
+        for (int i = 0; i < extraCars; i++) {
+            double departure = (double) i * SPAWN_INTERVAL * SimulationEngine.TICK_SECONDS;
+            if (departure >= until) {
+                break;
+            }
+            frames = runUntil(simulation, departure, trajectory, frames);
+            simulation.addRandomCar(3, 20);
+        }
+        while (!simulation.allCarsFinished() && simulation.nextEventTime() <= until) {
+            frames = runUntil(simulation, simulation.nextEventTime(), trajectory, frames);
+        }
+        long elapsedMicros = (System.nanoTime() - started) / 1000;
+        trajectory.close();
+
+        System.out.println("Events: " + simulation.eventsProcessed() + " | Simulated: " + simulation.simTime() + " s"
+                + " | Wall: " + elapsedMicros + " us");
+        System.out.println("Cars: " + simulation.carsFinished() + " of " + simulation.carCount() + " finished");
+        for (int light = 0; light < simulation.lightCount(); light++) {
+            printStats(simulation.intersectionStats(light), simulation.simTime());
+        }
+        if (trajectory.isEnabled()) {
+            System.out.println("Trajectory: " + trajectory.framesWritten() + " frames, " + trajectory.bytesEncoded()
+                    + " bytes before compression");
+        }
+    }
+
+    // Run the simulation up to the given time, writing the trajectory frames due on the way; returns the frame count
+    private static long runUntil(DiscreteEventSimulation simulation, double until, TrajectoryExporter trajectory,
+                                 long frames) throws IOException {
+        if (trajectory.isEnabled()) {
+            double period = trajectory.simulatedFramePeriod();
+            for (double frameTime = frames * period; frameTime <= until; frameTime = ++frames * period) {
+                simulation.runUntil(frameTime);
+                trajectory.writeFrame();
+            }
+        }
+        simulation.runUntil(until);
+        return frames;
+    }
+
+    // One intersection's summary line
+    private static void printStats(IntersectionStats stats, double elapsed) {
+        System.out.printf("Light %d: %d cars | wait avg %.1f s, p95 %.1f s | queue now %d, peak %d, mean %.2f"
+                        + " | slowed %.0f s%n", stats.position(), stats.carsPassed(), stats.averageWait(),
+                stats.waitQuantile(0.95), stats.queueLength(), stats.peakQueueLength(),
+                stats.meanQueueLength(elapsed), stats.slowedSeconds());
+        double[] times = new double[IntersectionStats.QUEUE_SAMPLES];
+        TrafficLightColor[] colors = new TrafficLightColor[IntersectionStats.QUEUE_SAMPLES];
+        int[] queues = new int[IntersectionStats.QUEUE_SAMPLES];
+        int[] peaks = new int[IntersectionStats.QUEUE_SAMPLES];
+        int count = stats.queueSeries(times, colors, queues, peaks);
+        if (count > 0) {
+            StringBuilder line = new StringBuilder("  queue peak per phase, last ");
+            int from = Math.max(0, count - SERIES_PRINTED);
+            line.append(count - from).append(" of ").append(stats.queueSamplesTaken()).append(':');
+            for (int i = from; i < count; i++) {
+                line.append(' ').append(colors[i].name().charAt(0)).append(peaks[i]);
+            }
+            System.out.println(line);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+/**
+ CMSC 335
+ Project 4
+ Class Descriptions:
+ IntelligentDriverModel is the car-following law used by the engine (Treiber's Intelligent Driver Model). A car
+ accelerates towards its desired speed on a free road and brakes smoothly as the bumper-to-bumper gap to its leader
+ shrinks below the desired gap s* = s0 + vT + v dv / (2 sqrt(ab)). Positions are advanced with the ballistic update,
+ which stays stable at the engine's one-second ticks. All methods are static and allocation-free.
+ */
+
+package engine;
+
+public final class IntelligentDriverModel {
+
+    public static final double MAX_ACCELERATION = 1.5;   // a (m/s^2)
+    public static final double COMFORT_BRAKING = 2.0;    // b (m/s^2)
+    public static final double MIN_GAP = 2.0;            // s0 (m), kept even when stopped
+    public static final double TIME_HEADWAY = 1.5;       // T (s)
+    public static final double CAR_LENGTH = 5.0;         // m, so gap = leader position - position - CAR_LENGTH
+    private static final double SQRT_AB = Math.sqrt(MAX_ACCELERATION * COMFORT_BRAKING);
+
+    private IntelligentDriverModel() {
+    }
+
+    // Acceleration of a car at speed v wanting v0, with the given gap to a leader closing at approachRate (v - vLeader)
+    public static double acceleration(double v, double v0, double gap, double approachRate) {
+        double ratio = v0 > 0 ? v / v0 : 1.0;
+        double free = 1.0 - ratio * ratio * ratio * ratio;  // Exponent delta = 4
+        if (gap == Double.POSITIVE_INFINITY) {
+            return MAX_ACCELERATION * free;
+        }
+        double desiredGap = MIN_GAP + Math.max(0.0, v * TIME_HEADWAY + v * approachRate / (2.0 * SQRT_AB));
+        double interaction = desiredGap / Math.max(gap, 0.1);  // Overlapping cars (e.g. at the spawn point) brake hard
+        return MAX_ACCELERATION * (free - interaction * interaction);
+    }
+
+    // Speed after dt seconds of constant acceleration, never negative
+    public static double nextSpeed(double v, double a, double dt) {
+        return Math.max(0.0, v + a * dt);
+    }
+
+    // Distance covered in dt seconds; a car braking to a stop stops where it reaches zero speed
+    public static double distance(double v, double a, double dt) {
+        if (v + a * dt < 0) {
+            return -v * v / (2.0 * a);
+        }
+        return v * dt + 0.5 * a * dt * dt;
+    }
+}
@@ -0,0 +1,97 @@
+/**
+ CMSC 335
+ Project 4
+ Class Descriptions:
+ IntersectionIndex is an immutable list of intersections sorted by track position. Positions are kept in a primitive
+ int[] and searched with binary search, alongside the light id at each position. The SimulationEngine builds a new
+ index whenever a light is added and gives every car a cursor into it that points at the next light ahead, so a tick
+ only looks at the one or two lights near the car instead of every light on the track.
+ */
+
+package engine;
+
+import java.util.Arrays;
+
+public final class IntersectionIndex {
+
+    // Index with no intersections
+    public static final IntersectionIndex EMPTY = new IntersectionIndex(new int[0], new int[0]);
+
+    private final int[] positions;   // Intersection positions, ascending
+    private final int[] lightIds;    // Light id at each sorted slot
+
+    private IntersectionIndex(int[] positions, int[] lightIds) {
+        this.positions = positions;
+        this.lightIds = lightIds;
+    }
+
+    // Build an index from positions given in light id order (lightPositions[id] = position of light id)
+    public static IntersectionIndex of(int[] lightPositions) {
+        int count = lightPositions.length;
+
+        // Sort light ids by position: pack (position, id) into one long so a primitive sort does the work
+        long[] packed = new long[count];
+        for (int id = 0; id < count; id++) {
+            packed[id] = ((long) lightPositions[id] << 32) | id;
+        }
+        Arrays.sort(packed);
+
+        int[] positions = new int[count];
+        int[] lightIds = new int[count];
+        for (int slot = 0; slot < count; slot++) {
+            positions[slot] = (int) (packed[slot] >> 32);
+            lightIds[slot] = (int) packed[slot];
+        }
+        return new IntersectionIndex(positions, lightIds);
+    }
+
+    // Number of intersections
+    public int size() {
+        return positions.length;
+    }
+
+    // Position of the intersection in sorted slot
+    public int position(int slot) {
+        return positions[slot];
+    }
+
+    // Light id of the intersection in sorted slot
+    public int lightId(int slot) {
+        return lightIds[slot];
+    }
+
+    // First slot whose position is >= the given position, or size() if there is none
+    public int ceiling(double position) {
+        int low = 0;
+        int high = positions.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (positions[mid] < position) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // First slot from the given cursor that a car at position has not cleared (passed by more than clearance meters);
+    // cars only move forward, so a car's cursor only moves forward too
+    public int skipCleared(int cursor, double position, int clearance) {
+        int slot = cursor;
+        while (slot < positions.length && position > positions[slot] + clearance) {
+            slot++;
+        }
+        return slot;
+    }
+
+    // End (exclusive) of the slots from the given cursor whose approach window (approach meters before the
+    // intersection) a car at position has entered; every later intersection is further ahead
+    public int windowEnd(int cursor, double position, int approach) {
+        int slot = cursor;
+        while (slot < positions.length && position >= positions[slot] - approach) {
+            slot++;
+        }
+        return slot;
+    }
+}
@@ -0,0 +1,190 @@
+/**
+ CMSC 335
+ Project 4
+ Class Descriptions:
+ IntersectionStats accumulates operational numbers for one traffic light while the simulation runs: how many cars
+ passed it, how long cars waited at RED (total, average, and p95 from a QuantileSketch), how many cars are queued at
+ it now and at most, and how long cars spent slowed by its YELLOW. Times are simulated seconds. Everything is updated
+ incrementally from the car transitions the engine already detects, so memory is the same after a minute or a week
+ and with three cars or a million: counters are LongAdder and DoubleAdder (striped, so segment workers and car
+ actors do not contend), and the wait sketch (about 2.8 KB) is allocated with the light, so the tick stays
+ allocation-free when cars first stop at it.
+ The queue is an AtomicInteger rather than an adder because its peak needs the exact value after each change. The
+ time-averaged queue length is total wait over elapsed time (Little's law), counting waits once they have ended.
+ Queue length over time is kept as one sample per signal phase: when a phase ends, sampleQueue() notes the time, the
+ color that ended, the queue at that moment and the longest queue during the phase. The samples go into a ring of
+ QUEUE_SAMPLES entries allocated with the light, so the latest few hours of a default light are kept in about 4 KB
+ and sampling never allocates; queueSeries() copies them out, oldest first. A car that stops just as a phase ends may
+ count toward either phase's peak.
+ Statistics of several lights merge into one with mergeFrom; the queue series belong to one light and are not merged.
+ */
+
+package engine;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+public class IntersectionStats {
+
+    // Phases kept in the queue-length series (85 default cycles, about 3.8 simulated hours)
+    public static final int QUEUE_SAMPLES = 256;
+
+    private static final TrafficLightColor[] COLORS = TrafficLightColor.values();
+
+    // Wait sketch: 2% relative accuracy from 0.1 s to about a simulated day
+    private static final double WAIT_ACCURACY = 0.02;
+    private static final double MIN_WAIT_SECONDS = 0.1;
+    private static final double MAX_WAIT_SECONDS = 100_000;
+
+    private final int position;                                 // Light position, or -1 for merged totals
+    private final LongAdder carsPassed = new LongAdder();
+    private final LongAdder stops = new LongAdder();            // Completed waits at RED
+    private final DoubleAdder waitSeconds = new DoubleAdder();
+    private final QuantileSketch waits = new QuantileSketch(WAIT_ACCURACY, MIN_WAIT_SECONDS, MAX_WAIT_SECONDS);
+    private final AtomicInteger queue = new AtomicInteger();    // Cars stopped at this light now
+    private final LongAccumulator peakQueue = new LongAccumulator(Math::max, 0);
+    private final LongAdder slowdowns = new LongAdder();        // Completed slow-downs at YELLOW
+    private final DoubleAdder slowedSeconds = new DoubleAdder();
+    private final LongAccumulator phasePeakQueue = new LongAccumulator(Math::max, 0);  // Longest queue this phase
+
+    // Queue-length series: a ring of per-phase samples, guarded by this object's monitor
+    private final double[] sampleTimes = new double[QUEUE_SAMPLES];  // Simulated time the phase ended
+    private final byte[] sampleColors = new byte[QUEUE_SAMPLES];     // Ordinal of the color that ended
+    private final int[] sampleQueues = new int[QUEUE_SAMPLES];       // Queue when the phase ended
+    private final int[] samplePeaks = new int[QUEUE_SAMPLES];        // Longest queue during the phase
+    private long samplesTaken = 0;
+
+    // Constructor: statistics of the light at the given position
+    public IntersectionStats(int position) {
+        this.position = position;
+    }
+
+    // A car cleared the intersection
+    void carPassed() {
+        carsPassed.increment();
+    }
+
+    // A car stopped at RED and joined the queue
+    void carStopped() {
+        int length = queue.incrementAndGet();
+        peakQueue.accumulate(length);
+        phasePeakQueue.accumulate(length);
+    }
+
+    // A car left the queue after waiting the given simulated seconds
+    void carResumed(double waited) {
+        queue.decrementAndGet();
+        stops.increment();
+        waitSeconds.add(waited);
+        waits.add(waited);
+    }
+
+    // A car left the queue without driving on (it was removed)
+    void carLeftQueue() {
+        queue.decrementAndGet();
+    }
+
+    // A car drove at half speed past YELLOW for the given simulated seconds
+    void carSlowed(double seconds) {
+        slowdowns.increment();
+        slowedSeconds.add(seconds);
+    }
+
+    // The phase showing ended at the given simulated time: add a sample to the queue-length series
+    synchronized void sampleQueue(double time, TrafficLightColor ended) {
+        int length = queue.get();
+        int slot = (int) (samplesTaken++ % QUEUE_SAMPLES);
+        sampleTimes[slot] = time;
+        sampleColors[slot] = (byte) ended.ordinal();
+        sampleQueues[slot] = length;
+        samplePeaks[slot] = (int) Math.max(phasePeakQueue.getThenReset(), length);
+    }
+
+    // Add another light's statistics to these (all but the queue series)
+    public void mergeFrom(IntersectionStats other) {
+        carsPassed.add(other.carsPassed.sum());
+        stops.add(other.stops.sum());
+        waitSeconds.add(other.waitSeconds.sum());
+        waits.mergeFrom(other.waits);
+        queue.addAndGet(other.queue.get());
+        peakQueue.accumulate(other.peakQueue.get());
+        slowdowns.add(other.slowdowns.sum());
+        slowedSeconds.add(other.slowedSeconds.sum());
+    }
+
+    public int position() {
+        return position;
+    }
+
+    // Cars that cleared the intersection
+    public long carsPassed() {
+        return carsPassed.sum();
+    }
+
+    // Cars that cleared the intersection per simulated hour, over the given elapsed simulated seconds
+    public double carsPerHour(double elapsedSeconds) {
+        return elapsedSeconds > 0 ? carsPassed.sum() * 3600 / elapsedSeconds : 0;
+    }
+
+    // Completed waits at RED
+    public long stops() {
+        return stops.sum();
+    }
+
+    // Mean wait at RED in simulated seconds
+    public double averageWait() {
+        long count = stops.sum();
+        return count > 0 ? waitSeconds.sum() / count : 0;
+    }
+
+    // Wait at RED at the given quantile (0.95 = p95), in simulated seconds
+    public double waitQuantile(double quantile) {
+        return waits.quantile(quantile);
+    }
+
+    // Cars stopped at the light now
+    public int queueLength() {
+        return queue.get();
+    }
+
+    // Most cars ever stopped at the light at once
+    public long peakQueueLength() {
+        return peakQueue.get();
+    }
+
+    // Time-averaged queue length over the given elapsed simulated seconds
+    public double meanQueueLength(double elapsedSeconds) {
+        return elapsedSeconds > 0 ? waitSeconds.sum() / elapsedSeconds : 0;
+    }
+
+    // Phase samples taken since the start of the run (only the last QUEUE_SAMPLES are kept)
+    public synchronized long queueSamplesTaken() {
+        return samplesTaken;
+    }
+
+    // Copy the kept queue samples, oldest first, into arrays of at least QUEUE_SAMPLES; returns how many were copied
+    public synchronized int queueSeries(double[] times, TrafficLightColor[] endedColors, int[] queues, int[] peaks) {
+        int count = (int) Math.min(samplesTaken, QUEUE_SAMPLES);
+        long first = samplesTaken - count;
+        for (int i = 0; i < count; i++) {
+            int slot = (int) ((first + i) % QUEUE_SAMPLES);
+            times[i] = sampleTimes[slot];
+            endedColors[i] = COLORS[sampleColors[slot]];
+            queues[i] = sampleQueues[slot];
+            peaks[i] = samplePeaks[slot];
+        }
+        return count;
+    }
+
+    // Completed slow-downs at YELLOW
+    public long slowdowns() {
+        return slowdowns.sum();
+    }
+
+    // Simulated seconds cars spent slowed by YELLOW
+    public double slowedSeconds() {
+        return slowedSeconds.sum();
+    }
+}
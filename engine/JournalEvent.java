@@ -0,0 +1,25 @@
+/**
+ CMSC 335
+ Project 4
+ Class Descriptions:
+ JournalEvent:
+ An enum of the event types written to the EventJournal. The ordinal is the type code stored in the binary file, so
+ new types must only be added at the end.
+ */
+
+package engine;
+
+public enum JournalEvent {
+    CAR_STOPPED,     // Car stopped at a RED light (subject = car id, position = car position, value = light position)
+    CAR_RESUMED,     // Car moved again after a RED light
+    CAR_SLOWED,      // Car started crossing a YELLOW light at half speed
+    CAR_FINISHED,    // Car reached the end of the track
+    LIGHT_CHANGED;   // Light entered a new phase (subject = light position, value = TrafficLightColor ordinal)
+
+    private static final JournalEvent[] VALUES = values();
+
+    // Decode a type code read from a journal file
+    public static JournalEvent fromCode(int code) {
+        return VALUES[code];
+    }
+}
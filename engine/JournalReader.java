@@ -0,0 +1,67 @@
+/**
+ CMSC 335
+ Project 4
+ Class Descriptions:
+ JournalReader decodes a binary file written by EventJournal and prints one line of text per event.
+ Usage: java engine.JournalReader <journal file>
+ */
+
+package engine;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+
+public class JournalReader {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: java engine.JournalReader <journal file>");
+            System.exit(2);
+        }
+
+        try (FileChannel channel = FileChannel.open(Path.of(args[0]), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < EventJournal.HEADER_BYTES || buffer.getInt() != EventJournal.MAGIC) {
+                throw new IOException(args[0] + " is not an event journal");
+            }
+            int version = buffer.getInt();
+            if (version != EventJournal.VERSION) {
+                throw new IOException("Unsupported journal version " + version);
+            }
+            long startMillis = buffer.getLong();
+            System.out.println("# Journal started " + Instant.ofEpochMilli(startMillis));
+
+            StringBuilder line = new StringBuilder(96);
+            long count = 0;
+            while (buffer.remaining() >= EventJournal.RECORD_BYTES) {
+                long wallNanos = buffer.getLong();
+                long tick = buffer.getLong();
+                JournalEvent event = JournalEvent.fromCode(buffer.getInt());
+                int subject = buffer.getInt();
+                int position = buffer.getInt();
+                int value = buffer.getInt();
+
+                line.setLength(0);
+                line.append(String.format("%12.3f ms", wallNanos / 1e6));
+                line.append(" | tick ").append(tick < 0 ? "-" : Long.toString(tick)).append(" | ");
+                line.append(event).append(' ');
+                switch (event) {
+                    case LIGHT_CHANGED -> line.append("light at ").append(subject)
+                            .append(" -> ").append(TrafficLightColor.values()[value]);
+                    case CAR_FINISHED -> line.append("car ").append(subject).append(" at ").append(position);
+                    default -> {
+                        line.append("car ").append(subject).append(" at ").append(position);
+                        if (value >= 0) line.append(" (light at ").append(value).append(')');
+                    }
+                }
+                System.out.println(line);
+                count++;
+            }
+            System.out.println("# " + count + " events");
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/**
+ CMSC 335
+ Project 4
+ Class Descriptions:
+ LatencyHistogram counts durations in nanoseconds into log-linear buckets: values below 32 get a bucket each, and every
+ power of two above that is split into 32 equal buckets, so any recorded value is reported within about 3% of its true
+ value across the whole long range in a fixed 1888-slot array. Recording is one atomic increment on an
+ AtomicLongArray slot plus a LongAccumulator for the maximum: no locks and no allocation, so it can sit on the tick
+ path and be recorded from several workers at once. Percentiles are read by walking the counts, which is not atomic
+ with respect to concurrent recording; a reader sees each count at some point during its walk, which is all a
+ monitoring console needs.
+ */
+
+package engine;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+
+public class LatencyHistogram {
+
+    private static final int SUB_BITS = 5;                       // 2^5 linear buckets per power of two
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = (63 - SUB_BITS + 1) * SUB_BUCKETS; // Up to Long.MAX_VALUE
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    // Count one duration (negative values count as 0)
+    public void record(long nanos) {
+        long value = Math.max(nanos, 0);
+        counts.incrementAndGet(bucketOf(value));
+        max.accumulate(value);
+    }
+
+    // Number of recorded values
+    public long count() {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    // Largest recorded value (exact)
+    public long max() {
+        return max.get();
+    }
+
+    // Value at the given quantile in [0, 1] (0.99 = p99), or 0 when nothing was recorded
+    public long percentile(double quantile) {
+        long total = count();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));  // 1-based rank of the value wanted
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(midpointOf(i), max.get());
+            }
+        }
+        return max.get();  // Counts grew during the walk
+    }
+
+    // Forget every recorded value
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        max.reset();
+    }
+
+    // Bucket holding a non-negative value
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);   // Position of the leading bit, >= SUB_BITS
+        int shift = exponent - SUB_BITS;
+        int mantissa = (int) (value >>> shift) & (SUB_BUCKETS - 1); // The SUB_BITS bits after the leading one
+        return (shift + 1) * SUB_BUCKETS + mantissa;
+    }
+
+    // Middle of the range of values a bucket holds
+    static long midpointOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lower = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lower + ((1L << shift) >>> 1);
+    }
+}
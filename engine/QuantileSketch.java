@@ -0,0 +1,106 @@
+/**
+ CMSC 335
+ Project 4
+ Class Descriptions:
+ QuantileSketch estimates quantiles of a stream of positive values in constant memory. Values between minValue and
+ maxValue fall into logarithmic buckets whose bounds grow by a factor gamma = (1 + a) / (1 - a), so every reported
+ quantile is within the relative accuracy a of a value that was actually added, however many values there were
+ (values at or below minValue share the first bucket, values above maxValue the last). Two sketches with the same
+ parameters merge by adding their bucket counts, so per-intersection sketches can be combined into network-wide
+ figures without keeping any samples. Adding is one atomic increment, so several threads can add at once without
+ locking.
+ */
+
+package engine;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class QuantileSketch {
+
+    private final double relativeAccuracy;
+    private final double minValue;
+    private final double maxValue;
+    private final double gamma;       // Ratio between consecutive bucket bounds
+    private final double logGamma;
+    private final AtomicLongArray counts;
+
+    // Constructor: quantiles within relativeAccuracy (0.02 = 2%) for values in (minValue, maxValue]
+    public QuantileSketch(double relativeAccuracy, double minValue, double maxValue) {
+        if (!(relativeAccuracy > 0 && relativeAccuracy < 1) || !(minValue > 0) || !(maxValue > minValue)) {
+            throw new IllegalArgumentException("Bad sketch parameters: " + relativeAccuracy + ", " + minValue
+                    + ", " + maxValue);
+        }
+        this.relativeAccuracy = relativeAccuracy;
+        this.minValue = minValue;
+        this.maxValue = maxValue;
+        this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        this.logGamma = Math.log(gamma);
+        this.counts = new AtomicLongArray(bucketOf(maxValue) + 1);
+    }
+
+    // Add one value
+    public void add(double value) {
+        counts.incrementAndGet(Math.min(bucketOf(value), counts.length() - 1));
+    }
+
+    // Number of values added
+    public long count() {
+        long total = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    // Estimated value at the given quantile in [0, 1], or 0 when the sketch is empty
+    public double quantile(double quantile) {
+        long total = count();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        int last = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            long bucketCount = counts.get(i);
+            seen += bucketCount;
+            if (bucketCount > 0) last = i;
+            if (seen >= rank) {
+                return valueOf(i);
+            }
+        }
+        return valueOf(last);  // Counts grew during the walk
+    }
+
+    // Add every value counted by another sketch with the same parameters
+    public void mergeFrom(QuantileSketch other) {
+        if (other.relativeAccuracy != relativeAccuracy || other.minValue != minValue || other.maxValue != maxValue) {
+            throw new IllegalArgumentException("Sketches with different parameters cannot be merged");
+        }
+        for (int i = 0; i < counts.length(); i++) {
+            long bucketCount = other.counts.get(i);
+            if (bucketCount != 0) counts.addAndGet(i, bucketCount);
+        }
+    }
+
+    // Heap bytes used by the bucket counts
+    public int footprintBytes() {
+        return counts.length() * Long.BYTES;
+    }
+
+    // Bucket k holds (minValue * gamma^(k-1), minValue * gamma^k]; bucket 0 holds everything up to minValue
+    private int bucketOf(double value) {
+        if (!(value > minValue)) {
+            return 0;
+        }
+        return (int) Math.ceil(Math.log(value / minValue) / logGamma);
+    }
+
+    // Value reported for a bucket: within relativeAccuracy of both of its bounds
+    private double valueOf(int bucket) {
+        if (bucket == 0) {
+            return minValue;
+        }
+        return minValue * 2 * Math.pow(gamma, bucket) / (gamma + 1);
+    }
+}
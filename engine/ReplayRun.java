@@ -0,0 +1,38 @@
+/**
+ CMSC 335
+ Project 4
+ Class Descriptions:
+ ReplayRun reads a RunRecording written with -Dtraffic.record (by the GUI or HeadlessSimulation), replays it headless
+ at full speed and checks that the replayed trajectory digest is identical to the recorded one.
+ Usage: java engine.ReplayRun recording.bin
+ */
+
+package engine;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+public class ReplayRun {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: java engine.ReplayRun recording.bin");
+            System.exit(2);
+        }
+        RunRecording recorded = RunRecording.read(Path.of(args[0]));
+
+        long started = System.nanoTime();
+        RunRecording replayed = recorded.replay();
+        long elapsedMicros = (System.nanoTime() - started) / 1000;
+
+        System.out.println("Seed: " + recorded.seed() + " | Commands: " + recorded.commandCount()
+                + " | Ticks: " + replayed.endTick() + " | Wall: " + elapsedMicros + " us");
+        System.out.printf("Recorded digest: %016x%nReplayed digest: %016x%n", recorded.digest(), replayed.digest());
+        if (recorded.matches(replayed)) {
+            System.out.println("OK: replay is bit-identical");
+        } else {
+            System.out.println("MISMATCH: replay diverged from the recording");
+            System.exit(1);
+        }
+    }
+}
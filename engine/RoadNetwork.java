@@ -0,0 +1,176 @@
+/**
+ CMSC 335
+ Project 4
+ Class Descriptions:
+ RoadNetwork is an immutable directed road graph in compressed-sparse-row (CSR) form. Intersections are node ids
+ 0..nodeCount-1 and roads are edge ids 0..edgeCount-1. The edges leaving node n are the ids edgeStart[n] up to
+ edgeStart[n + 1], so walking a node's roads touches one contiguous run of each column. Per edge the network keeps only
+ primitives: the target node, the length in meters and the signal that controls the stop line at the end of the edge
+ (NO_SIGNAL for an uncontrolled end), which is 12 bytes per edge plus 4 bytes per node. Signal ids become the
+ engine's network lights when the network is attached to a SimulationEngine, and cars drive along arrays of edge ids.
+ grid() builds a city grid of two-way streets with a signal at every intersection.
+ */
+
+package engine;
+
+public final class RoadNetwork {
+
+    public static final int NO_SIGNAL = -1;
+    public static final int BYTES_PER_EDGE = 3 * Integer.BYTES;   // target, length, signal
+    public static final int BYTES_PER_NODE = Integer.BYTES;       // edgeStart
+
+    private final int nodeCount;
+    private final int signalCount;
+    private final int[] edgeStart;    // nodeCount + 1 offsets into the edge columns
+    private final int[] edgeTarget;   // Node each edge leads to
+    private final int[] edgeLength;   // Meters
+    private final int[] edgeSignal;   // Signal at the end of the edge, or NO_SIGNAL
+
+    private RoadNetwork(int nodeCount, int signalCount, int[] edgeStart, int[] edgeTarget, int[] edgeLength,
+                        int[] edgeSignal) {
+        this.nodeCount = nodeCount;
+        this.signalCount = signalCount;
+        this.edgeStart = edgeStart;
+        this.edgeTarget = edgeTarget;
+        this.edgeLength = edgeLength;
+        this.edgeSignal = edgeSignal;
+    }
+
+    // Build from an edge list in any order; edge ids are assigned in source-node order (counting sort)
+    public static RoadNetwork fromEdges(int nodeCount, int[] from, int[] to, int[] lengths, int[] signals) {
+        int edges = from.length;
+        int[] start = new int[nodeCount + 1];
+        int signalCount = 0;
+        for (int i = 0; i < edges; i++) {
+            if (from[i] < 0 || from[i] >= nodeCount || to[i] < 0 || to[i] >= nodeCount) {
+                throw new IllegalArgumentException("Edge " + i + " joins a node outside 0.." + (nodeCount - 1));
+            }
+            if (lengths[i] <= 0) {
+                throw new IllegalArgumentException("Edge " + i + " has no length");
+            }
+            start[from[i] + 1]++;
+            signalCount = Math.max(signalCount, signals[i] + 1);
+        }
+        for (int node = 0; node < nodeCount; node++) {
+            start[node + 1] += start[node];
+        }
+
+        int[] fill = new int[nodeCount];
+        int[] target = new int[edges];
+        int[] length = new int[edges];
+        int[] signal = new int[edges];
+        for (int i = 0; i < edges; i++) {
+            int edge = start[from[i]] + fill[from[i]]++;
+            target[edge] = to[i];
+            length[edge] = lengths[i];
+            signal[edge] = signals[i];
+        }
+        return new RoadNetwork(nodeCount, signalCount, start, target, length, signal);
+    }
+
+    // City grid of rows x columns intersections joined by two-way blocks; every intersection has its own signal
+    public static RoadNetwork grid(int rows, int columns, int blockLength) {
+        int nodes = rows * columns;
+        int edges = 2 * (rows * (columns - 1) + columns * (rows - 1));
+        int[] from = new int[edges];
+        int[] to = new int[edges];
+        int[] lengths = new int[edges];
+        int[] signals = new int[edges];
+        int i = 0;
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
+                int node = row * columns + column;
+                if (column + 1 < columns) {
+                    i = addTwoWay(from, to, i, node, node + 1);
+                }
+                if (row + 1 < rows) {
+                    i = addTwoWay(from, to, i, node, node + columns);
+                }
+            }
+        }
+        for (int e = 0; e < edges; e++) {
+            lengths[e] = blockLength;
+            signals[e] = to[e];  // Signal id = intersection the edge ends at
+        }
+        return fromEdges(nodes, from, to, lengths, signals);
+    }
+
+    private static int addTwoWay(int[] from, int[] to, int i, int a, int b) {
+        from[i] = a;
+        to[i++] = b;
+        from[i] = b;
+        to[i++] = a;
+        return i;
+    }
+
+    public int nodeCount() {
+        return nodeCount;
+    }
+
+    public int edgeCount() {
+        return edgeTarget.length;
+    }
+
+    public int signalCount() {
+        return signalCount;
+    }
+
+    // First outgoing edge id of a node; its edges are firstEdge(node) until firstEdge(node + 1)
+    public int firstEdge(int node) {
+        return edgeStart[node];
+    }
+
+    public int outDegree(int node) {
+        return edgeStart[node + 1] - edgeStart[node];
+    }
+
+    public int target(int edge) {
+        return edgeTarget[edge];
+    }
+
+    public int length(int edge) {
+        return edgeLength[edge];
+    }
+
+    public int signal(int edge) {
+        return edgeSignal[edge];
+    }
+
+    // Node an edge leaves from (binary search over the row offsets)
+    public int source(int edge) {
+        int low = 0;
+        int high = nodeCount - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (edgeStart[mid] <= edge) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    // Edge from one node to another, or -1 if they are not adjacent
+    public int edgeBetween(int from, int to) {
+        for (int edge = edgeStart[from]; edge < edgeStart[from + 1]; edge++) {
+            if (edgeTarget[edge] == to) return edge;
+        }
+        return -1;
+    }
+
+    // True if every edge of the route starts where the previous one ends
+    public boolean isPath(int[] route) {
+        if (route.length == 0) return false;
+        for (int i = 0; i < route.length; i++) {
+            if (route[i] < 0 || route[i] >= edgeTarget.length) return false;
+            if (i > 0 && source(route[i]) != edgeTarget[route[i - 1]]) return false;
+        }
+        return true;
+    }
+
+    // Heap bytes held by the CSR columns
+    public long footprintBytes() {
+        return (long) edgeCount() * BYTES_PER_EDGE + (long) (nodeCount + 1) * BYTES_PER_NODE;
+    }
+}
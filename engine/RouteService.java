@@ -0,0 +1,296 @@
+/**
+ CMSC 335
+ Project 4
+ Class Descriptions:
+ RouteService finds shortest routes (by length) over a RoadNetwork for newly spawned cars. It uses landmark A* (ALT): at
+ construction it picks landmarks by farthest-point selection and stores every node's distance to and from each of them,
+ which by the triangle inequality gives A* a lower bound that steers the search straight at the destination instead of
+ flooding the graph like Dijkstra. Each query uses only the ACTIVE_LANDMARKS landmarks that give the best bound between
+ its origin and destination, and a node's bound is computed once per query. Finished routes go into an LRU cache keyed
+ by origin and destination, so repeated trips (cars spawned at the same entry for the same exit) cost a map lookup. A
+ route is an int array of edge ids that is shared by every car on it and must not be modified. With zero landmarks the
+ search is plain Dijkstra. route() is synchronized: the search reuses one set of scratch arrays instead of allocating
+ per query.
+ */
+
+package engine;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public final class RouteService {
+
+    private static final int UNREACHED = Integer.MAX_VALUE;
+    private static final int ACTIVE_LANDMARKS = 4;   // Landmarks consulted per query
+
+    private final RoadNetwork network;
+    private final int[] reverseStart;     // Transposed CSR: edges entering each node...
+    private final int[] reverseEdge;      // ...as ids of the forward edges
+    private final int[][] fromLandmark;   // fromLandmark[l][v] = distance landmark l -> v
+    private final int[][] toLandmark;     // toLandmark[l][v] = distance v -> landmark l
+    private final Map<Long, int[]> cache; // LRU: least recently used route is evicted first
+
+    // Search scratch, reused by every query
+    private final int[] dist;
+    private final int[] parentEdge;
+    private final int[] bound;            // Lower bound to the destination, computed once per node per query
+    private final int[] active = new int[ACTIVE_LANDMARKS];  // Landmarks chosen for the current query...
+    private final int[] activeScores = new int[ACTIVE_LANDMARKS]; // ...and their origin-destination bounds
+    private int activeCount = 0;
+    private final int[] stamp;            // Query number that last touched each node, so nothing is cleared
+    private int query = 0;
+    private long[] heap = new long[64];   // Binary min-heap of (estimate << 32 | node)
+
+    private long hits = 0;
+    private long misses = 0;
+    private long settled = 0;             // Nodes settled by all searches
+
+    // Constructor: precomputes the landmark distances; cacheCapacity 0 disables the cache
+    public RouteService(RoadNetwork network, int landmarkCount, int cacheCapacity) {
+        this.network = network;
+        int nodes = network.nodeCount();
+        this.dist = new int[nodes];
+        this.parentEdge = new int[nodes];
+        this.bound = new int[nodes];
+        this.stamp = new int[nodes];
+
+        // Transpose the graph so distances *to* a landmark can be found with a search from it
+        reverseStart = new int[nodes + 1];
+        reverseEdge = new int[network.edgeCount()];
+        for (int edge = 0; edge < network.edgeCount(); edge++) {
+            reverseStart[network.target(edge) + 1]++;
+        }
+        for (int node = 0; node < nodes; node++) {
+            reverseStart[node + 1] += reverseStart[node];
+        }
+        int[] fill = new int[nodes];
+        for (int node = 0; node < nodes; node++) {
+            for (int edge = network.firstEdge(node); edge < network.firstEdge(node + 1); edge++) {
+                int target = network.target(edge);
+                reverseEdge[reverseStart[target] + fill[target]++] = edge;
+            }
+        }
+
+        // Farthest-point landmarks: each new one is the node farthest from those already chosen
+        int count = Math.min(landmarkCount, nodes);
+        fromLandmark = new int[count][];
+        toLandmark = new int[count][];
+        int[] nearest = new int[nodes];
+        Arrays.fill(nearest, UNREACHED);
+        int landmark = 0;
+        for (int l = 0; l < count; l++) {
+            fromLandmark[l] = distancesFrom(landmark, false);
+            toLandmark[l] = distancesFrom(landmark, true);
+            int farthest = landmark;
+            for (int node = 0; node < nodes; node++) {
+                nearest[node] = Math.min(nearest[node], fromLandmark[l][node]);
+                if (nearest[node] != UNREACHED && nearest[node] > nearest[farthest]) farthest = node;
+            }
+            landmark = farthest;
+        }
+
+        final int capacity = cacheCapacity;
+        cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, int[]> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    // Shortest route from origin to destination as edge ids, or null if there is none (or origin == destination)
+    public synchronized int[] route(int origin, int destination) {
+        Long key = ((long) origin << 32) | destination;
+        int[] cached = cache.get(key);
+        if (cached != null) {
+            hits++;
+            return cached;
+        }
+        misses++;
+        int[] found = search(origin, destination);
+        if (found != null) {
+            cache.put(key, found);
+        }
+        return found;
+    }
+
+    // A* from origin to destination guided by the landmark bound
+    private int[] search(int origin, int destination) {
+        if (origin == destination) {
+            return null;
+        }
+        int generation = ++query;
+        chooseLandmarks(origin, destination);
+        int size = 0;
+        touch(origin, generation, destination);
+        dist[origin] = 0;
+        size = push(size, bound[origin], origin);
+
+        while (size > 0) {
+            long top = heap[0];
+            size = pop(size);
+            int node = (int) top;
+            int estimate = (int) (top >>> 32);
+            int known = dist[node];
+            if (estimate - bound[node] != known) {
+                continue;  // Stale heap entry; the node was reached more cheaply since
+            }
+            settled++;
+            if (node == destination) {
+                return unwind(origin, destination);
+            }
+            for (int edge = network.firstEdge(node); edge < network.firstEdge(node + 1); edge++) {
+                int next = network.target(edge);
+                int candidate = known + network.length(edge);
+                touch(next, generation, destination);
+                if (candidate < dist[next]) {
+                    dist[next] = candidate;
+                    parentEdge[next] = edge;
+                    size = push(size, candidate + bound[next], next);
+                }
+            }
+        }
+        return null;
+    }
+
+    // Keep the landmarks with the best bound between origin and destination for this query
+    private void chooseLandmarks(int origin, int destination) {
+        activeCount = 0;
+        for (int l = 0; l < fromLandmark.length; l++) {
+            int score = landmarkBound(l, origin, destination);
+            int slot;
+            if (activeCount < ACTIVE_LANDMARKS) {
+                slot = activeCount++;
+            } else if (score > activeScores[ACTIVE_LANDMARKS - 1]) {
+                slot = ACTIVE_LANDMARKS - 1;  // Replace the weakest
+            } else {
+                continue;
+            }
+            while (slot > 0 && activeScores[slot - 1] < score) {  // Keep the short list sorted, best first
+                activeScores[slot] = activeScores[slot - 1];
+                active[slot] = active[slot - 1];
+                slot--;
+            }
+            activeScores[slot] = score;
+            active[slot] = l;
+        }
+    }
+
+    // Admissible lower bound on the distance node -> destination over the active landmarks
+    private int lowerBound(int node, int destination) {
+        int best = 0;
+        for (int i = 0; i < activeCount; i++) {
+            best = Math.max(best, landmarkBound(active[i], node, destination));
+        }
+        return best;
+    }
+
+    // Triangle-inequality bound on node -> destination from one landmark
+    private int landmarkBound(int l, int node, int destination) {
+        int best = 0;
+        int[] from = fromLandmark[l];
+        int[] to = toLandmark[l];
+        if (from[destination] != UNREACHED && from[node] != UNREACHED) {
+            best = Math.max(best, from[destination] - from[node]);
+        }
+        if (to[node] != UNREACHED && to[destination] != UNREACHED) {
+            best = Math.max(best, to[node] - to[destination]);
+        }
+        return best;
+    }
+
+    // Reset a node's search state the first time this query reaches it
+    private void touch(int node, int generation, int destination) {
+        if (stamp[node] != generation) {
+            stamp[node] = generation;
+            dist[node] = UNREACHED;
+            bound[node] = lowerBound(node, destination);
+        }
+    }
+
+    // Follow parent edges back from the destination
+    private int[] unwind(int origin, int destination) {
+        int length = 0;
+        for (int node = destination; node != origin; node = network.source(parentEdge[node])) {
+            length++;
+        }
+        int[] route = new int[length];
+        for (int node = destination; node != origin; node = network.source(parentEdge[node])) {
+            route[--length] = parentEdge[node];
+        }
+        return route;
+    }
+
+    // Distances from one node to all (or, reversed, from all to it) by Dijkstra; used to place landmarks
+    private int[] distancesFrom(int start, boolean reversed) {
+        int[] result = new int[network.nodeCount()];
+        Arrays.fill(result, UNREACHED);
+        result[start] = 0;
+        int size = push(0, 0, start);
+        while (size > 0) {
+            long top = heap[0];
+            size = pop(size);
+            int node = (int) top;
+            int known = (int) (top >>> 32);
+            if (known != result[node]) continue;
+            int first = reversed ? reverseStart[node] : network.firstEdge(node);
+            int last = reversed ? reverseStart[node + 1] : network.firstEdge(node + 1);
+            for (int i = first; i < last; i++) {
+                int edge = reversed ? reverseEdge[i] : i;
+                int next = reversed ? network.source(edge) : network.target(edge);
+                int candidate = known + network.length(edge);
+                if (candidate < result[next]) {
+                    result[next] = candidate;
+                    size = push(size, candidate, next);
+                }
+            }
+        }
+        return result;
+    }
+
+    // Heap helpers on the packed (priority, node) longs; return the new heap size
+    private int push(int size, int priority, int node) {
+        if (size == heap.length) heap = Arrays.copyOf(heap, size * 2);
+        long entry = ((long) priority << 32) | node;
+        int i = size;
+        while (i > 0 && heap[(i - 1) >>> 1] > entry) {
+            heap[i] = heap[(i - 1) >>> 1];
+            i = (i - 1) >>> 1;
+        }
+        heap[i] = entry;
+        return size + 1;
+    }
+
+    private int pop(int size) {
+        long last = heap[--size];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) break;
+            if (child + 1 < size && heap[child + 1] < heap[child]) child++;
+            if (heap[child] >= last) break;
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = last;
+        return size;
+    }
+
+    public int landmarkCount() {
+        return fromLandmark.length;
+    }
+
+    public synchronized long cacheHits() {
+        return hits;
+    }
+
+    public synchronized long cacheMisses() {
+        return misses;
+    }
+
+    // Nodes settled by every search so far (a measure of search effort)
+    public synchronized long nodesSettled() {
+        return settled;
+    }
+}
@@ -0,0 +1,212 @@
+/**
+ CMSC 335
+ Project 4
+ Class Descriptions:
+ RunRecording captures everything needed to reproduce a STEP_LOOP run exactly: the engine's random seed and every
+ external command (add car, add random car, remove car, add light, pause, resume) together with the engine tick at
+ which it was applied, starting from an empty engine, so the initial scenario is simply the commands at tick 0. A
+ light that starts the default cycle when it is added needs only its position; any other SignalPlan (its own phase
+ lengths, or an offset such as a scenario's green wave) is recorded whole, as its three phase lengths and its offset,
+ so the replayed light shows exactly the same colors. When
+ the recording is stopped it also stores the final tick and a 64-bit digest of every car's position and flags after
+ every tick. replay() feeds the same commands to a fresh engine at the same ticks, as fast as the CPU allows, and the
+ run is bit-identical when the replayed digest matches.
+
+ Command:
+ An enum of the recorded external commands. The ordinal is the code stored in the file; new commands go at the end.
+ ADD_LIGHT_PLAN is followed in the file by its plan's green, yellow and red lengths and offset as doubles.
+ */
+
+package engine;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+public final class RunRecording {
+
+    public enum Command {
+        ADD_CAR,          // arg0 = base speed, arg1 = lane
+        ADD_RANDOM_CAR,   // arg0 = min speed, arg1 = max speed (drawn from the seeded random)
+        REMOVE_CAR,       // arg0 = car id
+        ADD_LIGHT,        // arg0 = position
+        PAUSE,
+        RESUME,
+        ADD_LIGHT_PLAN    // arg0 = position, arg1 = index of the plan's four values in planValues
+    }
+
+    private static final int PLAN_VALUES = 4;      // Green, yellow and red lengths, then the offset
+
+    private static final int MAGIC = 0x54525231;   // "TRR1"
+
+    private final long seed;          // Seed of the engine's random generator
+    private int count = 0;            // Number of recorded commands
+    private long[] ticks = new long[16];
+    private int[] types = new int[16];
+    private int[] arg0 = new int[16];
+    private int[] arg1 = new int[16];
+    private double[] planValues = new double[0];   // PLAN_VALUES per recorded ADD_LIGHT_PLAN
+    private int plans = 0;
+    private long endTick = -1;        // Set when recording stops
+    private long digest;              // Trajectory digest at endTick
+
+    public RunRecording(long seed) {
+        this.seed = seed;
+    }
+
+    // Append one command applied at the given tick (called by the engine under its write lock)
+    void record(long tick, Command command, int first, int second) {
+        if (count == ticks.length) {
+            int capacity = count * 2;
+            ticks = Arrays.copyOf(ticks, capacity);
+            types = Arrays.copyOf(types, capacity);
+            arg0 = Arrays.copyOf(arg0, capacity);
+            arg1 = Arrays.copyOf(arg1, capacity);
+        }
+        ticks[count] = tick;
+        types[count] = command.ordinal();
+        arg0[count] = first;
+        arg1[count] = second;
+        count++;
+    }
+
+    // Append a light with its own signal plan, added at the given tick (called by the engine under its write lock)
+    void recordLight(long tick, int position, SignalPlan plan) {
+        recordLight(tick, position, plan.phaseLength(TrafficLightColor.GREEN),
+                plan.phaseLength(TrafficLightColor.YELLOW), plan.phaseLength(TrafficLightColor.RED), plan.offset());
+    }
+
+    private void recordLight(long tick, int position, double green, double yellow, double red, double offset) {
+        if ((plans + 1) * PLAN_VALUES > planValues.length) {
+            planValues = Arrays.copyOf(planValues, Math.max(4 * PLAN_VALUES, planValues.length * 2));
+        }
+        int at = plans * PLAN_VALUES;
+        planValues[at] = green;
+        planValues[at + 1] = yellow;
+        planValues[at + 2] = red;
+        planValues[at + 3] = offset;
+        record(tick, Command.ADD_LIGHT_PLAN, position, plans++);
+    }
+
+    // Mark the end of the run (called by the engine when recording stops)
+    void finish(long tick, long trajectoryDigest) {
+        this.endTick = tick;
+        this.digest = trajectoryDigest;
+    }
+
+    public long seed() {
+        return seed;
+    }
+
+    public int commandCount() {
+        return count;
+    }
+
+    public long endTick() {
+        return endTick;
+    }
+
+    public long digest() {
+        return digest;
+    }
+
+    // Re-run the recorded commands headlessly on a fresh engine; returns that engine's own recording
+    public RunRecording replay() {
+        if (endTick < 0) {
+            throw new IllegalStateException("Recording was not finished");
+        }
+        SimulationEngine engine = new SimulationEngine(ExecutionMode.STEP_LOOP, 16, seed);
+        RunRecording replayed = new RunRecording(seed);
+        engine.startRecording(replayed);
+
+        int next = 0;
+        while (true) {
+            long tick = engine.tickCount();
+            while (next < count && ticks[next] == tick) {
+                apply(engine, next++);
+            }
+            if (tick >= endTick) {
+                break;
+            }
+            engine.step(SimulationEngine.TICK_SECONDS);
+        }
+        engine.stopRecording();
+        return replayed;
+    }
+
+    // True if the other run ended at the same tick with the same trajectory digest
+    public boolean matches(RunRecording other) {
+        return endTick == other.endTick && digest == other.digest;
+    }
+
+    // Apply recorded command i to the engine
+    private void apply(SimulationEngine engine, int i) {
+        switch (Command.values()[types[i]]) {
+            case ADD_CAR -> engine.addCar(arg0[i], arg1[i]);
+            case ADD_RANDOM_CAR -> engine.addRandomCar(arg0[i], arg1[i]);
+            case REMOVE_CAR -> engine.removeCar(arg0[i]);
+            case ADD_LIGHT -> engine.addLight(arg0[i]);
+            case ADD_LIGHT_PLAN -> {
+                int at = arg1[i] * PLAN_VALUES;
+                engine.addLight(arg0[i], new SignalPlan(planValues[at], planValues[at + 1], planValues[at + 2],
+                        planValues[at + 3]));
+            }
+            case PAUSE -> engine.pause();
+            case RESUME -> engine.resume();
+        }
+    }
+
+    // Save to a binary file
+    public void write(Path file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeLong(seed);
+            out.writeLong(endTick);
+            out.writeLong(digest);
+            out.writeInt(count);
+            for (int i = 0; i < count; i++) {
+                out.writeLong(ticks[i]);
+                out.writeByte(types[i]);
+                out.writeInt(arg0[i]);
+                out.writeInt(arg1[i]);
+                if (types[i] == Command.ADD_LIGHT_PLAN.ordinal()) {
+                    for (int v = 0; v < PLAN_VALUES; v++) {
+                        out.writeDouble(planValues[arg1[i] * PLAN_VALUES + v]);
+                    }
+                }
+            }
+        }
+    }
+
+    // Load from a binary file written by write()
+    public static RunRecording read(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(file + " is not a run recording");
+            }
+            RunRecording recording = new RunRecording(in.readLong());
+            long endTick = in.readLong();
+            long digest = in.readLong();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                long tick = in.readLong();
+                Command command = Command.values()[in.readByte()];
+                int first = in.readInt();
+                int second = in.readInt();
+                if (command == Command.ADD_LIGHT_PLAN) {
+                    recording.recordLight(tick, first, in.readDouble(), in.readDouble(), in.readDouble(),
+                            in.readDouble());
+                } else {
+                    recording.record(tick, command, first, second);
+                }
+            }
+            recording.finish(endTick, digest);
+            return recording;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/**
+ CMSC 335
+ Project 4
+ Class Descriptions:
+ Scenario is the setup of one simulation run as read by ScenarioLoader: the traffic lights (track position and
+ SignalPlan) and the cars (base speed, lane and start time). The cars are kept in primitive columns, so a fleet costs
+ 16 bytes a car and applyTo() hands the car columns to SimulationEngine.scheduleCars() without copying them: cars that
+ start at time 0 are on the road at once, the rest enter as simulated time reaches their start time.
+ Without -Dtraffic.scenario the GUI and HeadlessSimulation run DEFAULT, the original layout of three intersections and
+ three cars, which is parsed from the same text format as a scenario file.
+ */
+
+package engine;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+public final class Scenario {
+
+    // The original setup: lights at 1250, 2500 and 3750 m with the default phases, cars at 15, 5 and 9 m/s
+    static final String DEFAULT = """
+            # Three intersections and three cars, all on the road when the simulation starts
+            light 1250
+            light 2500
+            light 3750
+            car 15
+            car 5
+            car 9
+            """;
+
+    private int lightCount = 0;
+    private int[] lightPositions = new int[4];
+    private SignalPlan[] lightPlans = new SignalPlan[4];
+
+    private int carCount = 0;
+    private int[] carSpeeds = new int[16];
+    private int[] carLanes = new int[16];
+    private double[] carStartTimes = new double[16];  // Never decreasing
+
+    // Constructor for an empty scenario (filled by ScenarioLoader)
+    Scenario() {
+    }
+
+    // The original three-intersection, three-car scenario
+    public static Scenario defaultScenario() {
+        try {
+            return ScenarioLoader.parse(ByteBuffer.wrap(DEFAULT.getBytes(StandardCharsets.US_ASCII)), "default");
+        } catch (IOException e) {
+            throw new IllegalStateException("Built-in scenario does not parse", e);
+        }
+    }
+
+    // Scenario file named by -Dtraffic.scenario, or the default scenario
+    public static Scenario fromSystemProperty() throws IOException {
+        String file = System.getProperty("traffic.scenario");
+        return file == null ? defaultScenario() : ScenarioLoader.load(Path.of(file));
+    }
+
+    // Append a light (called by ScenarioLoader)
+    void addLight(int position, SignalPlan plan) {
+        if (lightCount == lightPositions.length) {
+            int capacity = lightCount * 2;
+            lightPositions = Arrays.copyOf(lightPositions, capacity);
+            lightPlans = Arrays.copyOf(lightPlans, capacity);
+        }
+        lightPositions[lightCount] = position;
+        lightPlans[lightCount] = plan;
+        lightCount++;
+    }
+
+    // Append a car; start times must not decrease (called by ScenarioLoader)
+    void addCar(int speed, int lane, double startTime) {
+        if (carCount == carSpeeds.length) {
+            int capacity = carCount * 2;
+            carSpeeds = Arrays.copyOf(carSpeeds, capacity);
+            carLanes = Arrays.copyOf(carLanes, capacity);
+            carStartTimes = Arrays.copyOf(carStartTimes, capacity);
+        }
+        carSpeeds[carCount] = speed;
+        carLanes[carCount] = lane;
+        carStartTimes[carCount] = startTime;
+        carCount++;
+    }
+
+    // Start time of the last car added so far (0 when there is none)
+    double lastStartTime() {
+        return carCount == 0 ? 0 : carStartTimes[carCount - 1];
+    }
+
+    // Add the lights to the engine and schedule the cars
+    public void applyTo(SimulationEngine engine) {
+        for (int i = 0; i < lightCount; i++) {
+            engine.addLight(lightPositions[i], lightPlans[i]);
+        }
+        engine.scheduleCars(carSpeeds, carLanes, carStartTimes, carCount);
+    }
+
+    // Add the lights to a discrete-event simulation and schedule the cars
+    public void applyTo(DiscreteEventSimulation simulation) {
+        for (int i = 0; i < lightCount; i++) {
+            simulation.addLight(lightPositions[i], lightPlans[i]);
+        }
+        simulation.scheduleCars(carSpeeds, carLanes, carStartTimes, carCount);
+    }
+
+    public int lightCount() {
+        return lightCount;
+    }
+
+    public int carCount() {
+        return carCount;
+    }
+
+    // Track position of light i
+    public int lightPosition(int i) {
+        return lightPositions[i];
+    }
+
+    // Signal plan of light i
+    public SignalPlan lightPlan(int i) {
+        return lightPlans[i];
+    }
+
+    // Base speed of car i in m/s
+    public int carSpeed(int i) {
+        return carSpeeds[i];
+    }
+
+    public int carLane(int i) {
+        return carLanes[i];
+    }
+
+    // Simulated time car i enters the track
+    public double carStartTime(int i) {
+        return carStartTimes[i];
+    }
+
+    // Heap bytes held by the light and car columns
+    public long footprintBytes() {
+        return (long) lightPositions.length * (2 * Integer.BYTES)
+                + (long) carSpeeds.length * (2 * Integer.BYTES + Double.BYTES);
+    }
+}
@@ -0,0 +1,272 @@
+/**
+ CMSC 335
+ Project 4
+ Class Descriptions:
+ ScenarioLoader reads a scenario file into a Scenario. The file is plain text, one entry per line:
+   light <position> [<green> <yellow> <red> [<offset>]]
+                                               track position in meters; phase lengths in simulated seconds; the
+                                               simulated time a cycle (its RED phase) begins, for green waves
+   car <speed> [<lane> [<start>]]              base speed in m/s; lane (default 0); start time in simulated seconds
+ Fields are separated by spaces or tabs, # starts a comment, and blank lines are ignored. Positions, speeds and lanes
+ are whole numbers; phase lengths, offsets and start times may have a decimal fraction (12.5). Cars must be listed
+ in order of start time, which is how a generator writes them anyway, so the engine can release them with a single
+ cursor.
+ The file is memory-mapped (in windows of up to WINDOW_BYTES, so files over 2 GB work) and copied from the mapping in
+ bulk into one reusable CHUNK_BYTES heap buffer, which stays in cache and is much cheaper to scan than a get() per
+ byte on the mapping; the bytes are parsed from there straight into the Scenario's primitive columns: no line is ever
+ turned into a String, no number goes through Integer.parseInt, and nothing is allocated per line. A line cut off at
+ the end of the buffer is moved to its front and finished with the next chunk. Reading a large fleet therefore runs
+ at about the speed the page cache or the disk delivers the bytes (see bench.ScenarioLoadBenchmark). Errors are
+ IOExceptions naming the file and line.
+ */
+
+package engine;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+public final class ScenarioLoader {
+
+    public static final long WINDOW_BYTES = 1L << 30;  // Largest slice of the file mapped at once
+    public static final int CHUNK_BYTES = 1 << 20;     // Bytes copied from the mapping per parse pass; longest line
+    public static final int MAX_LANES = 1 << 16;       // Lanes are array indexes in the engine
+
+    private static final byte[] LIGHT = {'l', 'i', 'g', 'h', 't'};
+    private static final byte[] CAR = {'c', 'a', 'r'};
+    private static final double[] FRACTION_SCALE = {1, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9};
+
+    private final String source;                      // File name for error messages
+    private final Scenario scenario = new Scenario();
+    private final byte[] text = new byte[CHUNK_BYTES]; // Bytes being parsed
+    private int filled = 0;                           // Valid bytes in text
+    private int cursor;                               // Next byte of the current line
+    private int lineEnd;                              // End of the current line (exclusive, without \r\n)
+    private long line = 0;                            // 1-based number of the current line
+
+    private ScenarioLoader(String source) {
+        this.source = source;
+    }
+
+    // Map and parse a scenario file
+    public static Scenario load(Path file) throws IOException {
+        ScenarioLoader loader = new ScenarioLoader(file.toString());
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            for (long offset = 0; offset < size; offset += WINDOW_BYTES) {
+                long length = Math.min(WINDOW_BYTES, size - offset);
+                loader.feed(channel.map(FileChannel.MapMode.READ_ONLY, offset, length));
+            }
+        }
+        loader.finish();
+        return loader.scenario;
+    }
+
+    // Parse a scenario held in a buffer, from its position to its limit; source names it in error messages
+    public static Scenario parse(ByteBuffer bytes, String source) throws IOException {
+        ScenarioLoader loader = new ScenarioLoader(source);
+        loader.feed(bytes.duplicate());
+        loader.finish();
+        return loader.scenario;
+    }
+
+    // Copy the remaining bytes of a buffer through text, parsing every complete line
+    private void feed(ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining()) {
+            int count = Math.min(bytes.remaining(), text.length - filled);
+            bytes.get(text, filled, count);
+            filled += count;
+            int consumed = parseLines(false);
+            if (consumed == 0 && filled == text.length) {
+                line++;
+                throw error("line longer than " + CHUNK_BYTES + " bytes");
+            }
+            System.arraycopy(text, consumed, text, 0, filled - consumed);  // Keep the cut-off line
+            filled -= consumed;
+        }
+    }
+
+    // Parse what is left after the last feed: a final line without a newline
+    private void finish() throws IOException {
+        parseLines(true);
+        filled = 0;
+    }
+
+    // Parse every complete line in text (and the unterminated rest when last); returns the bytes consumed
+    private int parseLines(boolean last) throws IOException {
+        byte[] bytes = text;
+        int limit = filled;
+        int start = 0;
+        while (start < limit) {
+            int end = start;
+            while (end < limit && bytes[end] != '\n') {
+                end++;
+            }
+            if (end == limit && !last) {
+                break;  // Cut off: finished with the next chunk
+            }
+            line++;
+            parseLine(start, end);
+            start = end + 1;
+        }
+        return Math.min(start, limit);
+    }
+
+    // Parse one line from start to end (exclusive)
+    private void parseLine(int start, int end) throws IOException {
+        cursor = start;
+        lineEnd = end > start && text[end - 1] == '\r' ? end - 1 : end;
+        if (!hasField()) {
+            return;  // Blank or comment
+        }
+        if (keyword(LIGHT)) {
+            int position = readInt("position");
+            if (position > SimulationEngine.TRACK_LENGTH) {
+                throw error("light position " + position + " is past the end of the track");
+            }
+            double green = TrafficLightThread.GREEN_SECONDS;
+            double yellow = TrafficLightThread.YELLOW_SECONDS;
+            double red = TrafficLightThread.RED_SECONDS;
+            double offset = 0;
+            if (hasField()) {
+                green = readPhase("green");
+                yellow = readPhase("yellow");
+                red = readPhase("red");
+                offset = hasField() ? readSeconds("offset") : 0;
+            }
+            endOfLine();
+            scenario.addLight(position, new SignalPlan(green, yellow, red, offset));
+        } else if (keyword(CAR)) {
+            int speed = readInt("speed");
+            if (speed == 0) {
+                throw error("speed must be positive");
+            }
+            int lane = hasField() ? readInt("lane") : 0;
+            if (lane >= MAX_LANES) {
+                throw error("lane must be below " + MAX_LANES);
+            }
+            double startTime = hasField() ? readSeconds("start time") : 0;
+            endOfLine();
+            if (startTime < scenario.lastStartTime()) {
+                throw error("cars must be listed in order of start time");
+            }
+            scenario.addCar(speed, lane, startTime);
+        } else {
+            throw error("expected 'light' or 'car'");
+        }
+    }
+
+    // Skip spaces and tabs; true if a field (not the end of the line or a comment) follows
+    private boolean hasField() {
+        int at = cursor;
+        while (at < lineEnd && isBlank(text[at])) {
+            at++;
+        }
+        cursor = at;
+        return at < lineEnd && text[at] != '#';
+    }
+
+    // Fail if anything but blanks or a comment is left on the line
+    private void endOfLine() throws IOException {
+        if (hasField()) {
+            throw error("unexpected text after the last field");
+        }
+    }
+
+    // Consume the given keyword if the line continues with it as a whole word
+    private boolean keyword(byte[] word) {
+        int end = cursor + word.length;
+        if (end > lineEnd || (end < lineEnd && !isBlank(text[end]))) {
+            return false;
+        }
+        for (int i = 0; i < word.length; i++) {
+            if (text[cursor + i] != word[i]) {
+                return false;
+            }
+        }
+        cursor = end;
+        return true;
+    }
+
+    // Read a non-negative whole number
+    private int readInt(String field) throws IOException {
+        if (!hasField()) {
+            throw error("missing " + field);
+        }
+        long value = 0;
+        int first = cursor;
+        int at = first;
+        while (at < lineEnd && isDigit(text[at])) {
+            value = value * 10 + (text[at++] - '0');
+            if (value > Integer.MAX_VALUE) {
+                throw error(field + " is too large");
+            }
+        }
+        cursor = at;
+        checkFieldEnd(first, field);
+        return (int) value;
+    }
+
+    // Read a phase length, which must be positive
+    private double readPhase(String field) throws IOException {
+        double seconds = readSeconds(field + " seconds");
+        if (seconds == 0) {
+            throw error(field + " seconds must be positive");
+        }
+        return seconds;
+    }
+
+    // Read a non-negative number of seconds with an optional decimal fraction (at most 9 digits of it are kept)
+    private double readSeconds(String field) throws IOException {
+        if (!hasField()) {
+            throw error("missing " + field);
+        }
+        int first = cursor;
+        int at = first;
+        long whole = 0;
+        while (at < lineEnd && isDigit(text[at])) {
+            whole = whole * 10 + (text[at++] - '0');
+            if (whole > Integer.MAX_VALUE) {
+                throw error(field + " is too large");
+            }
+        }
+        long fraction = 0;
+        int fractionDigits = 0;
+        if (at < lineEnd && text[at] == '.') {
+            at++;
+            while (at < lineEnd && isDigit(text[at])) {
+                if (fractionDigits < FRACTION_SCALE.length - 1) {
+                    fraction = fraction * 10 + (text[at] - '0');
+                    fractionDigits++;
+                }
+                at++;
+            }
+        }
+        cursor = at;
+        checkFieldEnd(first, field);
+        return whole + fraction / FRACTION_SCALE[fractionDigits];
+    }
+
+    // A number must have a digit and end at a blank, a comment or the end of the line
+    private void checkFieldEnd(int first, String field) throws IOException {
+        boolean digits = cursor > first && (isDigit(text[first]) || cursor > first + 1);
+        if (!digits || (cursor < lineEnd && !isBlank(text[cursor]) && text[cursor] != '#')) {
+            throw error("bad " + field);
+        }
+    }
+
+    private static boolean isBlank(byte b) {
+        return b == ' ' || b == '\t';
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    // Error at the current line
+    private IOException error(String message) {
+        return new IOException(source + ":" + line + ": " + message);
+    }
+}
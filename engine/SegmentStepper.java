@@ -0,0 +1,256 @@
+/**
+ CMSC 335
+ Project 4
+ Class Descriptions:
+ SegmentStepper moves the cars of one engine step in parallel. The road is cut into segments, SEGMENTS_PER_WORKER per
+ fork-join worker, and each segment is a RecursiveAction that moves only the cars it owns. Segment boundaries are not
+ fixed: they are placed at quantiles of a car-position histogram, so a segment near a busy light covers a few meters and
+ one on an empty stretch covers kilometers. Cars are ordered by the key (1 m bucket, car id), so a boundary can fall
+ inside one crowded meter and split the cars queued there by id. A car that crosses its segment's upper boundary goes
+ into that segment's outbox and is handed to its new segment after every task has joined, so no list is ever touched by
+ two threads. Boundaries are recomputed when the largest segment holds more than IMBALANCE_LIMIT times the mean. Each
+ car only writes its own CarStore slots and lights are advanced before the cars, so the result is identical to the
+ sequential loop.
+ */
+
+package engine;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+final class SegmentStepper {
+
+    static final int SEGMENTS_PER_WORKER = 4;       // Extra segments so idle workers can steal
+    private static final int HISTOGRAM_BUCKETS = SimulationEngine.TRACK_LENGTH; // 1 m buckets
+    private static final double IMBALANCE_LIMIT = 1.5;      // Largest segment vs. mean before rebalancing
+    private static final int MIN_REBALANCE_INTERVAL = 5;    // Ticks between density rebalances
+
+    private final SimulationEngine engine;
+    private final CarStore cars;
+    private final ForkJoinPool pool;
+    private final Segment[] segments;
+    private final long[] lowerKeys;                  // Segment i holds the keys in [lowerKeys[i], lowerKeys[i + 1])
+    private final int[] histogram = new int[HISTOGRAM_BUCKETS];
+    private final int[] seen = new int[HISTOGRAM_BUCKETS];      // Cars of each bucket counted so far, in id order
+    private final int[] firstCut;                    // Per bucket: first boundary inside it still to place, or -1
+    private final int[] cutBucket;                   // Per boundary: bucket it falls in
+    private final int[] cutNeed;                     // Per boundary: cars of that bucket that stay below it
+    private final RecursiveAction root = new RecursiveAction() {
+        @Override
+        protected void compute() {
+            ForkJoinTask.invokeAll(segments);
+        }
+    };
+
+    private boolean membershipStale = true;   // Cars were added or removed since the last assignment
+    private long ticksSinceRebalance = 0;
+    private long rebalances = 0;
+    private double lastImbalance = 1.0;       // Largest segment / mean of the cars moved by the last step
+
+    // Constructor: one pool of the given parallelism shared by every step
+    SegmentStepper(SimulationEngine engine, CarStore cars, int parallelism) {
+        this.engine = engine;
+        this.cars = cars;
+        this.pool = new ForkJoinPool(parallelism);
+        this.segments = new Segment[parallelism * SEGMENTS_PER_WORKER];
+        this.lowerKeys = new long[segments.length];
+        this.firstCut = new int[HISTOGRAM_BUCKETS];
+        this.cutBucket = new int[segments.length];
+        this.cutNeed = new int[segments.length];
+        Arrays.fill(firstCut, -1);
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    // Ordering key of a car: its 1 m bucket, then its id
+    private long keyOf(int id) {
+        return ((long) bucketOf(cars.position[id]) << 32) | id;
+    }
+
+    // Cars were added or removed: reassign every car before the next step
+    void invalidate() {
+        membershipStale = true;
+    }
+
+    // Move every active car by dt simulated seconds (caller holds the engine's write lock)
+    void step(double dt) {
+        if (membershipStale || (imbalance() > IMBALANCE_LIMIT && ticksSinceRebalance >= MIN_REBALANCE_INTERVAL)) {
+            rebalance();
+        }
+        lastImbalance = imbalance();
+        for (Segment segment : segments) {
+            segment.reinitialize();
+            segment.dt = dt;
+        }
+        root.reinitialize();
+        pool.invoke(root);
+        handOff();
+        ticksSinceRebalance++;
+    }
+
+    // Move cars that crossed a boundary into the segment that now contains them
+    private void handOff() {
+        for (Segment segment : segments) {
+            for (int i = 0; i < segment.outCount; i++) {
+                int id = segment.outbox[i];
+                segments[segmentFor(keyOf(id))].add(id);
+            }
+            segment.outCount = 0;
+        }
+    }
+
+    // Largest segment's car count over the mean for the current assignment
+    private double imbalance() {
+        int total = 0;
+        int largest = 0;
+        for (Segment segment : segments) {
+            total += segment.count;
+            largest = Math.max(largest, segment.count);
+        }
+        return total == 0 ? 1.0 : largest * (double) segments.length / total;
+    }
+
+    // Place the boundaries at quantiles of the current car density and reassign every car
+    private void rebalance() {
+        Arrays.fill(histogram, 0);
+        int total = 0;
+        int end = cars.highWater();
+        for (int id = 0; id < end; id++) {
+            if (isMoving(id)) {
+                histogram[bucketOf(cars.position[id])]++;
+                total++;
+            }
+        }
+
+        // Find the bucket each boundary falls in and how many of its cars stay below the boundary
+        int next = 1;
+        int before = 0;  // Cars in the buckets before this one
+        for (int bucket = 0; bucket < HISTOGRAM_BUCKETS && next < segments.length; bucket++) {
+            while (next < segments.length && (long) total * next / segments.length < before + histogram[bucket]) {
+                cutBucket[next] = bucket;
+                cutNeed[next] = (int) ((long) total * next / segments.length) - before;
+                lowerKeys[next] = (long) bucket << 32;  // Whole bucket above, unless cars must stay below
+                if (cutNeed[next] > 0 && firstCut[bucket] < 0) {
+                    firstCut[bucket] = next;
+                }
+                next++;
+            }
+            before += histogram[bucket];
+        }
+        while (next < segments.length) {
+            lowerKeys[next++] = (long) HISTOGRAM_BUCKETS << 32;  // Past every car
+        }
+
+        // Inside a crowded bucket, split by id: the boundary sits just above the cutNeed-th car of the bucket
+        if (total > 0) {
+            Arrays.fill(seen, 0);
+            for (int id = 0; id < end; id++) {
+                if (!isMoving(id)) continue;
+                int bucket = bucketOf(cars.position[id]);
+                int cut = firstCut[bucket];
+                if (cut < 0) continue;
+                int count = ++seen[bucket];
+                while (cut < segments.length && cutBucket[cut] == bucket && cutNeed[cut] == count) {
+                    lowerKeys[cut++] = ((long) bucket << 32) | (id + 1);
+                }
+                firstCut[bucket] = cut < segments.length && cutBucket[cut] == bucket ? cut : -1;
+            }
+        }
+
+        for (Segment segment : segments) {
+            segment.count = 0;
+        }
+        for (int id = 0; id < end; id++) {
+            if (isMoving(id)) {
+                segments[segmentFor(keyOf(id))].add(id);
+            }
+        }
+        for (int i = 0; i < segments.length; i++) {
+            segments[i].upperKey = i + 1 < segments.length ? lowerKeys[i + 1] : Long.MAX_VALUE;
+        }
+        membershipStale = false;
+        ticksSinceRebalance = 0;
+        rebalances++;
+    }
+
+    private boolean isMoving(int id) {
+        int flags = cars.flags[id];
+        return (flags & CarStore.ACTIVE) != 0 && (flags & CarStore.FINISHED) == 0;
+    }
+
+    private static int bucketOf(double position) {
+        int bucket = (int) (position * HISTOGRAM_BUCKETS / SimulationEngine.TRACK_LENGTH);
+        return Math.min(Math.max(bucket, 0), HISTOGRAM_BUCKETS - 1);
+    }
+
+    // Last segment whose lower key is at or below the car's key (empty segments share a key)
+    private int segmentFor(long key) {
+        int low = 0;
+        int high = lowerKeys.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (lowerKeys[mid] <= key) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    int segmentCount() {
+        return segments.length;
+    }
+
+    long rebalances() {
+        return rebalances;
+    }
+
+    double lastImbalance() {
+        return lastImbalance;
+    }
+
+    void shutdown() {
+        pool.shutdown();
+    }
+
+    // The cars between two boundaries; only one worker touches a segment during a step
+    private final class Segment extends RecursiveAction {
+        private static final long serialVersionUID = 1L;  // Never serialized; RecursiveAction is Serializable
+
+        int[] ids = new int[16];
+        int count = 0;
+        int[] outbox = new int[16];
+        int outCount = 0;
+        long upperKey = Long.MAX_VALUE;  // Exclusive upper boundary key
+        double dt;
+
+        void add(int id) {
+            if (count == ids.length) ids = Arrays.copyOf(ids, count * 2);
+            ids[count++] = id;
+        }
+
+        @Override
+        protected void compute() {
+            // Walk backwards so a car can be swap-removed without skipping one
+            for (int i = count - 1; i >= 0; i--) {
+                int id = ids[i];
+                if (!isMoving(id)) {
+                    ids[i] = ids[--count];  // Removed or finished: no longer owned by any segment
+                    continue;
+                }
+                engine.moveCar(id, dt);
+                if (!isMoving(id)) {
+                    ids[i] = ids[--count];
+                } else if (keyOf(id) >= upperKey) {  // A network car whose key drops onto a new edge just stays
+                    if (outCount == outbox.length) outbox = Arrays.copyOf(outbox, outCount * 2);
+                    outbox[outCount++] = id;
+                    ids[i] = ids[--count];
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/**
+ CMSC 335
+ Project 4
+ Class Descriptions:
+ SignalPlan is the fixed-time program of one traffic light: a cycle of RED, GREEN and YELLOW phases (in that order)
+ whose lengths are the splits, repeating from the offset, a simulated time at which a cycle begins. Everything about
+ the light follows from the simulated time alone, so colorAt(t), the time left in the phase, the next phase change
+ and timeUntil(GREEN) are O(1) pure functions: one floor division places t in its cycle and at most three
+ comparisons place it in a phase. No thread or timer is needed to know what a light shows at any time, past or
+ future; TrafficLightThread only turns the plan's phase changes into events. Cars and engines can therefore compute
+ exactly when a red light turns green instead of polling it, and skip ticks in which nothing changes.
+ A plan is immutable. withOffset() gives the same splits starting at another time, which is how lights added while a
+ run is going start on RED at the moment they are added, and how a scenario staggers lights into a green wave.
+ */
+
+package engine;
+
+public final class SignalPlan {
+
+    // The original fixed cycle: 40 s RED, 40 s GREEN, 80 s YELLOW, starting on RED at time 0
+    public static final SignalPlan DEFAULT = new SignalPlan(TrafficLightThread.GREEN_SECONDS,
+            TrafficLightThread.YELLOW_SECONDS, TrafficLightThread.RED_SECONDS, 0);
+
+    private final double green;        // Phase lengths in simulated seconds
+    private final double yellow;
+    private final double red;
+    private final double cycle;        // red + green + yellow
+    private final double offset;       // A simulated time at which a cycle (its RED phase) begins
+
+    // Constructor from the phase lengths (in the order TrafficLightThread takes them) and the offset
+    public SignalPlan(double greenSeconds, double yellowSeconds, double redSeconds, double offsetSeconds) {
+        if (!(greenSeconds > 0 && yellowSeconds > 0 && redSeconds > 0)) {
+            throw new IllegalArgumentException("Phase lengths must be positive: " + greenSeconds + "/" + yellowSeconds
+                    + "/" + redSeconds);
+        }
+        if (!Double.isFinite(offsetSeconds) || Double.isInfinite(greenSeconds + yellowSeconds + redSeconds)) {
+            throw new IllegalArgumentException("Offset and phase lengths must be finite");
+        }
+        this.green = greenSeconds;
+        this.yellow = yellowSeconds;
+        this.red = redSeconds;
+        this.cycle = redSeconds + greenSeconds + yellowSeconds;
+        this.offset = offsetSeconds;
+    }
+
+    // Plan from a cycle length and each phase's share of it (the splits, which are scaled to sum to 1)
+    public static SignalPlan fromSplits(double cycleSeconds, double offsetSeconds, double greenSplit,
+                                        double yellowSplit, double redSplit) {
+        double total = greenSplit + yellowSplit + redSplit;
+        if (!(cycleSeconds > 0) || !(total > 0)) {
+            throw new IllegalArgumentException("Cycle length and splits must be positive");
+        }
+        return new SignalPlan(cycleSeconds * greenSplit / total, cycleSeconds * yellowSplit / total,
+                cycleSeconds * redSplit / total, offsetSeconds);
+    }
+
+    // The same phases with a cycle beginning at offsetSeconds
+    public SignalPlan withOffset(double offsetSeconds) {
+        return offsetSeconds == offset ? this : new SignalPlan(green, yellow, red, offsetSeconds);
+    }
+
+    // Color shown at simulated time t
+    public TrafficLightColor colorAt(double t) {
+        double into = t - cycleStart(t);
+        if (into < red) return TrafficLightColor.RED;
+        if (into < red + green) return TrafficLightColor.GREEN;
+        return TrafficLightColor.YELLOW;
+    }
+
+    // Simulated time of the first phase change after t
+    public double nextChange(double t) {
+        double start = cycleStart(t);
+        double into = t - start;
+        if (into < red) return start + red;
+        if (into < red + green) return start + red + green;
+        double next = start + cycle;
+        return next > t ? next : next + red;  // Rounding left t on the boundary itself: take the one after it
+    }
+
+    // Simulated seconds from t until the current phase ends
+    public double remainingAt(double t) {
+        return nextChange(t) - t;
+    }
+
+    // Simulated seconds from t until the light shows the color (0 if it already does)
+    public double timeUntil(TrafficLightColor color, double t) {
+        double start = cycleStart(t);
+        double into = t - start;
+        double begins = switch (color) {   // Start of that phase within the cycle
+            case RED -> 0;
+            case GREEN -> red;
+            case YELLOW -> red + green;
+        };
+        double ends = begins + phaseLength(color);
+        if (into >= begins && into < ends) {
+            return 0;
+        }
+        return (into < begins ? start + begins : start + cycle + begins) - t;
+    }
+
+    // Simulated seconds from t until the light turns (or 0 while it is) GREEN
+    public double timeUntilGreen(double t) {
+        return timeUntil(TrafficLightColor.GREEN, t);
+    }
+
+    // Start of the cycle that contains t; corrected by one cycle when rounding puts the division on the wrong side
+    private double cycleStart(double t) {
+        double start = offset + Math.floor((t - offset) / cycle) * cycle;
+        if (start > t) {
+            start -= cycle;
+        } else if (start + cycle <= t) {
+            start += cycle;
+        }
+        return start;
+    }
+
+    // Length of a phase in simulated seconds
+    public double phaseLength(TrafficLightColor color) {
+        return switch (color) {
+            case GREEN -> green;
+            case YELLOW -> yellow;
+            case RED -> red;
+        };
+    }
+
+    // Share of the cycle a phase takes
+    public double split(TrafficLightColor color) {
+        return phaseLength(color) / cycle;
+    }
+
+    public double cycleLength() {
+        return cycle;
+    }
+
+    public double offset() {
+        return offset;
+    }
+
+    // True if the phases are the default lengths (the offset may differ)
+    public boolean hasDefaultPhases() {
+        return green == TrafficLightThread.GREEN_SECONDS && yellow == TrafficLightThread.YELLOW_SECONDS
+                && red == TrafficLightThread.RED_SECONDS;
+    }
+
+    @Override
+    public String toString() {
+        return "SignalPlan[red " + red + " s, green " + green + " s, yellow " + yellow + " s, offset " + offset + " s]";
+    }
+}
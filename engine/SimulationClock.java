@@ -0,0 +1,174 @@
+/**
+ CMSC 335
+ Project 4
+ Class Descriptions:
+ SimulationClock is the virtual time every part of the simulation reads instead of the wall clock. Its time scale is
+ the number of simulated seconds per wall-clock second (1x, 10x, 1000x, ...), and UNTHROTTLED lets the STEP_LOOP run as
+ fast as the CPU allows. In STEP_LOOP mode the engine advances the clock by each step's dt, so simulated time is exact.
+ In the actor modes there is no single step, so the clock free-runs on wall time multiplied by the scale; those modes
+ are paced by real timers and cannot run unthrottled, so actors use actorScale(), which caps the scale at
+ MAX_ACTOR_SCALE. Choose the start-up scale with -Dtraffic.timeScale=<factor> or -Dtraffic.timeScale=max. Every actor
+ tick reads the clock, so reads take no lock: the scale is volatile, and now() reads its fields under an optimistic
+ StampedLock stamp, falling back to a read lock only if a writer got in between.
+ */
+
+package engine;
+
+import java.util.concurrent.locks.StampedLock;
+
+public final class SimulationClock {
+
+    public static final double DEFAULT_TIME_SCALE = 20.0;           // 50 ms wall time per one-second tick
+    public static final double UNTHROTTLED = Double.POSITIVE_INFINITY;
+    public static final double MAX_ACTOR_SCALE = 1000.0;            // Fastest pace of timer-driven actors
+
+    private final boolean stepped;      // True when the engine advances the clock explicitly (STEP_LOOP)
+    private final StampedLock lock = new StampedLock();  // Held by writers; now() tries an optimistic read first
+    private volatile double timeScale;  // Simulated seconds per wall second, or UNTHROTTLED
+    private double elapsed = 0;         // Simulated seconds accumulated before the running segment
+    private long segmentStart = -1;     // nanoTime the free-running segment started, -1 while stopped or paused
+
+    // Constructor: stepped clocks only move through advance(), others free-run between start() and pause()
+    public SimulationClock(boolean stepped, double timeScale) {
+        this.stepped = stepped;
+        setTimeScale(timeScale);
+    }
+
+    // Time scale named by -Dtraffic.timeScale ("max" for unthrottled), or DEFAULT_TIME_SCALE
+    public static double timeScaleFromSystemProperty() {
+        String value = System.getProperty("traffic.timeScale");
+        if (value == null || value.isBlank()) {
+            return DEFAULT_TIME_SCALE;
+        }
+        if (value.equalsIgnoreCase("max")) {
+            return UNTHROTTLED;
+        }
+        return Double.parseDouble(value.trim());
+    }
+
+    // Current simulated time in seconds; every actor tick reads it, so readers never block each other
+    public double now() {
+        long stamp = lock.tryOptimisticRead();
+        double base = elapsed;
+        long start = segmentStart;
+        double scale = timeScale;
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();  // A writer got in between: read again under the lock
+            try {
+                base = elapsed;
+                start = segmentStart;
+                scale = timeScale;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return timeAt(base, start, scale);
+    }
+
+    // Advance a stepped clock by dt simulated seconds
+    void advance(double dt) {
+        long stamp = lock.writeLock();
+        try {
+            elapsed += dt;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // Set a stepped clock to the given simulated time (restoring a checkpoint)
+    void restore(double simSeconds) {
+        long stamp = lock.writeLock();
+        try {
+            elapsed = simSeconds;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // Start or resume free-running (no effect on a stepped clock)
+    void start() {
+        long stamp = lock.writeLock();
+        try {
+            if (!stepped && segmentStart < 0) {
+                segmentStart = System.nanoTime();
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // Freeze a free-running clock (no effect on a stepped clock)
+    void pause() {
+        long stamp = lock.writeLock();
+        try {
+            if (segmentStart >= 0) {
+                elapsed = timeAt(elapsed, segmentStart, timeScale);
+                segmentStart = -1;
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // Change the time scale; a free-running clock keeps its current time
+    public void setTimeScale(double timeScale) {
+        if (!(timeScale > 0)) {
+            throw new IllegalArgumentException("Time scale must be positive: " + timeScale);
+        }
+        long stamp = lock.writeLock();
+        try {
+            if (segmentStart >= 0) {
+                elapsed = timeAt(elapsed, segmentStart, this.timeScale);
+                segmentStart = System.nanoTime();
+            }
+            this.timeScale = timeScale;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public double timeScale() {
+        return timeScale;
+    }
+
+    public boolean isUnthrottled() {
+        return timeScale == UNTHROTTLED;
+    }
+
+    // Scale used by timer-driven actors, which cannot run unthrottled
+    public double actorScale() {
+        return Math.min(timeScale, MAX_ACTOR_SCALE);
+    }
+
+    // Wall nanoseconds that span simSeconds at the current scale; 0 when unthrottled
+    public long wallNanosFor(double simSeconds) {
+        return Math.round(simSeconds * 1e9 / timeScale);
+    }
+
+    // Wall nanoseconds an actor waits for simSeconds of simulated time
+    public long actorNanosFor(double simSeconds) {
+        return Math.round(simSeconds * 1e9 / actorScale());
+    }
+
+    // Simulated seconds an actor's wall-clock wait of wallNanos stands for
+    public double actorSecondsFor(long wallNanos) {
+        return wallNanos * actorScale() / 1e9;
+    }
+
+    // Short label such as "20x" or "max"
+    public String scaleLabel() {
+        double scale = timeScale;
+        if (scale == UNTHROTTLED) {
+            return "max";
+        }
+        return (scale == Math.rint(scale) ? String.valueOf((long) scale) : String.valueOf(scale)) + "x";
+    }
+
+    // Simulated time of a clock with the given fields: free-running segments advance at the actor scale
+    private static double timeAt(double elapsed, long segmentStart, double timeScale) {
+        if (segmentStart < 0) {
+            return elapsed;
+        }
+        return elapsed + (System.nanoTime() - segmentStart) * Math.min(timeScale, MAX_ACTOR_SCALE) / 1e9;
+    }
+}
@@ -0,0 +1,1236 @@
+/**
+ CMSC 335
+ Project 4
+ Class Descriptions:
+ SimulationEngine owns the whole simulation state: every car's position and speed and every traffic light's phase. It
+ has no Swing dependencies, so it can run headless. Cars live in a struct-of-arrays CarStore and find the lights ahead
+ of them through a sorted IntersectionIndex and a per-car cursor. The state is advanced by step(dt), either from one
+ fixed-timestep loop thread (ExecutionMode.STEP_LOOP) or by actors (ExecutionMode.PLATFORM_THREADS / VIRTUAL_THREADS):
+ one CarThread per car, and light phase changes as timers on the shared SimulationScheduler. Observers such as the GUI
+ read the state through snapshot() and may use scheduler() for their own periodic or delayed work. Simulated time lives
+ in a SimulationClock: step(dt) advances it, the loop and the actors derive their wall-clock pacing from its time scale,
+ and setTimeScale() changes the pace while running. Cars on the track follow the car ahead in their lane with the
+ IntelligentDriverModel: the leader is one read from CarStore's per-lane lists, and in step(dt) every car reacts to its
+ leader's start-of-step position and speed, so cars never pass each other and a queue forms behind a car stopped at a
+ red light.
+ Besides the straight track, the engine can drive cars over a RoadNetwork: attachNetwork() creates one light per network
+ signal, and addCar(speed, route) puts a car on the first edge of a route of edge ids.
+ scheduleCars() takes a whole fleet with start times (as loaded from a Scenario) in primitive arrays: each car enters
+ the track at the first step at or after its start time, or, in the actor modes, at the next check of a scheduler timer.
+ Every light follows a fixed-time SignalPlan (addLight starts a default cycle at the moment the light is added, a
+ Scenario may give its own), so timeUntilGreen() and nextSignalChange() are answered from the plans without waiting
+ for a phase change.
+ With setParallelism(n) (or -Dtraffic.parallelism=n) step(dt) moves the cars in road segments on a fork-join pool of
+ n workers (see SegmentStepper); the result is the same as the sequential loop.
+ State transitions (stopped, resumed, slowed, finished, light changed) go to an
+ optional EventJournal rather than System.out.
+
+ In STEP_LOOP mode a run is deterministic: every car moves in id order inside the one step(dt), and the only
+ randomness is a SplitMix64 generator seeded at construction. A RunRecording attached with startRecording() captures
+ the seed and every external command with the tick it was applied at, and folds the cars' positions into a trajectory
+ digest after each tick, so a replay can prove it reproduced the run bit for bit. The same determinism makes a run
+ resumable: captureCheckpoint() copies every column, light phase, the clock and the generator's one long of state
+ into a Checkpoint under the write lock, and fromCheckpoint() builds an engine that continues exactly where the
+ original was (see CheckpointWriter and CheckpointReader).
+
+ Locking uses a ReentrantReadWriteLock rather than synchronized so that car actors on virtual threads never pin their
+ carrier: each actor moves only its own car, so actors share the read lock, while structural changes (adding cars or
+ lights) and whole-engine steps take the write lock.
+ */
+
+package engine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+public class SimulationEngine {
+
+    // Track and timing constants
+    public static final int TRACK_LENGTH = 5000;      // Length of the straight road (meters)
+    public static final double TICK_SECONDS = 1.0;    // Simulated seconds advanced by one tick
+    public static final int APPROACH_DISTANCE = 100;  // Cars react to a light from 100 m before it...
+    public static final int CLEARANCE_DISTANCE = 10;  // ...until 10 m past it
+    private static final long DEPARTURE_CHECK_MILLIS = 10; // Wall period of the departure check in the actor modes
+
+    private final ExecutionMode mode;                           // How the engine is driven once started
+    private final CarStore cars;                                // Car columns indexed by car id
+    private final List<TrafficLightThread> lights = new ArrayList<>(); // Track lights indexed by light id
+    private final List<TrafficLightThread> signals = new ArrayList<>(); // Network lights indexed by signal id
+    private final List<TrafficLightThread> allLights = new ArrayList<>(); // Both, for stepping and timers
+    private RoadNetwork network = null;                         // Road graph for cars with routes, if attached
+    private IntersectionIndex intersections = IntersectionIndex.EMPTY; // Lights sorted by position
+    private final List<CarThread> carActors = new ArrayList<>(); // Per-car actors (thread modes only)
+    private final List<Thread> threads = new ArrayList<>();     // Every thread started by the engine
+    private final SimulationScheduler scheduler = new SimulationScheduler(); // Shared timers: lights, clock, countdowns
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ReentrantReadWriteLock.ReadLock readLock = lock.readLock();   // Actor steps and observers
+    private final ReentrantReadWriteLock.WriteLock writeLock = lock.writeLock(); // Structure changes and full steps
+    private final Condition resumed = writeLock.newCondition();  // Signalled by resume() and stop()
+
+    private long tickCount = 0;        // Number of completed steps
+    private final SimulationClock clock;       // Simulated time and its scale against wall time
+    private volatile boolean running = false; // Set once start() is called
+    private volatile boolean paused = false;
+    private volatile EventJournal journal = EventJournal.DISABLED; // Where state transitions are recorded
+    private final SimulationMetrics metrics = new SimulationMetrics(); // Lock-free counters read over JMX
+    private final long seed;                   // Seed of the engine's only random source
+    private long randomState;                  // SplitMix64 state, used by addRandomCar
+    private SegmentStepper segmentStepper = null; // Parallel car stepping, null when sequential
+    private RunRecording recording = null;     // Captures external commands while recording (STEP_LOOP only)
+    private long trajectoryDigest;             // FNV-1a style fold of car positions after every tick
+    private double stepTime;                   // Simulated time at the start of the current step
+    private int[] departureSpeeds;             // Scheduled cars not yet on the road, by start time (or null)
+    private int[] departureLanes;
+    private double[] departureTimes;
+    private int departureCount = 0;            // Scheduled cars in the arrays
+    private int nextDeparture = 0;             // First scheduled car not yet added
+    private SimulationScheduler.Timeout departureTimer = null; // Releases departures in the actor modes
+
+    static {
+        FlightEvents.watchRecorder();  // Pay for the recorder listener at startup, not at the first car event
+    }
+
+    // Constructor for the default fixed-timestep mode
+    public SimulationEngine() {
+        this(ExecutionMode.STEP_LOOP);
+    }
+
+    // Constructor selecting the execution mode
+    public SimulationEngine(ExecutionMode mode) {
+        this(mode, 16);
+    }
+
+    // Constructor selecting the execution mode and the expected number of cars
+    public SimulationEngine(ExecutionMode mode, int expectedCars) {
+        this(mode, expectedCars, Long.getLong("traffic.seed", System.nanoTime()));
+    }
+
+    // Constructor with an explicit random seed, so a run can be reproduced
+    public SimulationEngine(ExecutionMode mode, int expectedCars, long seed) {
+        if (mode == ExecutionMode.DISCRETE_EVENT) {
+            throw new IllegalArgumentException("DISCRETE_EVENT runs in DiscreteEventSimulation, not SimulationEngine");
+        }
+        this.mode = mode;
+        this.cars = new CarStore(expectedCars);
+        this.seed = seed;
+        this.randomState = seed;
+        this.clock = new SimulationClock(mode == ExecutionMode.STEP_LOOP,
+                SimulationClock.timeScaleFromSystemProperty());
+        setParallelism(Integer.getInteger("traffic.parallelism", 1));
+    }
+
+    // Add a car at the start of the track in lane 0; returns its car id
+    public int addCar(int baseSpeed) {
+        return addCar(baseSpeed, 0);
+    }
+
+    // Add a car at the start of the track, behind the last car of the given lane; returns its car id
+    public int addCar(int baseSpeed, int lane) {
+        if (lane < 0) {
+            throw new IllegalArgumentException("Lane must not be negative: " + lane);
+        }
+        writeLock.lock();
+        try {
+            return addTrackCar(baseSpeed, lane);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Add a track car; the caller holds the write lock
+    private int addTrackCar(int baseSpeed, int lane) {
+        int id = cars.add(baseSpeed, lane);
+        metrics.carAdded();
+        if (FlightEvents.recording) cars.addedNanos[id] = System.nanoTime();
+        record(RunRecording.Command.ADD_CAR, baseSpeed, lane);
+        if (segmentStepper != null) segmentStepper.invalidate();
+        if (running && mode != ExecutionMode.STEP_LOOP) {
+            startCarActor(id);
+        }
+        return id;
+    }
+
+    // Add track cars that enter when the simulated time reaches their start time; startTimes must not decrease.
+    // Cars already due are added at once. The arrays are kept, not copied, until the last car has entered.
+    public void scheduleCars(int[] baseSpeeds, int[] lanes, double[] startTimes, int count) {
+        if (count > baseSpeeds.length || count > lanes.length || count > startTimes.length) {
+            throw new IllegalArgumentException("Fewer than " + count + " scheduled cars in the arrays");
+        }
+        for (int i = 0; i < count; i++) {
+            if (lanes[i] < 0) {
+                throw new IllegalArgumentException("Lane must not be negative: " + lanes[i] + " (car " + i + ")");
+            }
+            if (i > 0 && startTimes[i] < startTimes[i - 1]) {
+                throw new IllegalArgumentException("Start times must not decrease (car " + i + ")");
+            }
+        }
+        writeLock.lock();
+        try {
+            if (nextDeparture < departureCount) {
+                throw new IllegalStateException("Cars are already scheduled");
+            }
+            departureSpeeds = baseSpeeds;
+            departureLanes = lanes;
+            departureTimes = startTimes;
+            departureCount = count;
+            nextDeparture = 0;
+            int due = 0;
+            double now = clock.now();
+            while (due < count && startTimes[due] <= now) {
+                due++;
+            }
+            cars.ensureCapacity(cars.highWater() + due);  // One copy of the columns, not one per doubling
+            releaseDepartures(now);
+            if (running && mode != ExecutionMode.STEP_LOOP) {
+                armDepartureTimer();
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Add every scheduled car whose start time has come; the caller holds the write lock
+    private void releaseDepartures(double now) {
+        while (nextDeparture < departureCount && departureTimes[nextDeparture] <= now) {
+            addTrackCar(departureSpeeds[nextDeparture], departureLanes[nextDeparture]);
+            nextDeparture++;
+        }
+        if (nextDeparture == departureCount && departureSpeeds != null) {
+            departureSpeeds = null;  // Let the schedule be collected
+            departureLanes = null;
+            departureTimes = null;
+            departureCount = 0;
+            nextDeparture = 0;
+            if (departureTimer != null) {
+                departureTimer.cancel();
+                departureTimer = null;
+            }
+        }
+    }
+
+    // Check for due departures on the scheduler while the actor modes run; the caller holds the write lock
+    private void armDepartureTimer() {
+        if (departureTimer == null && nextDeparture < departureCount) {
+            departureTimer = scheduler.scheduleAtFixedRate(this::releaseDueDepartures,
+                    DEPARTURE_CHECK_MILLIS, DEPARTURE_CHECK_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // Departure timer callback
+    private void releaseDueDepartures() {
+        writeLock.lock();
+        try {
+            if (running) releaseDepartures(clock.now());
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Scheduled cars that have not entered yet
+    public int pendingDepartures() {
+        readLock.lock();
+        try {
+            return departureCount - nextDeparture;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    // Add a car whose base speed is drawn from the seeded random in [minSpeed, maxSpeed]; returns its car id
+    public int addRandomCar(int minSpeed, int maxSpeed) {
+        writeLock.lock();
+        try {
+            int speed = nextRandomInt(minSpeed, maxSpeed + 1);
+            int id = cars.add(speed, 0);
+            metrics.carAdded();
+            if (FlightEvents.recording) cars.addedNanos[id] = System.nanoTime();
+            record(RunRecording.Command.ADD_RANDOM_CAR, minSpeed, maxSpeed);
+            if (segmentStepper != null) segmentStepper.invalidate();
+            if (running && mode != ExecutionMode.STEP_LOOP) {
+                startCarActor(id);
+            }
+            return id;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Next value of the seeded generator in [origin, bound); the caller holds the write lock
+    private int nextRandomInt(int origin, int bound) {
+        long z = randomState += 0x9E3779B97F4A7C15L;  // SplitMix64
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        z ^= z >>> 31;
+        long range = (long) bound - origin;
+        return (int) (origin + ((z >>> 32) * range >>> 32));  // Top 32 bits scaled to the range
+    }
+
+    // Add a car at the start of a route over the attached network; returns its car id
+    public int addCar(int baseSpeed, int[] route) {
+        writeLock.lock();
+        try {
+            if (network == null) {
+                throw new IllegalStateException("No road network attached");
+            }
+            if (!network.isPath(route)) {
+                throw new IllegalArgumentException("Route is not a connected path of network edges");
+            }
+            if (recording != null) {
+                throw new IllegalStateException("Network runs cannot be recorded");
+            }
+            int id = cars.addOnRoute(baseSpeed, 0, route);
+            metrics.carAdded();
+            if (FlightEvents.recording) cars.addedNanos[id] = System.nanoTime();
+            if (segmentStepper != null) segmentStepper.invalidate();
+            if (running && mode != ExecutionMode.STEP_LOOP) {
+                startCarActor(id);
+            }
+            return id;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Drive cars over a road network; creates one light (positioned at its node id) per network signal
+    public void attachNetwork(RoadNetwork network) {
+        writeLock.lock();
+        try {
+            if (this.network != null) {
+                throw new IllegalStateException("A road network is already attached");
+            }
+            this.network = network;
+            for (int signal = 0; signal < network.signalCount(); signal++) {
+                TrafficLightThread light = new TrafficLightThread(signal, SignalPlan.DEFAULT.withOffset(clock.now()));
+                light.syncTo(clock.now());  // Starts its cycle (on RED) now
+                light.setJournal(journal);
+                light.setMetrics(metrics);
+                signals.add(light);
+                allLights.add(light);
+                if (paused) light.pause();
+                if (running && mode != ExecutionMode.STEP_LOOP) {
+                    light.start(scheduler, clock);
+                }
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Remove a car from the simulation; its id may be reused by a later addCar
+    public void removeCar(int carId) {
+        writeLock.lock();
+        try {
+            int flags = cars.isActive(carId) ? cars.flags[carId] : 0;  // remove() rejects a missing car
+            TrafficLightThread queuedAt = cars.isActive(carId) ? cars.stateLight[carId] : null;
+            cars.remove(carId);
+            metrics.carRemoved(flags);
+            if ((flags & CarStore.STOPPED) != 0 && queuedAt != null) queuedAt.stats().carLeftQueue();
+            record(RunRecording.Command.REMOVE_CAR, carId, 0);
+            if (segmentStepper != null) segmentStepper.invalidate();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Add a traffic light at the given track position, starting its cycle (on RED) now; returns its light id
+    public int addLight(int position) {
+        return addLight(position, SignalPlan.DEFAULT, true);
+    }
+
+    // Add a traffic light with its own phase lengths in simulated seconds, starting its cycle now; returns its id
+    public int addLight(int position, double greenSeconds, double yellowSeconds, double redSeconds) {
+        return addLight(position, new SignalPlan(greenSeconds, yellowSeconds, redSeconds, 0), true);
+    }
+
+    // Add a traffic light that follows a signal plan (its offset is a simulated time); returns its light id
+    public int addLight(int position, SignalPlan plan) {
+        return addLight(position, plan, false);
+    }
+
+    // Add a light; startNow moves the plan's cycle to start at the current simulated time
+    private int addLight(int position, SignalPlan plan, boolean startNow) {
+        writeLock.lock();
+        try {
+            double now = clock.now();
+            if (startNow) {
+                plan = plan.withOffset(now);  // Read under the lock, so a replay at the same tick gets the same plan
+            }
+            TrafficLightThread light = new TrafficLightThread(position, plan);
+            light.syncTo(now);
+            light.setJournal(journal);
+            light.setMetrics(metrics);
+            light.lightId = lights.size();
+            lights.add(light);
+            allLights.add(light);
+            rebuildIntersectionIndex();
+            if (recording != null) {
+                if (plan.hasDefaultPhases() && plan.offset() == now) {
+                    recording.record(tickCount, RunRecording.Command.ADD_LIGHT, position, 0);
+                } else {
+                    recording.recordLight(tickCount, position, plan);  // Its own phases or offset: the whole plan
+                }
+            }
+            if (paused) light.pause();
+            if (running && mode != ExecutionMode.STEP_LOOP) {
+                light.start(scheduler, clock);
+            }
+            return lights.size() - 1;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Rebuild the sorted index and re-seat every car's cursor on the next light ahead of it
+    private void rebuildIntersectionIndex() {
+        int[] positions = new int[lights.size()];
+        for (int id = 0; id < positions.length; id++) {
+            positions[id] = lights.get(id).getPosition();
+        }
+        intersections = IntersectionIndex.of(positions);
+        for (int id = 0; id < cars.highWater(); id++) {
+            cars.lightCursor[id] = intersections.ceiling(cars.position[id] - CLEARANCE_DISTANCE);
+        }
+    }
+
+    // Advance every light and car by dt simulated seconds
+    public void step(double dt) {
+        writeLock.lock();
+        try {
+            long started = System.nanoTime();  // Timed under the lock: the work itself, not the wait for it
+            FlightEvents.EngineTick tickEvent = FlightEvents.recording ? FlightEvents.beginTick() : null;
+            stepTime = clock.now();  // Read once here and shared by every worker of the step
+            if (nextDeparture < departureCount) {
+                releaseDepartures(stepTime);  // Recorded as ADD_CAR at this tick, so a replay needs no schedule
+            }
+            for (int i = 0; i < allLights.size(); i++) {  // Indexed loops: no iterator per tick
+                allLights.get(i).advanceTo(stepTime + dt);  // Lights lead the cars by one step, as they always have
+            }
+            cars.popFinishedLeaders();
+            cars.saveLastState();  // Every car sees its leader as it was at the start of this step
+            int end = cars.highWater();
+            if (segmentStepper != null) {
+                segmentStepper.step(dt);
+            } else {
+                for (int id = 0; id < end; id++) {
+                    int flags = cars.flags[id];
+                    if ((flags & CarStore.ACTIVE) != 0 && (flags & CarStore.FINISHED) == 0) {
+                        moveCar(id, dt);
+                    }
+                }
+            }
+            clock.advance(dt);
+            tickCount++;
+            if (recording != null) {
+                foldTrajectory(end);
+            }
+            metrics.recordTick(System.nanoTime() - started);
+            if (tickEvent != null) {
+                FlightEvents.endTick(tickEvent, tickCount, cars.size(), parallelism());
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Step cars on n fork-join workers (1 = the sequential loop)
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1: " + parallelism);
+        }
+        writeLock.lock();
+        try {
+            if (segmentStepper != null) {
+                segmentStepper.shutdown();
+            }
+            segmentStepper = parallelism == 1 ? null : new SegmentStepper(this, cars, parallelism);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Number of workers stepping cars
+    public int parallelism() {
+        readLock.lock();
+        try {
+            return segmentStepper == null ? 1 : segmentStepper.segmentCount() / SegmentStepper.SEGMENTS_PER_WORKER;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    // Times the segment boundaries were moved to follow car density (0 when sequential)
+    public long segmentRebalances() {
+        readLock.lock();
+        try {
+            return segmentStepper == null ? 0 : segmentStepper.rebalances();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    // Largest segment's car count over the mean after the last step (1.0 is perfectly balanced)
+    public double segmentImbalance() {
+        readLock.lock();
+        try {
+            return segmentStepper == null ? 1.0 : segmentStepper.lastImbalance();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    // Fold every car's position and flags into the trajectory digest (caller holds the write lock)
+    private void foldTrajectory(int end) {
+        long hash = trajectoryDigest;
+        for (int id = 0; id < end; id++) {
+            hash = (hash ^ Double.doubleToRawLongBits(cars.position[id])) * 0x100000001B3L;
+            hash = (hash ^ cars.flags[id]) * 0x100000001B3L;
+        }
+        trajectoryDigest = hash;
+    }
+
+    // Start capturing external commands into an empty recording; the engine must still be empty at tick 0
+    public void startRecording(RunRecording recording) {
+        writeLock.lock();
+        try {
+            if (mode != ExecutionMode.STEP_LOOP) {
+                throw new IllegalStateException("Only STEP_LOOP runs are deterministic and can be recorded");
+            }
+            if (tickCount != 0 || cars.highWater() != 0 || !lights.isEmpty()) {
+                throw new IllegalStateException("Recording must start before any car or light is added");
+            }
+            if (recording.seed() != seed) {
+                throw new IllegalArgumentException("Recording seed " + recording.seed() + " != engine seed " + seed);
+            }
+            this.recording = recording;
+            this.trajectoryDigest = 0xCBF29CE484222325L;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Stop recording; the recording keeps the final tick and trajectory digest
+    public RunRecording stopRecording() {
+        writeLock.lock();
+        try {
+            RunRecording finished = recording;
+            if (finished != null) {
+                finished.finish(tickCount, trajectoryDigest);
+                recording = null;
+            }
+            return finished;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Append a command to the recording, if any (caller holds the write lock)
+    private void record(RunRecording.Command command, int first, int second) {
+        if (recording != null) {
+            recording.record(tickCount, command, first, second);
+        }
+    }
+
+    // Copy the whole state into a checkpoint between two steps; returns the nanoseconds the engine was held for it
+    long captureCheckpoint(Checkpoint into) {
+        int carSlots;
+        int laneSlots;
+        int lightCount;
+        readLock.lock();
+        try {
+            carSlots = cars.highWater();
+            laneSlots = cars.laneSlots();
+            lightCount = lights.size();
+        } finally {
+            readLock.unlock();
+        }
+        into.reserve(carSlots, laneSlots, lightCount);  // Allocated outside the lock: steps wait only for copies
+        writeLock.lock();
+        try {
+            long started = System.nanoTime();
+            if (mode != ExecutionMode.STEP_LOOP) {
+                throw new IllegalStateException("Only STEP_LOOP runs can be checkpointed");
+            }
+            if (network != null) {
+                throw new IllegalStateException("Network runs cannot be checkpointed");
+            }
+            into.tick = tickCount;
+            into.simTime = clock.now();
+            into.seed = seed;
+            into.randomState = randomState;
+            into.carsFinished = metrics.carsFinished();
+            cars.captureInto(into);
+            int count = lights.size();
+            int[] positions = into.ints(Checkpoint.LIGHT_POSITION, count);
+            double[] green = into.doubles(Checkpoint.LIGHT_GREEN, count);
+            double[] yellow = into.doubles(Checkpoint.LIGHT_YELLOW, count);
+            double[] red = into.doubles(Checkpoint.LIGHT_RED, count);
+            double[] offsets = into.doubles(Checkpoint.LIGHT_OFFSET, count);
+            for (int id = 0; id < count; id++) {
+                TrafficLightThread light = lights.get(id);
+                positions[id] = light.getPosition();
+                green[id] = light.phaseLength(TrafficLightColor.GREEN);
+                yellow[id] = light.phaseLength(TrafficLightColor.YELLOW);
+                red[id] = light.phaseLength(TrafficLightColor.RED);
+                offsets[id] = light.plan().offset();  // With the clock, all the light's state
+            }
+            into.share(Checkpoint.DEPARTURE_SPEED, departureSpeeds, departureCount);  // Not written after scheduleCars
+            into.share(Checkpoint.DEPARTURE_LANE, departureLanes, departureCount);
+            into.share(Checkpoint.DEPARTURE_TIME, departureTimes, departureCount);
+            into.nextDeparture = nextDeparture;
+            return System.nanoTime() - started;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // A new STEP_LOOP engine in the state a checkpoint was taken in; it continues exactly as the original would have
+    static SimulationEngine fromCheckpoint(Checkpoint from) {
+        SimulationEngine engine = new SimulationEngine(ExecutionMode.STEP_LOOP, from.highWater, from.seed);
+        engine.restore(from);
+        return engine;
+    }
+
+    // Load a checkpoint into this empty engine
+    private void restore(Checkpoint from) {
+        writeLock.lock();
+        try {
+            int[] positions = (int[]) from.columns[Checkpoint.LIGHT_POSITION];
+            double[] green = (double[]) from.columns[Checkpoint.LIGHT_GREEN];
+            double[] yellow = (double[]) from.columns[Checkpoint.LIGHT_YELLOW];
+            double[] red = (double[]) from.columns[Checkpoint.LIGHT_RED];
+            double[] offsets = (double[]) from.columns[Checkpoint.LIGHT_OFFSET];
+            for (int id = 0; id < from.lengths[Checkpoint.LIGHT_POSITION]; id++) {
+                TrafficLightThread light = new TrafficLightThread(positions[id],
+                        new SignalPlan(green[id], yellow[id], red[id], offsets[id]));
+                light.syncTo(from.simTime);
+                light.setJournal(journal);
+                light.setMetrics(metrics);
+                light.lightId = id;
+                lights.add(light);
+                allLights.add(light);
+            }
+            rebuildIntersectionIndex();  // Before the cars, so their saved cursors are kept
+            cars.restoreFrom(from, lights);
+
+            long active = 0;
+            long stopped = 0;
+            for (int id = 0; id < from.highWater; id++) {
+                int flags = cars.flags[id];
+                if ((flags & CarStore.ACTIVE) == 0 || (flags & CarStore.FINISHED) != 0) continue;
+                active++;
+                if ((flags & CarStore.STOPPED) != 0) {
+                    stopped++;
+                    if (cars.stateLight[id] != null) cars.stateLight[id].stats().carStopped();  // Rebuild the queues
+                }
+            }
+            metrics.restoreCars(active, stopped, from.carsFinished);
+
+            departureCount = from.lengths[Checkpoint.DEPARTURE_SPEED];
+            if (departureCount > 0) {
+                departureSpeeds = (int[]) from.columns[Checkpoint.DEPARTURE_SPEED];
+                departureLanes = (int[]) from.columns[Checkpoint.DEPARTURE_LANE];
+                departureTimes = (double[]) from.columns[Checkpoint.DEPARTURE_TIME];
+                nextDeparture = from.nextDeparture;
+            }
+            randomState = from.randomState;
+            tickCount = from.tick;
+            clock.restore(from.simTime);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Move one car by dt simulated seconds from its own actor; returns the RED or YELLOW light that limited it, or null
+    TrafficLightThread stepCar(int carId, double dt) {
+        readLock.lock();
+        try {
+            long started = System.nanoTime();
+            TrafficLightThread limiting = moveCar(carId, dt);
+            metrics.recordTick(System.nanoTime() - started);  // An actor's tick is one car's step
+            return limiting;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    // Move one car by dt simulated seconds (caller holds the lock, or is a segment worker inside a locked step; only
+    // writes this car's slots)
+    TrafficLightThread moveCar(int carId, double dt) {
+        if (!cars.isActive(carId) || cars.hasFlag(carId, CarStore.FINISHED)) {
+            return null;
+        }
+        if (cars.edge[carId] != CarStore.NO_EDGE) {
+            return moveNetworkCar(carId, dt);
+        }
+        double current = cars.position[carId];  // Current car position
+        int before = cars.flags[carId];          // Flags before this move, to detect transitions
+
+        TrafficLightThread limiting = null;  // Light that stopped or slowed the car
+        boolean red = false;
+        boolean yellow = false;
+
+        // Skip the cursor past intersections the car has cleared, counting the car through each of them
+        IntersectionIndex index = intersections;
+        int cursor = index.skipCleared(cars.lightCursor[carId], current, CLEARANCE_DISTANCE);
+        for (int slot = cars.lightCursor[carId]; slot < cursor; slot++) {
+            lights.get(index.lightId(slot)).stats().carPassed();
+        }
+        cars.lightCursor[carId] = cursor;
+
+        // Check the intersections whose window (~100m before, 10m after) contains the car
+        int end = index.windowEnd(cursor, current, APPROACH_DISTANCE);
+        for (int slot = cursor; slot < end; slot++) {
+            TrafficLightThread light = lights.get(index.lightId(slot));
+            TrafficLightColor color = light.getColor();
+            if (color == TrafficLightColor.RED) {
+                red = true;
+                limiting = light;
+            } else if (color == TrafficLightColor.YELLOW && !red) {
+                yellow = true;
+                limiting = light;
+            }
+        }
+
+        int after;
+        if (red) {
+            cars.speed[carId] = 0;  // Stop on a dime
+            after = CarStore.ACTIVE | CarStore.STOPPED;
+        } else {
+            // If yellow, drop to half speed at once; then follow the car ahead
+            double desired = yellow ? cars.baseSpeed[carId] / 2.0 : cars.baseSpeed[carId];
+            double next = Math.min(followLeader(carId, current, desired, dt), TRACK_LENGTH);
+            cars.position[carId] = next;
+            if (next >= TRACK_LENGTH) {
+                cars.speed[carId] = 0;  // Display speed as 0 at the end
+                after = CarStore.ACTIVE | CarStore.FINISHED;
+            } else {
+                after = yellow ? CarStore.ACTIVE | CarStore.SLOWED : CarStore.ACTIVE;
+            }
+        }
+        cars.flags[carId] = after;
+        if (after != before) {
+            metrics.carChanged(before, after);
+            journalTransition(carId, before, after, limiting);
+            timedTransition(carId, before, after, limiting);
+        }
+        return limiting;
+    }
+
+    // IDM step towards the desired speed behind the lane leader; sets the car's speed and returns its next position
+    private double followLeader(int carId, double current, double desired, double dt) {
+        double v = Math.min(cars.speed[carId], desired);
+        double gap = Double.POSITIVE_INFINITY;
+        double approachRate = 0;
+        double limit = Double.POSITIVE_INFINITY;  // Never closer than bumper to bumper
+        // The step loop reads the start-of-step picture (finished heads were popped before it); actors read it live
+        boolean stepped = mode == ExecutionMode.STEP_LOOP;
+        int leader = stepped ? cars.leader[carId] : cars.leaderOf(carId);
+        if (leader != CarStore.NO_CAR) {
+            double leaderPosition = stepped ? cars.lastPosition[leader] : cars.position[leader];
+            double leaderSpeed = stepped ? cars.lastSpeed[leader] : cars.speed[leader];
+            limit = leaderPosition - IntelligentDriverModel.CAR_LENGTH;
+            gap = limit - current;
+            approachRate = v - leaderSpeed;
+        }
+        double a = IntelligentDriverModel.acceleration(v, desired, gap, approachRate);
+        double next = current + IntelligentDriverModel.distance(v, a, dt);
+        if (next > limit) {
+            next = Math.max(current, limit);
+            cars.speed[carId] = 0;  // Closed up to the leader
+        } else {
+            cars.speed[carId] = IntelligentDriverModel.nextSpeed(v, a, dt);
+        }
+        return next;
+    }
+
+    // Move a car along its network route (same locking rules as moveCar; only writes this car's slots)
+    private TrafficLightThread moveNetworkCar(int carId, double dt) {
+        int[] carRoute = cars.route[carId];
+        int step = cars.routeStep[carId];
+        int edge = carRoute[step];
+        int length = network.length(edge);
+        double offset = cars.position[carId];  // Meters along the current edge
+        int before = cars.flags[carId];
+
+        // Only the signal at the end of the current edge matters, from APPROACH_DISTANCE before its stop line
+        TrafficLightThread limiting = null;
+        TrafficLightColor color = TrafficLightColor.GREEN;
+        int signal = network.signal(edge);
+        if (signal != RoadNetwork.NO_SIGNAL && offset >= length - APPROACH_DISTANCE) {
+            TrafficLightThread light = signals.get(signal);
+            color = light.getColor();
+            if (color != TrafficLightColor.GREEN) limiting = light;
+        }
+
+        int after;
+        if (color == TrafficLightColor.RED) {
+            cars.speed[carId] = 0;  // Stop on a dime
+            after = CarStore.ACTIVE | CarStore.STOPPED;
+        } else {
+            double speed = color == TrafficLightColor.YELLOW ? cars.baseSpeed[carId] / 2.0 : cars.baseSpeed[carId];
+            double next = offset + speed * dt;
+            // Carry the distance past the end of an edge onto the next edge of the route
+            while (next >= length && step + 1 < carRoute.length) {
+                int crossed = network.signal(edge);  // Signal at the end of the edge just left
+                if (crossed != RoadNetwork.NO_SIGNAL) signals.get(crossed).stats().carPassed();
+                next -= length;
+                edge = carRoute[++step];
+                length = network.length(edge);
+            }
+            if (next >= length) {
+                next = length;
+                cars.speed[carId] = 0;  // End of the route
+                after = CarStore.ACTIVE | CarStore.FINISHED;
+            } else {
+                cars.speed[carId] = speed;
+                after = color == TrafficLightColor.YELLOW ? CarStore.ACTIVE | CarStore.SLOWED : CarStore.ACTIVE;
+            }
+            cars.position[carId] = next;
+            cars.edge[carId] = edge;
+            cars.routeStep[carId] = step;
+        }
+        cars.flags[carId] = after;
+        if (after != before) {
+            metrics.carChanged(before, after);
+            journalTransition(carId, before, after, limiting);
+            timedTransition(carId, before, after, limiting);
+        }
+        return limiting;
+    }
+
+    // Record the event matching a change of a car's flags
+    private void journalTransition(int carId, int before, int after, TrafficLightThread limiting) {
+        EventJournal sink = journal;
+        if (!sink.isEnabled()) {
+            return;
+        }
+        int position = (int) cars.position[carId];
+        int lightPosition = limiting != null ? limiting.getPosition() : -1;
+        if ((after & CarStore.STOPPED) != 0) {
+            sink.record(JournalEvent.CAR_STOPPED, tickCount, carId, position, lightPosition);
+        } else if ((before & CarStore.STOPPED) != 0) {
+            sink.record(JournalEvent.CAR_RESUMED, tickCount, carId, position, lightPosition);
+        }
+        if ((after & CarStore.SLOWED) != 0 && (before & CarStore.SLOWED) == 0) {
+            sink.record(JournalEvent.CAR_SLOWED, tickCount, carId, position, lightPosition);
+        }
+        if ((after & CarStore.FINISHED) != 0) {
+            sink.record(JournalEvent.CAR_FINISHED, tickCount, carId, position, -1);
+        }
+    }
+
+    // Lock-free counters of this engine's activity (published over JMX by SimulationMonitor)
+    public SimulationMetrics metrics() {
+        return metrics;
+    }
+
+    // Close a stop or slow-down that ended into its light's statistics (and a flight event), and note one that began
+    private void timedTransition(int carId, int before, int after, TrafficLightThread limiting) {
+        boolean flight = FlightEvents.recording;
+        long wallNow = flight ? System.nanoTime() : 0;
+        int ended = before & (CarStore.STOPPED | CarStore.SLOWED);
+        int begun = after & (CarStore.STOPPED | CarStore.SLOWED);
+        if (ended != begun) {
+            double now = mode == ExecutionMode.STEP_LOOP ? stepTime : clock.now();
+            TrafficLightThread light = cars.stateLight[carId];
+            if (ended != 0 && light != null) {
+                double lasted = now - cars.stateSince[carId];
+                long since = cars.stateNanos[carId];  // 0: the state began before the recorder started
+                if (ended == CarStore.STOPPED) {
+                    light.stats().carResumed(lasted);
+                    if (flight && since != 0) FlightEvents.carStopped(carId, light.getPosition(), wallNow - since);
+                } else {
+                    light.stats().carSlowed(lasted);
+                    if (flight && since != 0) FlightEvents.carSlowed(carId, light.getPosition(), wallNow - since);
+                }
+            }
+            if (begun == CarStore.STOPPED && limiting != null) limiting.stats().carStopped();
+            cars.stateSince[carId] = now;
+            cars.stateLight[carId] = begun != 0 ? limiting : null;
+            cars.stateNanos[carId] = begun != 0 ? wallNow : 0;
+        }
+        if (flight && (after & CarStore.FINISHED) != 0 && (before & CarStore.FINISHED) == 0) {
+            long added = cars.addedNanos[carId];
+            int edge = cars.edge[carId];  // A network car's position is an edge offset: report the node it reached
+            int position = edge == CarStore.NO_EDGE ? (int) cars.position[carId] : network.target(edge);
+            FlightEvents.carFinished(carId, position, added != 0 ? wallNow - added : 0);
+        }
+    }
+
+    // Statistics of a track light (by light id)
+    public IntersectionStats intersectionStats(int lightId) {
+        readLock.lock();
+        try {
+            return lights.get(lightId).stats();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    // Simulated seconds until a track light turns GREEN (0 while it is GREEN), from its plan: no polling needed
+    public double timeUntilGreen(int lightId) {
+        readLock.lock();
+        try {
+            return lights.get(lightId).timeUntilGreen(clock.now());
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    // Simulated time of the next phase change of any light, or infinity without lights; until then no light changes
+    public double nextSignalChange() {
+        readLock.lock();
+        try {
+            double now = clock.now();
+            double next = Double.POSITIVE_INFINITY;
+            for (int i = 0; i < allLights.size(); i++) {
+                next = Math.min(next, allLights.get(i).nextChange(now));
+            }
+            return next;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    // Statistics of a network signal
+    public IntersectionStats signalStats(int signal) {
+        readLock.lock();
+        try {
+            return signals.get(signal).stats();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    // Statistics of every light and signal merged into one
+    public IntersectionStats totalIntersectionStats() {
+        readLock.lock();
+        try {
+            IntersectionStats total = new IntersectionStats(-1);
+            for (int i = 0; i < allLights.size(); i++) {
+                total.mergeFrom(allLights.get(i).stats());
+            }
+            return total;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    // Send state transitions of cars and lights to the journal (EventJournal.DISABLED turns it off)
+    public void attachJournal(EventJournal journal) {
+        writeLock.lock();
+        try {
+            this.journal = journal;
+            for (int i = 0; i < allLights.size(); i++) {
+                allLights.get(i).setJournal(journal);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Start advancing the simulation in the configured mode
+    public void start() {
+        writeLock.lock();
+        try {
+            if (running) {
+                return;
+            }
+            running = true;
+            if (!paused) clock.start();
+            if (mode == ExecutionMode.STEP_LOOP) {
+                startThread(this::runLoop, "simulation-loop");
+            } else {
+                for (TrafficLightThread light : allLights) {
+                    light.start(scheduler, clock);
+                }
+                for (int id = 0; id < cars.highWater(); id++) {
+                    if (cars.isActive(id)) startCarActor(id);
+                }
+                armDepartureTimer();
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Pause the simulation
+    public void pause() {
+        writeLock.lock();
+        try {
+            paused = true;
+            record(RunRecording.Command.PAUSE, 0, 0);
+            clock.pause();
+            for (TrafficLightThread light : allLights) light.pause();
+            for (CarThread actor : carActors) actor.pause();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Resume the simulation
+    public void resume() {
+        writeLock.lock();
+        try {
+            paused = false;
+            record(RunRecording.Command.RESUME, 0, 0);
+            if (running) clock.start();
+            for (TrafficLightThread light : allLights) light.resume();
+            for (CarThread actor : carActors) actor.resume();
+            resumed.signalAll(); // Wake up the loop thread if it's paused
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Stop every thread started by the engine
+    public void stop() {
+        writeLock.lock();
+        try {
+            running = false;
+            clock.pause();
+            if (segmentStepper != null) {
+                segmentStepper.shutdown();
+                segmentStepper = null;
+            }
+            for (TrafficLightThread light : allLights) {
+                light.stop();
+            }
+            if (departureTimer != null) {
+                departureTimer.cancel();
+                departureTimer = null;
+            }
+            for (Thread thread : threads) {
+                thread.interrupt();
+            }
+            threads.clear();
+            resumed.signalAll();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Change how many simulated seconds pass per wall second (SimulationClock.UNTHROTTLED for as fast as possible)
+    public void setTimeScale(double timeScale) {
+        writeLock.lock();
+        try {
+            boolean timersArmed = running && !paused && mode != ExecutionMode.STEP_LOOP;
+            if (timersArmed) {
+                for (TrafficLightThread light : allLights) light.pause();  // Keep each phase's remaining simulated time
+            }
+            clock.setTimeScale(timeScale);
+            if (timersArmed) {
+                for (TrafficLightThread light : allLights) light.resume(); // Re-arm at the new pace
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Fixed-timestep loop: one step per TICK_SECONDS of simulated time, paced to wall time by the clock's scale
+    private void runLoop() {
+        long nextTick = System.nanoTime();
+
+        while (true) {
+            writeLock.lock();
+            try {
+                // If paused, wait until resume() or stop() is called
+                while (paused && running) {
+                    try {
+                        resumed.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    nextTick = System.nanoTime(); // Do not catch up on paused time
+                }
+                if (!running) {
+                    return;
+                }
+            } finally {
+                writeLock.unlock();
+            }
+
+            step(TICK_SECONDS);
+
+            long tickNanos = clock.wallNanosFor(TICK_SECONDS);  // Re-read so scale changes apply at once
+            if (tickNanos == 0) {
+                Thread.yield();  // Unthrottled: let observers take the read lock between steps
+                nextTick = System.nanoTime();
+                continue;
+            }
+            nextTick += tickNanos;
+            long sleepNanos = nextTick - System.nanoTime();
+            if (sleepNanos > 0) {
+                try {
+                    Thread.sleep(sleepNanos / 1_000_000, (int) (sleepNanos % 1_000_000));
+                } catch (InterruptedException e) {
+                    return;  // Exit loop on interruption
+                }
+            } else if (-sleepNanos > 10 * tickNanos) {
+                nextTick = System.nanoTime(); // Fell far behind: drop the backlog instead of spiraling
+            }
+        }
+    }
+
+    // Start one CarThread for the given car
+    private void startCarActor(int carId) {
+        CarThread actor = new CarThread(this, carId);
+        if (paused) actor.pause();
+        carActors.add(actor);
+        startThread(actor, "car-" + carId);
+    }
+
+    // Start and remember a thread so stop() can interrupt it; car actors use virtual threads in VIRTUAL_THREADS mode
+    private void startThread(Runnable task, String name) {
+        Thread thread = mode == ExecutionMode.VIRTUAL_THREADS
+                ? VirtualThreads.newThread(task, name)
+                : new Thread(task, name);
+        threads.add(thread);
+        thread.start();
+    }
+
+    // Copy the current state into a reusable snapshot for observers
+    public void snapshot(EngineSnapshot into) {
+        readLock.lock();
+        try {
+            int carSlots = cars.highWater();
+            into.ensureCapacity(carSlots, lights.size());
+            into.tick = tickCount;
+            into.simTime = clock.now();
+            into.carCount = carSlots;
+            System.arraycopy(cars.position, 0, into.carPositions, 0, carSlots);
+            System.arraycopy(cars.speed, 0, into.carSpeeds, 0, carSlots);
+            System.arraycopy(cars.flags, 0, into.carFlags, 0, carSlots);
+            System.arraycopy(cars.edge, 0, into.carEdges, 0, carSlots);
+            into.lightCount = lights.size();
+            for (int id = 0; id < lights.size(); id++) {
+                TrafficLightThread light = lights.get(id);
+                into.lightPositions[id] = light.getPosition();
+                into.lightColors[id] = light.getColor();
+            }
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    // Read-only accessors
+    // Removed cars count as finished so their actors exit
+    public boolean isCarFinished(int carId) {
+        readLock.lock();
+        try {
+            return !cars.isActive(carId) || cars.hasFlag(carId, CarStore.FINISHED);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    // Scheduled cars that have not entered yet count as unfinished
+    public boolean allCarsFinished() {
+        readLock.lock();
+        try {
+            if (nextDeparture < departureCount) return false;
+            for (int id = 0; id < cars.highWater(); id++) {
+                if (cars.isActive(id) && !cars.hasFlag(id, CarStore.FINISHED)) return false;
+            }
+            return true;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    public int carCount() {
+        readLock.lock();
+        try {
+            return cars.size();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    // Heap bytes held by the car columns
+    public long carStoreBytes() {
+        readLock.lock();
+        try {
+            return cars.footprintBytes();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    // Track light by light id (its color can be read or awaited without the engine lock)
+    public TrafficLightThread light(int lightId) {
+        readLock.lock();
+        try {
+            return lights.get(lightId);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    // Road network cars drive on, or null
+    public RoadNetwork network() {
+        readLock.lock();
+        try {
+            return network;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    // Current color of a network signal
+    public TrafficLightColor signalColor(int signal) {
+        readLock.lock();
+        try {
+            return signals.get(signal).getColor();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    public int lightCount() {
+        readLock.lock();
+        try {
+            return lights.size();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    public long tickCount() {
+        readLock.lock();
+        try {
+            return tickCount;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    public double simTime() {
+        return clock.now();
+    }
+
+    // Simulated time shared by the loop, the actors and the GUI clock
+    public SimulationClock clock() {
+        return clock;
+    }
+
+    public long seed() {
+        return seed;
+    }
+
+    public boolean isPaused() {
+        return paused;
+    }
+
+    // Shared timer for light phases, the clock and delayed actions
+    public SimulationScheduler scheduler() {
+        return scheduler;
+    }
+
+    public ExecutionMode mode() {
+        return mode;
+    }
+}
@@ -0,0 +1,98 @@
+/**
+ CMSC 335
+ Project 4
+ Class Descriptions:
+ SimulationMetrics is where the engine and the GUI record what they are doing while they run: how long each tick
+ takes, how long a frame waits in the EDT queue, how many cars are driving, stopped or finished, and how many times
+ the lights have changed. Every recorder is a LongAdder or a LatencyHistogram, so recording never takes a lock, never
+ allocates, and never makes the engine's own lock wait longer; segment workers record in parallel without
+ contending on one cache line. The counters are read by SimulationMonitor, which publishes them over JMX.
+ */
+
+package engine;
+
+import java.util.concurrent.atomic.LongAdder;
+
+public class SimulationMetrics {
+
+    private final LatencyHistogram tickNanos = new LatencyHistogram();  // One engine step, or one car actor step
+    private final LatencyHistogram edtLagNanos = new LatencyHistogram(); // invokeLater submit to run on the EDT
+    private final LongAdder carsActive = new LongAdder();    // Added, not finished, not removed
+    private final LongAdder carsStopped = new LongAdder();   // Currently waiting at a red light
+    private final LongAdder carsFinished = new LongAdder();  // Reached the end, ever
+    private final LongAdder lightTransitions = new LongAdder(); // Phase changes of every light, ever
+
+    // Record the duration of one tick
+    void recordTick(long nanos) {
+        tickNanos.record(nanos);
+    }
+
+    // Record how long a task posted with invokeLater waited before the EDT ran it
+    public void recordEdtLag(long nanos) {
+        edtLagNanos.record(nanos);
+    }
+
+    // A car was added
+    void carAdded() {
+        carsActive.increment();
+    }
+
+    // A car with the given flags was removed
+    void carRemoved(int flags) {
+        if ((flags & CarStore.FINISHED) == 0) carsActive.decrement();
+        if ((flags & CarStore.STOPPED) != 0) carsStopped.decrement();
+    }
+
+    // A car's flags changed during a move
+    void carChanged(int before, int after) {
+        int stoppedDelta = (after & CarStore.STOPPED) - (before & CarStore.STOPPED);
+        if (stoppedDelta > 0) carsStopped.increment();
+        else if (stoppedDelta < 0) carsStopped.decrement();
+        if ((after & CarStore.FINISHED) != 0 && (before & CarStore.FINISHED) == 0) {
+            carsActive.decrement();
+            carsFinished.increment();
+        }
+    }
+
+    // A light changed phase
+    void lightChanged() {
+        lightTransitions.increment();
+    }
+
+    // Start from the car counts of a restored checkpoint
+    void restoreCars(long active, long stopped, long finished) {
+        carsActive.add(active);
+        carsStopped.add(stopped);
+        carsFinished.add(finished);
+    }
+
+    // Tick durations in nanoseconds
+    public LatencyHistogram tickNanos() {
+        return tickNanos;
+    }
+
+    // EDT queue lag in nanoseconds
+    public LatencyHistogram edtLagNanos() {
+        return edtLagNanos;
+    }
+
+    // Cars still driving (moving, slowed or stopped)
+    public long carsActive() {
+        return carsActive.sum();
+    }
+
+    // Cars waiting at a red light
+    public long carsStopped() {
+        return carsStopped.sum();
+    }
+
+    // Cars that reached the end since the engine was created
+    public long carsFinished() {
+        return carsFinished.sum();
+    }
+
+    // Light phase changes since the engine was created
+    public long lightTransitions() {
+        return lightTransitions.sum();
+    }
+}
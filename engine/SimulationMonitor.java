@@ -0,0 +1,163 @@
+/**
+ CMSC 335
+ Project 4
+ Class Descriptions:
+ SimulationMonitor publishes an engine's SimulationMetrics as the JMX MBean trafficsim:type=Simulation, so a running
+ simulator (GUI or headless) can be watched from JConsole or VisualVM without touching its output. The percentiles
+ are read from the lock-free histograms; the rates (light transitions and allocated bytes per second) are the change
+ since the previous read of that attribute divided by the wall time between the two reads, so the console's polling
+ interval sets the window. Live threads and allocated bytes come from the JVM's ThreadMXBean; only platform threads
+ are counted, virtual car actors are not. Registering a second monitor replaces the first.
+ */
+
+package engine;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+public class SimulationMonitor implements SimulationMonitorMBean {
+
+    public static final String OBJECT_NAME = "trafficsim:type=Simulation";
+
+    private final SimulationEngine engine;
+    private final SimulationMetrics metrics;
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private final RateSampler lightRate = new RateSampler();
+    private final RateSampler allocationRate = new RateSampler();
+
+    // Constructor: expose the given engine's metrics
+    public SimulationMonitor(SimulationEngine engine) {
+        this.engine = engine;
+        this.metrics = engine.metrics();
+    }
+
+    // Register a monitor for the engine with the platform MBean server, replacing any earlier one
+    public static SimulationMonitor register(SimulationEngine engine) {
+        SimulationMonitor monitor = new SimulationMonitor(engine);
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(monitor, name);
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot register " + OBJECT_NAME, e);
+        }
+        return monitor;
+    }
+
+    // Engine being monitored
+    public SimulationEngine engine() {
+        return engine;
+    }
+
+    @Override
+    public double getTickP50Micros() {
+        return metrics.tickNanos().percentile(0.50) / 1000.0;
+    }
+
+    @Override
+    public double getTickP99Micros() {
+        return metrics.tickNanos().percentile(0.99) / 1000.0;
+    }
+
+    @Override
+    public double getTickP999Micros() {
+        return metrics.tickNanos().percentile(0.999) / 1000.0;
+    }
+
+    @Override
+    public double getTickMaxMicros() {
+        return metrics.tickNanos().max() / 1000.0;
+    }
+
+    @Override
+    public long getTickCount() {
+        return metrics.tickNanos().count();
+    }
+
+    @Override
+    public long getCarsActive() {
+        return metrics.carsActive();
+    }
+
+    @Override
+    public long getCarsStopped() {
+        return metrics.carsStopped();
+    }
+
+    @Override
+    public long getCarsFinished() {
+        return metrics.carsFinished();
+    }
+
+    @Override
+    public double getLightTransitionsPerSecond() {
+        return lightRate.perSecond(metrics.lightTransitions());
+    }
+
+    @Override
+    public double getEdtLagP50Micros() {
+        return metrics.edtLagNanos().percentile(0.50) / 1000.0;
+    }
+
+    @Override
+    public double getEdtLagP99Micros() {
+        return metrics.edtLagNanos().percentile(0.99) / 1000.0;
+    }
+
+    @Override
+    public double getEdtLagP999Micros() {
+        return metrics.edtLagNanos().percentile(0.999) / 1000.0;
+    }
+
+    @Override
+    public int getLiveThreads() {
+        return threads.getThreadCount();
+    }
+
+    @Override
+    public double getAllocationMegabytesPerSecond() {
+        return allocationRate.perSecond(allocatedBytes()) / (1024.0 * 1024.0);
+    }
+
+    @Override
+    public void resetLatencies() {
+        metrics.tickNanos().reset();
+        metrics.edtLagNanos().reset();
+    }
+
+    // Bytes allocated so far by the live platform threads, or 0 when the JVM cannot tell
+    private long allocatedBytes() {
+        if (!(threads instanceof com.sun.management.ThreadMXBean sun) || !sun.isThreadAllocatedMemoryEnabled()) {
+            return 0;
+        }
+        long total = 0;
+        for (long bytes : sun.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+            if (bytes > 0) total += bytes;  // -1 for a thread that died since the ids were listed
+        }
+        return total;
+    }
+
+    // Change of a running total per wall second since the previous call (0 on the first call)
+    private static final class RateSampler {
+        private long lastTotal = -1;
+        private long lastNanos;
+
+        synchronized double perSecond(long total) {
+            long now = System.nanoTime();
+            double rate = 0;
+            if (lastTotal >= 0 && now > lastNanos) {
+                // A total can fall when threads die (their allocations leave the sum); report no allocation then
+                rate = Math.max(0, total - lastTotal) * 1e9 / (now - lastNanos);
+            }
+            lastTotal = total;
+            lastNanos = now;
+            return rate;
+        }
+    }
+}
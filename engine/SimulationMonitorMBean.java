@@ -0,0 +1,48 @@
+/**
+ CMSC 335
+ Project 4
+ Class Descriptions:
+ SimulationMonitorMBean is the management interface of SimulationMonitor. Each getter is one read-only attribute in
+ JConsole or any other JMX client (TickP99Micros, CarsStopped, ...); resetLatencies is an operation.
+ */
+
+package engine;
+
+public interface SimulationMonitorMBean {
+
+    // Tick duration percentiles and count
+    double getTickP50Micros();
+
+    double getTickP99Micros();
+
+    double getTickP999Micros();
+
+    double getTickMaxMicros();
+
+    long getTickCount();
+
+    // Car counts
+    long getCarsActive();
+
+    long getCarsStopped();
+
+    long getCarsFinished();
+
+    // Light phase changes per wall second since the previous read
+    double getLightTransitionsPerSecond();
+
+    // Time from invokeLater to the EDT running the frame
+    double getEdtLagP50Micros();
+
+    double getEdtLagP99Micros();
+
+    double getEdtLagP999Micros();
+
+    // JVM
+    int getLiveThreads();
+
+    double getAllocationMegabytesPerSecond();
+
+    // Forget the recorded tick and EDT lag durations
+    void resetLatencies();
+}
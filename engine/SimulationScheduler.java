@@ -0,0 +1,240 @@
+/**
+ CMSC 335
+ Project 4
+ Class Descriptions:
+ SimulationScheduler is one shared timer for everything in the simulator that used to sleep in its own thread: light
+ phase changes, clock ticks and delayed actions such as the shutdown countdown. Timers are entries in a hierarchical
+ timing wheel (four wheels of 64 slots each) advanced by a single ticker thread, so adding or cancelling a timer is
+ O(1) no matter how many are pending. Due tasks run on a small fixed pool of worker threads. All threads are daemons.
+
+ Timeout:
+ A handle to one scheduled task that can be cancelled and reports how long it has left.
+ */
+
+package engine;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public final class SimulationScheduler {
+
+    private static final int SLOT_BITS = 6;                 // 64 slots per wheel
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int MASK = SLOTS - 1;
+    private static final int LEVELS = 4;                    // 64^4 ticks before a timer must be re-cascaded
+
+    private final long tickNanos;                           // Resolution of the wheel
+    private final ExecutorService workers;                  // Runs due tasks
+    private final Timeout[][] wheels = new Timeout[LEVELS][SLOTS]; // Slot heads of singly linked timer lists
+    private final Queue<Timeout> pending = new ConcurrentLinkedQueue<>(); // Timers added since the last tick
+    private final long startNanos = System.nanoTime();
+
+    private volatile long currentTick = 0;                  // Last tick the ticker has processed
+    private volatile boolean shutdown = false;
+    private Thread ticker;                                  // Started with the first timer
+
+    // Constructor with the default 10 ms resolution and two workers
+    public SimulationScheduler() {
+        this(10, 2);
+    }
+
+    // Constructor choosing the wheel resolution (milliseconds) and the number of worker threads
+    public SimulationScheduler(long tickMillis, int workerThreads) {
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        AtomicInteger count = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(workerThreads, task -> {
+            Thread thread = new Thread(task, "scheduler-worker-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Run the task once after the delay
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        return add(new Timeout(task, System.nanoTime() + unit.toNanos(delay), 0));
+    }
+
+    // Run the task after the initial delay and then every period, measured from the first deadline
+    public Timeout scheduleAtFixedRate(Runnable task, long initialDelay, long period, TimeUnit unit) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("Period must be positive: " + period);
+        }
+        return add(new Timeout(task, System.nanoTime() + unit.toNanos(initialDelay), unit.toNanos(period)));
+    }
+
+    // Stop the ticker and the workers; pending timers never fire
+    public synchronized void shutdown() {
+        shutdown = true;
+        if (ticker != null) {
+            ticker.interrupt();
+        }
+        workers.shutdownNow();
+    }
+
+    // Queue a new timer for the ticker thread, starting the ticker on first use
+    private Timeout add(Timeout timeout) {
+        if (shutdown) {
+            throw new IllegalStateException("Scheduler is shut down");
+        }
+        pending.add(timeout);
+        synchronized (this) {
+            if (ticker == null) {
+                ticker = new Thread(this::runTicker, "scheduler-ticker");
+                ticker.setDaemon(true);
+                ticker.start();
+            }
+        }
+        return timeout;
+    }
+
+    // Ticker loop: sleep to the next tick boundary, then process every tick that has elapsed
+    private void runTicker() {
+        while (!shutdown) {
+            long now = System.nanoTime() - startNanos;
+            long target = now / tickNanos;
+            if (target > currentTick) {
+                advanceTo(target);
+            }
+            long sleepNanos = (currentTick + 1) * tickNanos - (System.nanoTime() - startNanos);
+            if (sleepNanos > 0) {
+                try {
+                    Thread.sleep(sleepNanos / 1_000_000, (int) (sleepNanos % 1_000_000));
+                } catch (InterruptedException e) {
+                    return;  // Shut down
+                }
+            }
+        }
+    }
+
+    // Process ticks up to and including target (ticker thread only)
+    private void advanceTo(long target) {
+        while (currentTick < target) {
+            long tick = currentTick + 1;
+            currentTick = tick;
+
+            // Place timers added since the last tick
+            Timeout added;
+            while ((added = pending.poll()) != null) {
+                place(added);
+            }
+
+            // When a wheel wraps, move the matching slot of the next wheel down
+            for (int level = 1; level < LEVELS; level++) {
+                if ((tick & ((1L << (SLOT_BITS * level)) - 1)) != 0) {
+                    break;
+                }
+                int slot = (int) ((tick >>> (SLOT_BITS * level)) & MASK);
+                Timeout timeout = wheels[level][slot];
+                wheels[level][slot] = null;
+                while (timeout != null) {
+                    Timeout next = timeout.next;
+                    if (!timeout.cancelled) {
+                        place(timeout);
+                    }
+                    timeout = next;
+                }
+            }
+
+            // Expire the current slot of the finest wheel
+            int slot = (int) (tick & MASK);
+            Timeout timeout = wheels[0][slot];
+            wheels[0][slot] = null;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                if (!timeout.cancelled) {
+                    if (timeout.deadlineTick <= tick) {
+                        fire(timeout);
+                    } else {
+                        place(timeout); // Clamped timer from the top wheel that is still far away
+                    }
+                }
+                timeout = next;
+            }
+        }
+    }
+
+    // Put a timer into the wheel and slot matching its distance from the current tick
+    private void place(Timeout timeout) {
+        long tick = currentTick;
+        if (timeout.deadlineTick < tick) {
+            timeout.deadlineTick = tick;  // Late: fire in the slot being processed
+        }
+        long delta = timeout.deadlineTick - tick;
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= 1L << (SLOT_BITS * (level + 1))) {
+            level++;
+        }
+        int slot;
+        if (level == LEVELS - 1 && delta >= 1L << (SLOT_BITS * LEVELS)) {
+            slot = (int) ((tick >>> (SLOT_BITS * level)) & MASK); // Beyond the wheel: re-cascade on the next full turn
+        } else {
+            slot = (int) ((timeout.deadlineTick >>> (SLOT_BITS * level)) & MASK);
+        }
+        timeout.next = wheels[level][slot];
+        wheels[level][slot] = timeout;
+    }
+
+    // Hand a due timer to the workers and re-arm it if it repeats
+    private void fire(Timeout timeout) {
+        try {
+            workers.execute(timeout.runner);
+        } catch (RuntimeException e) {
+            return; // Workers are shutting down
+        }
+        if (timeout.periodNanos > 0) {
+            timeout.deadlineNanos += timeout.periodNanos;
+            // Never the slot in progress
+            timeout.deadlineTick = Math.max(toTick(timeout.deadlineNanos), currentTick + 1);
+            place(timeout);
+        }
+    }
+
+    // Wheel tick at which a System.nanoTime() deadline falls due (rounded up)
+    private long toTick(long deadlineNanos) {
+        long fromStart = deadlineNanos - startNanos;
+        return Math.max(0, (fromStart + tickNanos - 1) / tickNanos);
+    }
+
+    // Handle to one scheduled task
+    public final class Timeout {
+        private final Runnable task;
+        private final long periodNanos;          // 0 for one-shot timers
+        private volatile long deadlineNanos;     // Next System.nanoTime() deadline
+        private long deadlineTick;               // Next wheel tick (ticker thread only)
+        private volatile boolean cancelled = false;
+        private Timeout next;                    // Next timer in the same slot
+        private final Runnable runner = this::runTask; // Handed to the workers on every firing, created once
+
+        private Timeout(Runnable task, long deadlineNanos, long periodNanos) {
+            this.task = task;
+            this.deadlineNanos = deadlineNanos;
+            this.deadlineTick = toTick(deadlineNanos);
+            this.periodNanos = periodNanos;
+        }
+
+        // Prevent the task from running again; the entry is dropped when its slot is reached
+        public void cancel() {
+            cancelled = true;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        // Time left until the next run (0 when due)
+        public long remainingNanos() {
+            return Math.max(0, deadlineNanos - System.nanoTime());
+        }
+
+        // Run the task unless it was cancelled after being handed to the workers
+        private void runTask() {
+            if (!cancelled) {
+                task.run();
+            }
+        }
+    }
+}
@@ -0,0 +1,14 @@
+/**
+ CMSC 335
+ Project 4
+ Class Descriptions:
+ TrafficLightColor:
+ An enum that defines the three valid traffic light states: RED, GREEN, and YELLOW.
+ */
+
+package engine;
+
+// Enum to represent the possible light colors
+public enum TrafficLightColor {
+    RED, GREEN, YELLOW
+}
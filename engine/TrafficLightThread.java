@@ -0,0 +1,294 @@
+/**
+ CMSC 335
+ Project 4
+ Class Descriptions:
+
+ TrafficLightThread cycles a traffic light at a fixed track position through RED, GREEN, and YELLOW states as its
+ SignalPlan dictates (GREEN_SECONDS, YELLOW_SECONDS and RED_SECONDS from time 0 unless a scenario sets others). The
+ plan alone says what the light shows at any simulated time (colorAt, timeUntilGreen); this class turns the plan's
+ phase changes into events for waiting cars, the journal and the metrics. It holds no GUI components: the
+ SimulationEngine owns each light and the GUI only reads its color. The light is brought up to a simulated time
+ either by the engine's fixed-timestep loop (advanceTo) or by timers on the shared SimulationScheduler (start), where
+ run() is the phase-change callback that catches up with the clock and arms the timer for the plan's next change, so
+ late timers never make the light drift from its plan.
+ Includes pause and resume support. The color is a volatile field, so getColor() never blocks. Cars that need to wait
+ for a phase park on a per-phase wait queue (one ReentrantLock condition per color); every phase change wakes all the
+ waiters for the phase being entered at once, and parking on a lock condition does not pin virtual-thread carriers.
+ */
+
+package engine;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// TrafficLightThread: Simulates the cycle of a traffic light at one intersection.
+
+public class TrafficLightThread implements Runnable {
+
+  // Phase lengths in simulated seconds (2s / 4s / 2s of wall time at the default 20x time scale)
+  public static final double GREEN_SECONDS = 40;
+  public static final double YELLOW_SECONDS = 80;
+  public static final double RED_SECONDS = 40;
+
+  private final int position;                // Intersection position on the track (meters)
+  private final SignalPlan plan;             // Cycle, offset and phase lengths in simulated seconds
+  int lightId = -1;                          // Index in the engine's track lights (set by addLight), or -1
+  private volatile TrafficLightColor tlc;    // Current traffic light color (read without locking)
+  private double phaseEnd;                   // Simulated time the current phase ends
+  private volatile boolean paused = false;   // Pause flag for thread control
+  private SimulationScheduler scheduler;     // Shared scheduler once started in timer mode
+  private SimulationClock clock;             // Converts phase lengths to wall time in timer mode
+  private SimulationScheduler.Timeout nextChange; // Pending phase-change timer, if any
+  private volatile EventJournal journal = EventJournal.DISABLED; // Receives a LIGHT_CHANGED event per phase
+  private volatile SimulationMetrics metrics = null;             // Counts phase changes, if set
+  private final IntersectionStats stats;    // Throughput, waits and queue at this intersection
+  private long phaseStartedNanos;            // Wall time the current phase began (0 unless the flight recorder ran)
+  private final ReentrantLock lock = new ReentrantLock();       // Guards everything but tlc reads
+  private final Condition[] phaseEntered = new Condition[TrafficLightColor.values().length]; // Waiters per target color
+
+  // Constructor: requires the intersection position on the track; uses the default phase lengths
+  public TrafficLightThread(int position) {
+    this(position, SignalPlan.DEFAULT);
+  }
+
+  // Constructor with this light's own phase lengths in simulated seconds
+  public TrafficLightThread(int position, double greenSeconds, double yellowSeconds, double redSeconds) {
+    this(position, new SignalPlan(greenSeconds, yellowSeconds, redSeconds, 0));
+  }
+
+  // Constructor with a signal plan; the light shows the plan's color at time 0 until synced or advanced
+  public TrafficLightThread(int position, SignalPlan plan) {
+    this.position = position;
+    this.plan = plan;
+    this.tlc = plan.colorAt(0);
+    this.phaseEnd = plan.nextChange(0);
+    this.stats = new IntersectionStats(position);
+    for (int i = 0; i < phaseEntered.length; i++) {
+      phaseEntered[i] = lock.newCondition();
+    }
+  }
+
+  // Color that follows the given one in the cycle
+  public static TrafficLightColor next(TrafficLightColor color) {
+    return switch (color) {
+      case RED -> TrafficLightColor.GREEN;
+      case GREEN -> TrafficLightColor.YELLOW;
+      case YELLOW -> TrafficLightColor.RED;
+    };
+  }
+
+  // Default length of a phase in simulated seconds
+  public static double phaseDuration(TrafficLightColor color) {
+    return switch (color) {
+      case GREEN -> GREEN_SECONDS;
+      case YELLOW -> YELLOW_SECONDS;
+      case RED -> RED_SECONDS;
+    };
+  }
+
+  // Length of a phase of this light in simulated seconds
+  public double phaseLength(TrafficLightColor color) {
+    return plan.phaseLength(color);
+  }
+
+  // The fixed-time program this light follows
+  public SignalPlan plan() {
+    return plan;
+  }
+
+  // Color the light shows at simulated time t (a pure function of the plan)
+  public TrafficLightColor colorAt(double t) {
+    return plan.colorAt(t);
+  }
+
+  // Simulated seconds from t until the light turns GREEN (0 while it is GREEN)
+  public double timeUntilGreen(double t) {
+    return plan.timeUntilGreen(t);
+  }
+
+  // Simulated time of the light's next phase change after t
+  public double nextChange(double t) {
+    return plan.nextChange(t);
+  }
+
+  // Show the plan's phase at simulated time now without recording a change (a light added to, or restored into, a
+  // running simulation)
+  void syncTo(double now) {
+    lock.lock();
+    try {
+      tlc = plan.colorAt(now);
+      phaseEnd = plan.nextChange(now);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  // Set where phase changes are recorded
+  void setJournal(EventJournal journal) {
+    this.journal = journal;
+  }
+
+  // Set where phase changes are counted
+  void setMetrics(SimulationMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  // Traffic statistics of this intersection (updated by the engine)
+  public IntersectionStats stats() {
+    return stats;
+  }
+
+  // Intersection position on the track
+  public int getPosition() {
+    return position;
+  }
+
+  // Pause the light; a pending phase change is cancelled (the plan keeps the time left, as the clock is paused too)
+  public void pause() {
+    lock.lock();
+    try {
+      paused = true;
+      if (nextChange != null) {
+        nextChange.cancel();
+        nextChange = null;
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  // Resume the light, re-arming the phase-change timer for the plan's next change
+  public void resume() {
+    lock.lock();
+    try {
+      paused = false;
+      if (scheduler != null && nextChange == null) {
+        scheduleChange();
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  // Start cycling on the shared scheduler instead of the engine's step loop
+  void start(SimulationScheduler scheduler, SimulationClock clock) {
+    lock.lock();
+    try {
+      this.scheduler = scheduler;
+      this.clock = clock;
+      if (!paused && nextChange == null) {
+        scheduleChange();
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  // Stop cycling on the scheduler
+  void stop() {
+    lock.lock();
+    try {
+      if (nextChange != null) {
+        nextChange.cancel();
+        nextChange = null;
+      }
+      scheduler = null;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  // Phase-change callback run by the scheduler when the current phase is over
+  public void run() {
+    lock.lock();
+    try {
+      nextChange = null;
+      if (paused || scheduler == null) {
+        return; // Paused or stopped after the timer fired
+      }
+      advanceTo(clock.now()); // Every phase change the plan has reached by now
+      scheduleChange();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  // Arm the timer for the plan's next phase change (caller holds the lock)
+  private void scheduleChange() {
+    double wait = Math.max(0, phaseEnd - clock.now());
+    nextChange = scheduler.schedule(this, clock.actorNanosFor(wait), TimeUnit.NANOSECONDS);
+  }
+
+  // Bring the light up to simulated time now, recording each phase change the plan makes on the way (used by the
+  // engine's step loop, and by run() in timer mode)
+  void advanceTo(double now) {
+    lock.lock();
+    try {
+      while (now >= phaseEnd) {
+        double boundary = phaseEnd;
+        TrafficLightColor color = plan.colorAt(boundary);
+        phaseEnd = Math.max(plan.nextChange(boundary), Math.nextUp(boundary)); // Always moves forward
+        if (color != tlc) {
+          stats.sampleQueue(boundary, tlc);
+          changeColor(color);
+        }
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  // Show the given color and announce the change
+  private void changeColor(TrafficLightColor color) {
+    lock.lock();
+    try {
+      tlc = color;
+
+      phaseEntered[tlc.ordinal()].signalAll(); // Wake every car waiting for this phase
+      journal.record(JournalEvent.LIGHT_CHANGED, -1, position, position, tlc.ordinal());
+      SimulationMetrics counters = metrics;
+      if (counters != null) counters.lightChanged();
+      if (FlightEvents.recording) {
+        long now = System.nanoTime();
+        FlightEvents.lightChanged(position, tlc, phaseStartedNanos != 0 ? now - phaseStartedNanos : 0);
+        phaseStartedNanos = now;
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  // Block until the light shows the target color
+  public void awaitColor(TrafficLightColor target) throws InterruptedException {
+    if (tlc == target) {
+      return; // Fast path: no locking
+    }
+    lock.lock();
+    try {
+      while (tlc != target)
+        phaseEntered[target.ordinal()].await();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  // Block until the light leaves the given color; leaving a color always enters next(color)
+  public void awaitChangeFrom(TrafficLightColor color) throws InterruptedException {
+    if (tlc != color) {
+      return;
+    }
+    lock.lock();
+    try {
+      while (tlc == color)
+        phaseEntered[next(color).ordinal()].await();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  // Safely get the current color
+  public TrafficLightColor getColor() {
+    return tlc;
+  }
+}
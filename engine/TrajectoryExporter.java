@@ -0,0 +1,554 @@
+/**
+ CMSC 335
+ Project 4
+ Class Descriptions:
+ TrajectoryExporter streams the position and speed of every car to a file while the simulation runs. Its own sampler
+ thread copies the engine into a reusable EngineSnapshot at a fixed rate (20 times a second by default, one frame per
+ tick at the default 20x time scale), encodes the frame into a heap staging array, and moves full batches into a
+ 1 MB direct ByteBuffer that is written to a FileChannel in one call. The engine only pays for the snapshot's bulk
+ array copies under its read lock; encoding and I/O never run on the tick. If encoding a frame takes longer than the
+ sampling period the exporter samples less often rather than holding the engine back, and counts the ticks it
+ skipped (STEP_LOOP only; actor modes have no ticks).
+ A DiscreteEventSimulation has no ticks to keep up with and runs on its caller's thread without locks, so for it the
+ exporter is driven rather than threaded: the run loop calls writeFrame() every simulatedFramePeriod() simulated
+ seconds (one frame per engine tick by default), and each frame is the simulation's snapshot(), which interpolates
+ every car's position at that moment from its current leg. The tick column then counts the events processed.
+
+ Formats:
+   CSV     one row per car per frame: tick,time,car,position,speed,edge (3 decimals, no String per row)
+   BINARY  a 12-byte header (magic "TRT1", version, units per meter) then per frame: varint tick delta, zigzag varint
+           simulated time delta in milliseconds, varint car count, and per car: varint gap to the previous car id,
+           and zigzag varint deltas of position (mm), speed (mm/s) and edge against that car's previous frame.
+ With compression on, full buffers go through a small pool to a compressor thread that deflates them into a gzip
+ file (readable by zcat), so the sampler never waits on the compressor unless the whole pool is in flight.
+ TrajectoryReader turns either format, compressed or not, back into CSV.
+ */
+
+package engine;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+public final class TrajectoryExporter implements Closeable {
+
+    public enum Format { CSV, BINARY }
+
+    public static final int MAGIC = 0x54525431;          // "TRT1"
+    public static final int VERSION = 1;
+    public static final int HEADER_BYTES = 12;
+    public static final int UNITS_PER_METER = 1000;      // Binary positions in mm, speeds in mm/s
+    public static final double DEFAULT_FRAMES_PER_SECOND = 20;
+    static final byte[] CSV_HEADER = "tick,time,car,position,speed,edge\n".getBytes(StandardCharsets.US_ASCII);
+
+    // Exporter that writes nothing (used when export is off)
+    public static final TrajectoryExporter DISABLED = new TrajectoryExporter();
+
+    private static final int BUFFER_BYTES = 1 << 20;     // Direct buffer written per channel call
+    private static final int STAGE_BYTES = 64 << 10;     // Heap staging array encoded into
+    private static final int MAX_ROW_BYTES = 128;        // Longest CSV row or binary record
+    private static final int COMPRESS_BUFFERS = 4;       // Buffers that can be queued for the compressor
+    private static final ByteBuffer END = ByteBuffer.allocate(0); // Tells the compressor the sampler is done
+    private static final byte[] NO_INPUT = new byte[0];
+
+    private final boolean enabled;
+    private final Consumer<EngineSnapshot> source;       // Fills a snapshot: the engine's or the simulation's
+    private final Format format;
+    private final long periodNanos;                      // Time between samples
+    private final double simulatedPeriod;                // Driven exporters: simulated seconds between frames
+    private final FileChannel channel;
+    private final Thread sampler;                        // null when driven by writeFrame()
+    private final Thread compressor;                     // null when writing uncompressed
+    private volatile boolean closing = false;
+    private boolean drivenStarted = false;               // Driven exporters: start() has written the header
+
+    private final LongAdder framesWritten = new LongAdder();
+    private final LongAdder ticksSkipped = new LongAdder();
+    private final LongAdder bytesEncoded = new LongAdder();
+
+    // Sampler thread state
+    private final EngineSnapshot snapshot = new EngineSnapshot();
+    private final byte[] stage = new byte[STAGE_BYTES];
+    private int staged;                                  // Bytes used in stage
+    private final byte[] digits = new byte[20];          // Scratch for number formatting
+    private final byte[] rowPrefix = new byte[48];       // "tick,time," of the current CSV frame
+    private ByteBuffer buffer;                           // Direct buffer being filled
+    private long lastTick = -1;
+    private double lastSimTime = -1;
+    private long lastTimeMillis;                         // Binary deltas: previous frame...
+    private long[] lastPosition = new long[0];           // ...and each car's previous values
+    private long[] lastSpeed = new long[0];
+    private int[] lastEdge = new int[0];
+
+    // Compressor thread state
+    private final BlockingQueue<ByteBuffer> filled;
+    private final BlockingQueue<ByteBuffer> free;
+
+    // Disabled exporter
+    private TrajectoryExporter() {
+        enabled = false;
+        source = null;
+        format = Format.BINARY;
+        periodNanos = 0;
+        simulatedPeriod = 0;
+        channel = null;
+        sampler = compressor = null;
+        filled = free = null;
+    }
+
+    // Open the file and prepare to export framesPerSecond samples of the engine once started
+    public TrajectoryExporter(SimulationEngine engine, Path file, Format format, boolean compress,
+                              double framesPerSecond) throws IOException {
+        this(engine::snapshot, false, file, format, compress, framesPerSecond);
+    }
+
+    // Open the file for a discrete-event run that calls writeFrame() framesPerSimulatedSecond times a simulated second
+    public TrajectoryExporter(DiscreteEventSimulation simulation, Path file, Format format, boolean compress,
+                              double framesPerSimulatedSecond) throws IOException {
+        this(simulation::snapshot, true, file, format, compress, framesPerSimulatedSecond);
+    }
+
+    private TrajectoryExporter(Consumer<EngineSnapshot> source, boolean driven, Path file, Format format,
+                               boolean compress, double framesPerSecond) throws IOException {
+        if (!(framesPerSecond > 0)) {
+            throw new IllegalArgumentException("Frame rate must be positive: " + framesPerSecond);
+        }
+        this.enabled = true;
+        this.source = source;
+        this.format = format;
+        this.periodNanos = (long) (TimeUnit.SECONDS.toNanos(1) / framesPerSecond);
+        this.simulatedPeriod = driven ? 1 / framesPerSecond : 0;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+        this.buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+        if (compress) {
+            filled = new ArrayBlockingQueue<>(COMPRESS_BUFFERS + 2);  // Every buffer plus END
+            free = new ArrayBlockingQueue<>(COMPRESS_BUFFERS);
+            for (int i = 0; i < COMPRESS_BUFFERS; i++) {
+                free.add(ByteBuffer.allocateDirect(BUFFER_BYTES));
+            }
+            compressor = new Thread(this::compressLoop, "trajectory-compressor");
+            compressor.setDaemon(true);
+        } else {
+            filled = free = null;
+            compressor = null;
+        }
+        if (driven) {
+            sampler = null;
+        } else {
+            sampler = new Thread(this::sampleLoop, "trajectory-sampler");
+            sampler.setDaemon(true);
+        }
+    }
+
+    // Export to the file named by -Dtraffic.trajectory, or return DISABLED when the property is not set. The format
+    // follows the name (.csv or .csv.gz for CSV, anything else binary; a .gz suffix compresses), and
+    // -Dtraffic.trajectoryFps sets the sampling rate
+    public static TrajectoryExporter fromSystemProperty(SimulationEngine engine) throws IOException {
+        String file = System.getProperty("traffic.trajectory");
+        if (file == null || file.isBlank()) {
+            return DISABLED;
+        }
+        boolean compress = file.endsWith(".gz");
+        String name = compress ? file.substring(0, file.length() - 3) : file;
+        Format format = name.endsWith(".csv") ? Format.CSV : Format.BINARY;
+        double fps = Double.parseDouble(System.getProperty("traffic.trajectoryFps",
+                String.valueOf(DEFAULT_FRAMES_PER_SECOND)));
+        return new TrajectoryExporter(engine, Path.of(file), format, compress, fps);
+    }
+
+    // Driven export of a discrete-event run to the file named by -Dtraffic.trajectory, or DISABLED. The name is read
+    // as above; -Dtraffic.trajectoryFps is frames per simulated second here, one per engine tick by default
+    public static TrajectoryExporter fromSystemProperty(DiscreteEventSimulation simulation) throws IOException {
+        String file = System.getProperty("traffic.trajectory");
+        if (file == null || file.isBlank()) {
+            return DISABLED;
+        }
+        boolean compress = file.endsWith(".gz");
+        String name = compress ? file.substring(0, file.length() - 3) : file;
+        Format format = name.endsWith(".csv") ? Format.CSV : Format.BINARY;
+        double fps = Double.parseDouble(System.getProperty("traffic.trajectoryFps",
+                String.valueOf(1 / SimulationEngine.TICK_SECONDS)));
+        return new TrajectoryExporter(simulation, Path.of(file), format, compress, fps);
+    }
+
+    // Start sampling (a driven exporter writes its file header and then waits for writeFrame())
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        if (compressor != null) compressor.start();
+        if (sampler != null) {
+            sampler.start();
+        } else {
+            stageHeader();
+            drivenStarted = true;
+        }
+    }
+
+    // Driven exporters: write one frame of the simulation as it is now
+    public void writeFrame() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        if (sampler != null || !drivenStarted) {
+            throw new IllegalStateException(sampler != null ? "This exporter samples on its own thread"
+                    : "Exporter not started");
+        }
+        try {
+            sample();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while exporting a trajectory frame", e);
+        }
+    }
+
+    // Driven exporters: simulated seconds between the frames the run loop should write
+    public double simulatedFramePeriod() {
+        return simulatedPeriod;
+    }
+
+    // The file header of the format
+    private void stageHeader() {
+        if (format == Format.CSV) {
+            stageBytes(CSV_HEADER, CSV_HEADER.length);
+        } else {
+            stageInt(MAGIC);
+            stageInt(VERSION);
+            stageInt(UNITS_PER_METER);
+        }
+    }
+
+    // Sampler: one frame per period, then a final frame and the last partial buffer when closing
+    private void sampleLoop() {
+        try {
+            stageHeader();
+            long next = System.nanoTime();
+            while (!closing) {
+                long wait = next - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(this, wait);  // close() unparks
+                    continue;
+                }
+                sample();
+                // Behind schedule: restart the period from now instead of sampling back to back
+                next = Math.max(next + periodNanos, System.nanoTime());
+            }
+            finish();
+        } catch (IOException e) {
+            System.err.println("Trajectory export stopped: " + e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (compressor != null) {
+                filled.offer(END);  // Always room: there are only COMPRESS_BUFFERS + 1 buffers
+            }
+        }
+    }
+
+    // Final frame and the last partial buffer
+    private void finish() throws IOException, InterruptedException {
+        sample();
+        flushStage();
+        flushBuffer();
+    }
+
+    // Copy the engine and encode it, unless nothing moved since the last frame (paused)
+    void sample() throws IOException, InterruptedException {
+        source.accept(snapshot);
+        if (snapshot.tick == lastTick && snapshot.simTime == lastSimTime) {
+            return;
+        }
+        if (sampler != null && lastTick >= 0 && snapshot.tick > lastTick + 1) {
+            ticksSkipped.add(snapshot.tick - lastTick - 1);
+        }
+        if (format == Format.CSV) {
+            encodeCsv(snapshot);
+        } else {
+            encodeBinary(snapshot);
+        }
+        lastTick = snapshot.tick;
+        lastSimTime = snapshot.simTime;
+        framesWritten.increment();
+    }
+
+    // One CSV row per car, each starting with the frame's "tick,time," prefix
+    private void encodeCsv(EngineSnapshot frame) throws IOException, InterruptedException {
+        int prefix = formatLong(frame.tick, rowPrefix, 0);
+        rowPrefix[prefix++] = ',';
+        prefix = formatFixed3(frame.simTime, rowPrefix, prefix);
+        rowPrefix[prefix++] = ',';
+        for (int id = 0; id < frame.carCount; id++) {
+            if (frame.carFlags[id] == 0) {
+                continue;  // Removed car
+            }
+            if (staged > STAGE_BYTES - MAX_ROW_BYTES) flushStage();
+            System.arraycopy(rowPrefix, 0, stage, staged, prefix);
+            int at = staged + prefix;
+            at = formatLong(id, stage, at);
+            stage[at++] = ',';
+            at = formatFixed3(frame.carPositions[id], stage, at);
+            stage[at++] = ',';
+            at = formatFixed3(frame.carSpeeds[id], stage, at);
+            stage[at++] = ',';
+            at = formatLong(frame.carEdges[id], stage, at);
+            stage[at++] = '\n';
+            staged = at;
+        }
+    }
+
+    // Frame header, then per car the id gap and deltas against its previous frame
+    private void encodeBinary(EngineSnapshot frame) throws IOException, InterruptedException {
+        int cars = frame.carCount;
+        if (lastPosition.length < cars) {
+            int size = Math.max(cars, lastPosition.length * 2);
+            lastPosition = Arrays.copyOf(lastPosition, size);
+            lastSpeed = Arrays.copyOf(lastSpeed, size);
+            lastEdge = Arrays.copyOf(lastEdge, size);
+        }
+        int present = 0;
+        for (int id = 0; id < cars; id++) {
+            if (frame.carFlags[id] != 0) present++;
+        }
+        long timeMillis = Math.round(frame.simTime * 1000);
+        if (staged > STAGE_BYTES - MAX_ROW_BYTES) flushStage();
+        staged = putVarLong(stage, staged, frame.tick - Math.max(lastTick, 0));
+        staged = putVarLong(stage, staged, zigzag(timeMillis - lastTimeMillis));
+        staged = putVarLong(stage, staged, present);
+        lastTimeMillis = timeMillis;
+
+        int previousId = -1;
+        for (int id = 0; id < cars; id++) {
+            if (frame.carFlags[id] == 0) {
+                continue;
+            }
+            if (staged > STAGE_BYTES - MAX_ROW_BYTES) flushStage();
+            long position = Math.round(frame.carPositions[id] * UNITS_PER_METER);
+            long speed = Math.round(frame.carSpeeds[id] * UNITS_PER_METER);
+            int edge = frame.carEdges[id];
+            int at = putVarLong(stage, staged, id - previousId - 1);
+            at = putVarLong(stage, at, zigzag(position - lastPosition[id]));
+            at = putVarLong(stage, at, zigzag(speed - lastSpeed[id]));
+            staged = putVarLong(stage, at, zigzag(edge - lastEdge[id]));
+            lastPosition[id] = position;
+            lastSpeed[id] = speed;
+            lastEdge[id] = edge;
+            previousId = id;
+        }
+    }
+
+    // Move the staging array into the direct buffer, writing the buffer out first if it is too full
+    private void flushStage() throws IOException, InterruptedException {
+        if (buffer.remaining() < staged) {
+            flushBuffer();
+        }
+        buffer.put(stage, 0, staged);
+        bytesEncoded.add(staged);
+        staged = 0;
+    }
+
+    // Write the direct buffer to the file, or hand it to the compressor and take an empty one
+    private void flushBuffer() throws IOException, InterruptedException {
+        buffer.flip();
+        if (compressor != null) {
+            filled.put(buffer);
+            buffer = free.take();
+        } else {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+        buffer.clear();
+    }
+
+    private void stageBytes(byte[] bytes, int length) {
+        System.arraycopy(bytes, 0, stage, staged, length);
+        staged += length;
+    }
+
+    private void stageInt(int value) {
+        stage[staged++] = (byte) (value >>> 24);
+        stage[staged++] = (byte) (value >>> 16);
+        stage[staged++] = (byte) (value >>> 8);
+        stage[staged++] = (byte) value;
+    }
+
+    // Compressor: deflate every full buffer into one gzip member
+    private void compressLoop() {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);  // Raw deflate; the gzip framing is ours
+        CRC32 crc = new CRC32();
+        ByteBuffer out = ByteBuffer.allocateDirect(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        long rawBytes = 0;
+        boolean failed = false;
+        try {
+            out.put(new byte[] {0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, (byte) 0xff}); // gzip header, no name
+            while (true) {
+                ByteBuffer input = filled.take();
+                if (input == END) {
+                    break;
+                }
+                if (!failed) {
+                    try {
+                        int start = input.position();
+                        crc.update(input);
+                        input.position(start);
+                        rawBytes += input.remaining();
+                        deflater.setInput(input);
+                        while (!deflater.needsInput()) {
+                            deflater.deflate(out);
+                            if (!out.hasRemaining()) writeOut(out);
+                        }
+                        deflater.setInput(NO_INPUT);  // Drop the reference before the buffer is refilled
+                    } catch (IOException e) {
+                        failed = true;  // Keep recycling buffers so the sampler is never stuck
+                        System.err.println("Trajectory export stopped: " + e);
+                    }
+                }
+                input.clear();
+                free.put(input);
+            }
+            if (!failed) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    deflater.deflate(out);
+                    if (!out.hasRemaining()) writeOut(out);
+                }
+                if (out.remaining() < 8) writeOut(out);
+                out.putInt((int) crc.getValue()).putInt((int) rawBytes);  // gzip trailer, little-endian
+                writeOut(out);
+            }
+        } catch (IOException e) {
+            System.err.println("Trajectory export stopped: " + e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private void writeOut(ByteBuffer out) throws IOException {
+        out.flip();
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+        out.clear();
+    }
+
+    // Frames written so far
+    public long framesWritten() {
+        return framesWritten.sum();
+    }
+
+    // Engine ticks that passed between two samples and were not exported
+    public long ticksSkipped() {
+        return ticksSkipped.sum();
+    }
+
+    // Bytes encoded before compression
+    public long bytesEncoded() {
+        return bytesEncoded.sum();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Write a final frame, flush everything and close the file
+    @Override
+    public void close() throws IOException {
+        if (!enabled || closing) {
+            return;
+        }
+        closing = true;
+        try {
+            if (sampler == null) {
+                closeDriven();
+            } else if (sampler.getState() != Thread.State.NEW) {
+                LockSupport.unpark(sampler);
+                sampler.join();
+                if (compressor != null) compressor.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            channel.close();
+        }
+    }
+
+    // Driven exporters: the sampler's closing steps, on the caller's thread
+    private void closeDriven() throws IOException, InterruptedException {
+        if (!drivenStarted) {
+            return;
+        }
+        try {
+            finish();
+        } finally {
+            if (compressor != null) {
+                filled.offer(END);
+                compressor.join();
+            }
+        }
+    }
+
+    // ZigZag: small negative and positive numbers both become small unsigned ones
+    static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    // Write an unsigned LEB128 varint; returns the index after it
+    static int putVarLong(byte[] into, int at, long value) {
+        while ((value & ~0x7FL) != 0) {
+            into[at++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        into[at++] = (byte) value;
+        return at;
+    }
+
+    // Write a decimal integer as ASCII; returns the index after it
+    int formatLong(long value, byte[] into, int at) {
+        if (value < 0) {
+            into[at++] = '-';
+            value = -value;
+        }
+        int n = 0;
+        do {
+            digits[n++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        while (n > 0) {
+            into[at++] = digits[--n];
+        }
+        return at;
+    }
+
+    // Write a number with exactly three decimals; returns the index after it
+    int formatFixed3(double value, byte[] into, int at) {
+        long thousandths = Math.round(value * 1000);
+        if (thousandths < 0) {
+            into[at++] = '-';
+            thousandths = -thousandths;
+        }
+        at = formatLong(thousandths / 1000, into, at);
+        long fraction = thousandths % 1000;
+        into[at++] = '.';
+        into[at++] = (byte) ('0' + fraction / 100);
+        into[at++] = (byte) ('0' + fraction / 10 % 10);
+        into[at++] = (byte) ('0' + fraction % 10);
+        return at;
+    }
+}
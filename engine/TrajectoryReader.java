@@ -0,0 +1,123 @@
+/**
+ CMSC 335
+ Project 4
+ Class Descriptions:
+ TrajectoryReader prints a file written by TrajectoryExporter as CSV (tick,time,car,position,speed,edge). Gzip files
+ are decompressed on the fly; CSV files are copied through, and binary files are decoded by replaying the per-car
+ deltas, so its output for a binary file matches what the exporter would have written in CSV.
+ Usage: java engine.TrajectoryReader <trajectory file>
+ */
+
+package engine;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+
+public class TrajectoryReader {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: java engine.TrajectoryReader <trajectory file>");
+            System.exit(2);
+        }
+
+        try (InputStream file = new BufferedInputStream(Files.newInputStream(Path.of(args[0])), 1 << 16)) {
+            file.mark(4);
+            boolean gzip = file.read() == 0x1f && file.read() == 0x8b;
+            file.reset();
+            InputStream raw = gzip ? new BufferedInputStream(new GZIPInputStream(file, 1 << 16), 1 << 16) : file;
+            DataInputStream in = new DataInputStream(raw);
+            PrintStream out = new PrintStream(new BufferedOutputStream(System.out, 1 << 16), false);
+
+            in.mark(4);
+            int magic;
+            try {
+                magic = in.readInt();
+            } catch (EOFException e) {
+                magic = 0;  // Shorter than a header: can only be (empty) CSV
+            }
+            if (magic != TrajectoryExporter.MAGIC) {
+                in.reset();
+                in.transferTo(out);  // Already CSV
+            } else {
+                decodeBinary(in, out);
+            }
+            out.flush();
+        }
+    }
+
+    // Replay the frames of a binary trajectory, printing one CSV row per car
+    private static void decodeBinary(DataInputStream in, PrintStream out) throws IOException {
+        int version = in.readInt();
+        if (version != TrajectoryExporter.VERSION) {
+            throw new IOException("Unsupported trajectory version " + version);
+        }
+        double unitsPerMeter = in.readInt();
+        out.write(TrajectoryExporter.CSV_HEADER);
+
+        long tick = 0;
+        long timeMillis = 0;
+        long[] position = new long[16];
+        long[] speed = new long[16];
+        int[] edge = new int[16];
+        StringBuilder row = new StringBuilder(64);
+        while (true) {
+            long tickDelta;
+            try {
+                tickDelta = readVarLong(in);
+            } catch (EOFException e) {
+                return;  // Clean end between frames
+            }
+            tick += tickDelta;
+            timeMillis += unzigzag(readVarLong(in));
+            long cars = readVarLong(in);
+            int id = -1;
+            for (long i = 0; i < cars; i++) {
+                id += (int) readVarLong(in) + 1;
+                if (id >= position.length) {
+                    int size = Math.max(id + 1, position.length * 2);
+                    position = Arrays.copyOf(position, size);
+                    speed = Arrays.copyOf(speed, size);
+                    edge = Arrays.copyOf(edge, size);
+                }
+                position[id] += unzigzag(readVarLong(in));
+                speed[id] += unzigzag(readVarLong(in));
+                edge[id] += (int) unzigzag(readVarLong(in));
+                row.setLength(0);
+                row.append(tick).append(',').append(fixed3(timeMillis / 1000.0)).append(',').append(id).append(',')
+                        .append(fixed3(position[id] / unitsPerMeter)).append(',')
+                        .append(fixed3(speed[id] / unitsPerMeter)).append(',').append(edge[id]).append('\n');
+                out.append(row);
+            }
+        }
+    }
+
+    private static String fixed3(double value) {
+        return String.format(Locale.ROOT, "%.3f", value);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,71 @@
+/**
+ CMSC 335
+ Project 4
+ Class Descriptions:
+ VirtualThreads creates virtual threads for ExecutionMode.VIRTUAL_THREADS. The project still compiles on Java 17, so
+ Thread.ofVirtual() is looked up reflectively; on a JVM without virtual threads the helper prints one warning and
+ falls back to platform threads.
+ */
+
+package engine;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+final class VirtualThreads {
+
+    private static final MethodHandle OF_VIRTUAL;   // Thread.ofVirtual()
+    private static final MethodHandle NAME;         // Thread.Builder.name(String)
+    private static final MethodHandle UNSTARTED;    // Thread.Builder.unstarted(Runnable)
+    private static boolean warned = false;
+
+    static {
+        MethodHandle ofVirtual = null;
+        MethodHandle name = null;
+        MethodHandle unstarted = null;
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            Class<?> ofVirtualBuilder = Class.forName("java.lang.Thread$Builder$OfVirtual");
+            ofVirtual = lookup.findStatic(Thread.class, "ofVirtual", MethodType.methodType(ofVirtualBuilder));
+            name = lookup.findVirtual(builder, "name", MethodType.methodType(builder, String.class));
+            unstarted = lookup.findVirtual(builder, "unstarted", MethodType.methodType(Thread.class, Runnable.class));
+        } catch (ReflectiveOperationException e) {
+            // Java 17-20: no virtual threads
+        }
+        OF_VIRTUAL = ofVirtual;
+        NAME = name;
+        UNSTARTED = unstarted;
+    }
+
+    private VirtualThreads() {
+    }
+
+    // True when the running JVM supports virtual threads
+    static boolean isSupported() {
+        return OF_VIRTUAL != null;
+    }
+
+    // Create an unstarted virtual thread, or a platform thread if the JVM has none
+    static Thread newThread(Runnable task, String name) {
+        if (!isSupported()) {
+            warnOnce();
+            return new Thread(task, name);
+        }
+        try {
+            Object builder = OF_VIRTUAL.invoke();
+            builder = NAME.invoke(builder, name);
+            return (Thread) UNSTARTED.invoke(builder, task);
+        } catch (Throwable e) {
+            throw new IllegalStateException("Could not create virtual thread " + name, e);
+        }
+    }
+
+    private static synchronized void warnOnce() {
+        if (!warned) {
+            warned = true;
+            System.err.println("Virtual threads need Java 21+; running car actors on platform threads instead");
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/**
+ CMSC 335
+ Project 4
+ Class Descriptions:
+ ColorCircleIcon is a small filled circle with a black outline, used for traffic light markers. The same shape is
+ painted on the TrackCanvas and shown next to each intersection's status label. Icons for the three light colors are
+ created once and shared (forLight), so a phase change never allocates a new icon.
+ */
+
+package gui;
+
+import engine.TrafficLightColor;
+
+import javax.swing.Icon;
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.Graphics;
+
+public class ColorCircleIcon implements Icon {
+    public static final int LIGHT_ICON_SIZE = 12;
+
+    // One shared icon per light color, indexed by ordinal
+    private static final ColorCircleIcon[] LIGHT_ICONS = new ColorCircleIcon[TrafficLightColor.values().length];
+
+    static {
+        for (TrafficLightColor color : TrafficLightColor.values()) {
+            LIGHT_ICONS[color.ordinal()] = new ColorCircleIcon(colorOf(color), LIGHT_ICON_SIZE);
+        }
+    }
+
+    private final Color color;
+    private final int size;
+
+    public ColorCircleIcon(Color color, int size) {
+        this.color = color;
+        this.size = size;
+    }
+
+    // Shared marker icon for a light color
+    public static ColorCircleIcon forLight(TrafficLightColor color) {
+        return LIGHT_ICONS[color.ordinal()];
+    }
+
+    // Marker color for a light state
+    public static Color colorOf(TrafficLightColor color) {
+        return switch (color) {
+            case RED -> Color.RED;
+            case GREEN -> Color.GREEN;
+            case YELLOW -> Color.YELLOW;
+        };
+    }
+
+    @Override
+    public void paintIcon(Component c, Graphics g, int x, int y) {
+        g.setColor(color);
+        g.fillOval(x, y, size, size);
+        g.setColor(Color.BLACK); // optional border
+        g.drawOval(x, y, size, size);
+    }
+
+    @Override
+    public int getIconWidth() {
+        return size;
+    }
+
+    @Override
+    public int getIconHeight() {
+        return size;
+    }
+}
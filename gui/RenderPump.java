@@ -0,0 +1,133 @@
+/**
+ CMSC 335
+ Project 4
+ Class Descriptions:
+ RenderPump is the single path from the simulation to the Swing widgets. A timer on the shared SimulationScheduler
+ samples the engine at a fixed frame rate into a reusable EngineSnapshot, optionally runs an off-EDT stage on it (the
+ TrackCanvas rasterizes there), and posts at most one task to the EDT, which hands the newest frame to the GUI to apply
+ in one batch. If the EDT has not yet drawn the previous frame when the next
+ one is sampled, the older frame is replaced rather than queued, and counted as dropped, so the display never lags
+ behind the simulation no matter how many cars there are. The time each posted task waits in the EDT queue is
+ recorded in the engine's SimulationMetrics.
+ */
+
+package gui;
+
+import engine.EngineSnapshot;
+import engine.SimulationEngine;
+import engine.SimulationScheduler;
+
+import javax.swing.SwingUtilities;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+public class RenderPump {
+
+    private final SimulationEngine engine;             // State being displayed
+    private final Consumer<EngineSnapshot> offEdtStage; // Work done per frame on the sampling thread
+    private final Consumer<EngineSnapshot> frameSink;  // Applies one frame to the widgets (runs on the EDT)
+    private final long frameNanos;                      // Time between samples
+
+    private final AtomicReference<EngineSnapshot> ready = new AtomicReference<>(); // Sampled, not yet drawn
+    private final AtomicReference<EngineSnapshot> spare = new AtomicReference<>(); // Drawn, free for reuse
+    private EngineSnapshot back = new EngineSnapshot();  // Filled by the sampler (scheduler thread only)
+    private final Runnable drawTask = this::drawReadyFrame; // One task object, posted at most once at a time
+    private final AtomicBoolean sampling = new AtomicBoolean(); // Scheduler workers may overlap a slow sample
+    private volatile long postedNanos;                   // When drawTask was last handed to invokeLater
+
+    private final LongAdder framesSampled = new LongAdder();
+    private final LongAdder framesDrawn = new LongAdder();
+    private final LongAdder framesDropped = new LongAdder();
+
+    private SimulationScheduler.Timeout timer;
+
+    // Constructor: sample the engine framesPerSecond times a second and hand frames to frameSink on the EDT
+    public RenderPump(SimulationEngine engine, int framesPerSecond, Consumer<EngineSnapshot> frameSink) {
+        this(engine, framesPerSecond, frame -> { }, frameSink);
+    }
+
+    // Constructor that also runs offEdtStage (e.g. rasterizing) on each sampled frame before it is posted
+    public RenderPump(SimulationEngine engine, int framesPerSecond, Consumer<EngineSnapshot> offEdtStage,
+                      Consumer<EngineSnapshot> frameSink) {
+        if (framesPerSecond <= 0) {
+            throw new IllegalArgumentException("Frame rate must be positive: " + framesPerSecond);
+        }
+        this.engine = engine;
+        this.offEdtStage = offEdtStage;
+        this.frameSink = frameSink;
+        this.frameNanos = TimeUnit.SECONDS.toNanos(1) / framesPerSecond;
+        spare.set(new EngineSnapshot());
+    }
+
+    // Start sampling on the engine's scheduler
+    public synchronized void start() {
+        if (timer == null) {
+            timer = engine.scheduler().scheduleAtFixedRate(this::sample, 0, frameNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    // Stop sampling; a frame already posted is still drawn
+    public synchronized void stop() {
+        if (timer != null) {
+            timer.cancel();
+            timer = null;
+        }
+    }
+
+    // Sampler: copy the engine into the back buffer and publish it as the newest frame
+    void sample() {
+        if (!sampling.compareAndSet(false, true)) {
+            framesDropped.increment();  // Previous sample still running
+            return;
+        }
+        try {
+            engine.snapshot(back);
+            offEdtStage.accept(back);
+            framesSampled.increment();
+
+            EngineSnapshot replaced = ready.getAndSet(back);
+            if (replaced != null) {
+                framesDropped.increment();  // EDT still behind: the older frame is never drawn
+                back = replaced;
+            } else {
+                postedNanos = System.nanoTime();
+                SwingUtilities.invokeLater(drawTask);
+                EngineSnapshot free = spare.getAndSet(null);
+                back = free != null ? free : new EngineSnapshot();
+            }
+        } finally {
+            sampling.set(false);
+        }
+    }
+
+    // EDT: draw the newest frame and recycle it
+    private void drawReadyFrame() {
+        engine.metrics().recordEdtLag(System.nanoTime() - postedNanos);
+        EngineSnapshot frame = ready.getAndSet(null);
+        if (frame == null) {
+            return;
+        }
+        try {
+            frameSink.accept(frame);
+            framesDrawn.increment();
+        } finally {
+            spare.set(frame);
+        }
+    }
+
+    // Statistics
+    public long framesSampled() {
+        return framesSampled.sum();
+    }
+
+    public long framesDrawn() {
+        return framesDrawn.sum();
+    }
+
+    public long framesDropped() {
+        return framesDropped.sum();
+    }
+}
@@ -0,0 +1,182 @@
+/**
+ CMSC 335
+ Project 4
+ Class Descriptions:
+ TrackCanvas draws the whole road in one component: the track, a ColorCircleIcon-style marker for every traffic light
+ and a dot for every car. It replaces one JSlider per car. Frames are rasterized off the EDT by render(), which the
+ RenderPump calls on its sampling thread, into the back half of a pair of offscreen images; the EDT only blits the
+ finished front image in paintComponent. With many cars the dots are written straight into the image's pixel array
+ instead of going through Graphics2D, which keeps tens of thousands of cars within a 60 fps frame budget. Each image
+ keeps its Graphics2D and the background color is a precomputed int, so steady-state frames allocate nothing here.
+ */
+
+package gui;
+
+import engine.CarStore;
+import engine.EngineSnapshot;
+import engine.SimulationEngine;
+
+import javax.swing.JComponent;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+public class TrackCanvas extends JComponent {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final int MARKER_SIZE = 12;       // Diameter of a light marker (pixels)
+    private static final int MARKER_ROW = 20;        // Height reserved for markers at the top
+    private static final int MAX_ROW_SPACING = 30;   // Row spacing when only a few cars are shown
+    private static final int OVAL_CAR_LIMIT = 64;    // Up to this many cars are drawn as anti-aliased knobs
+
+    // Car colors, cycled by car id (the first four match the original slider knobs)
+    private static final Color[] CAR_COLORS = {
+            Color.DARK_GRAY, Color.BLUE, Color.RED, Color.MAGENTA, new Color(0, 128, 0), Color.ORANGE
+    };
+    private static final Color BACKGROUND = new Color(210, 225, 240);
+    private static final Color ROAD = new Color(160, 160, 160);
+    private static final int BACKGROUND_RGB = BACKGROUND.getRGB();
+    private static final int[] CAR_RGB = new int[CAR_COLORS.length];
+
+    static {
+        for (int i = 0; i < CAR_COLORS.length; i++) {
+            CAR_RGB[i] = CAR_COLORS[i].getRGB();
+        }
+    }
+
+    private final Object swapLock = new Object();   // Guards front / back swaps against paintComponent
+    private BufferedImage front;                     // Last finished frame (drawn by the EDT)
+    private BufferedImage back;                      // Frame being rasterized (render thread only)
+    private Graphics2D frontGraphics;                // Graphics kept with each image and swapped with it
+    private Graphics2D backGraphics;
+    private volatile int targetWidth;                // Component size, published for the render thread
+    private volatile int targetHeight;
+
+    // Constructor with the preferred on-screen size
+    public TrackCanvas(int width, int height) {
+        setPreferredSize(new Dimension(width, height));
+        setOpaque(true);
+        targetWidth = width;
+        targetHeight = height;
+        addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentResized(ComponentEvent e) {
+                targetWidth = Math.max(1, getWidth());
+                targetHeight = Math.max(1, getHeight());
+            }
+        });
+    }
+
+    // Rasterize one frame into the back image and make it the front image (any thread but the EDT)
+    public void render(EngineSnapshot snapshot) {
+        int width = targetWidth;
+        int height = targetHeight;
+        if (back == null || back.getWidth() != width || back.getHeight() != height) {
+            if (backGraphics != null) backGraphics.dispose();
+            back = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            backGraphics = back.createGraphics();
+            backGraphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        }
+
+        int[] pixels = ((DataBufferInt) back.getRaster().getDataBuffer()).getData();
+        Arrays.fill(pixels, BACKGROUND_RGB);
+
+        Graphics2D g = backGraphics;
+        drawRoad(g, width, height);
+        drawLights(g, snapshot, width, height);
+        if (snapshot.carCount() <= OVAL_CAR_LIMIT) {
+            drawCarKnobs(g, snapshot, width, height);
+        } else {
+            drawCarPixels(pixels, snapshot, width, height);
+        }
+
+        synchronized (swapLock) {
+            BufferedImage finished = back;
+            back = front;
+            front = finished;
+            Graphics2D finishedGraphics = backGraphics;
+            backGraphics = frontGraphics;
+            frontGraphics = finishedGraphics;
+        }
+    }
+
+    // EDT: blit the newest finished frame
+    @Override
+    protected void paintComponent(Graphics g) {
+        synchronized (swapLock) {
+            if (front != null) {
+                g.drawImage(front, 0, 0, null);
+                return;
+            }
+        }
+        g.setColor(BACKGROUND);
+        g.fillRect(0, 0, getWidth(), getHeight());
+    }
+
+    // Road line from 0 to TRACK_LENGTH
+    private void drawRoad(Graphics2D g, int width, int height) {
+        g.setColor(ROAD);
+        g.fillRect(0, MARKER_ROW + 2, width, 2);
+        g.fillRect(0, height - 2, width, 2);
+    }
+
+    // One colored circle per light, centered over its intersection
+    private void drawLights(Graphics2D g, EngineSnapshot snapshot, int width, int height) {
+        for (int id = 0; id < snapshot.lightCount(); id++) {
+            int x = toX(snapshot.lightPosition(id), width) - MARKER_SIZE / 2;
+            g.setColor(ColorCircleIcon.colorOf(snapshot.lightColor(id)));
+            g.fillOval(x, 4, MARKER_SIZE, MARKER_SIZE);
+            g.setColor(Color.BLACK);
+            g.drawOval(x, 4, MARKER_SIZE, MARKER_SIZE);
+            g.setColor(ROAD);
+            g.fillRect(x + MARKER_SIZE / 2, MARKER_ROW, 1, height - MARKER_ROW); // Stop line down the track
+        }
+    }
+
+    // Few cars: one round knob per car on its own row, like the old slider thumbs
+    private void drawCarKnobs(Graphics2D g, EngineSnapshot snapshot, int width, int height) {
+        int rows = Math.max(1, snapshot.carCount());
+        int spacing = Math.min(MAX_ROW_SPACING, Math.max(1, (height - MARKER_ROW - 8) / rows));
+        int size = Math.max(4, Math.min(14, spacing - 2));
+        for (int id = 0; id < snapshot.carCount(); id++) {
+            // Network cars are off this road
+            if (!snapshot.carPresent(id) || snapshot.carEdge(id) != CarStore.NO_EDGE) continue;
+            int x = toX(snapshot.carPosition(id), width) - size / 2;
+            int y = MARKER_ROW + 6 + id * spacing;
+            g.setColor(CAR_COLORS[id % CAR_COLORS.length]);
+            g.fillOval(x, y, size, size);
+        }
+    }
+
+    // Many cars: 2x2 dots written directly into the pixel array, rows wrapping down the canvas
+    private void drawCarPixels(int[] pixels, EngineSnapshot snapshot, int width, int height) {
+        int top = MARKER_ROW + 6;
+        int rows = Math.max(1, (height - top - 2) / 2);
+        for (int id = 0; id < snapshot.carCount(); id++) {
+            // Network cars are off this road
+            if (!snapshot.carPresent(id) || snapshot.carEdge(id) != CarStore.NO_EDGE) continue;
+            int x = Math.min(toX(snapshot.carPosition(id), width), width - 2);
+            int y = top + (id % rows) * 2;
+            int rgb = CAR_RGB[id % CAR_RGB.length];
+            int offset = y * width + x;
+            pixels[offset] = rgb;
+            pixels[offset + 1] = rgb;
+            pixels[offset + width] = rgb;
+            pixels[offset + width + 1] = rgb;
+        }
+    }
+
+    // Track meters to canvas pixels
+    private static int toX(double meters, int width) {
+        return (int) (meters * (width - 1) / SimulationEngine.TRACK_LENGTH);
+    }
+
+}